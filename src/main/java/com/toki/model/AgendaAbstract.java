@@ -1,6 +1,7 @@
 package com.toki.model;
 
 import java.time.LocalDate;
+import java.util.function.Function;
 
 public abstract class AgendaAbstract {
     private int ID;
@@ -8,6 +9,10 @@ public abstract class AgendaAbstract {
     private String type;
     private String group;
     private String notes;
+    // Content hash of the notes while they live in a note store, and how to load them on first access.
+    // Guarded by this agenda, since a repository may swap the notes for a reference while they are read.
+    private String notesRef;
+    private Function<String, String> notesLoader;
 
     public AgendaAbstract(int ID, String title, String type, String group, String notes) {
         this.ID = ID;
@@ -51,11 +56,45 @@ public abstract class AgendaAbstract {
         this.group = group;
     }
 
-    public String getNotes() {
+    /**
+     * Gets the notes, loading them from the note store on first access if
+     * they were read as a reference.
+     *
+     * @return The notes, may be null.
+     */
+    public synchronized String getNotes() {
+        if (notesLoader != null) {
+            notes = notesLoader.apply(notesRef);
+            notesLoader = null;
+        }
         return notes;
     }
 
-    public void setNotes(String notes) {
+    public synchronized void setNotes(String notes) {
         this.notes = notes;
+        this.notesRef = null;
+        this.notesLoader = null;
+    }
+
+    /**
+     * Gets the reference of the notes in a note store.
+     *
+     * @return The reference, or null if the notes are held inline.
+     */
+    public synchronized String getNotesRef() {
+        return notesRef;
+    }
+
+    /**
+     * Replaces the notes by a reference that is only resolved when the notes
+     * are first read.
+     *
+     * @param notesRef The reference in the note store.
+     * @param loader   Loads the notes of a reference.
+     */
+    public synchronized void setNotesRef(String notesRef, Function<String, String> loader) {
+        this.notes = null;
+        this.notesRef = notesRef;
+        this.notesLoader = loader;
     }
 }
\ No newline at end of file
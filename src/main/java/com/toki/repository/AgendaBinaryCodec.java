@@ -0,0 +1,128 @@
+package com.toki.repository;
+
+import com.toki.model.AgendaAbstract;
+import com.toki.model.AgendaRegular;
+import com.toki.model.AgendaSpecial;
+import com.toki.model.AgendaTask;
+
+import java.nio.ByteBuffer;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * Encodes the type specific columns of a fixed-width binary agenda record.
+ * The common columns (ID, strings) are handled by AgendaBinaryRepository;
+ * a codec only fills the epoch-day, time, day-of-week and priority columns.
+ *
+ * @param <T> The agenda type handled by the codec.
+ */
+public interface AgendaBinaryCodec<T extends AgendaAbstract> {
+
+    // Column offsets inside a record, shared with AgendaBinaryRepository
+    int DAY_OF_WEEK = 6;
+    int SECOND = 7;
+    int EPOCH_DAY = 8;
+    int MINUTE_OF_DAY = 12;
+    // A full char, so priorities outside Latin-1 survive
+    int PRIORITY = 14;
+
+    int NO_DATE = Integer.MIN_VALUE;
+    short NO_TIME = -1;
+
+    /**
+     * Writes the type specific columns of an agenda.
+     *
+     * @param agenda  The agenda to encode.
+     * @param records The record buffer.
+     * @param offset  Start of the record in the buffer.
+     */
+    void encode(T agenda, ByteBuffer records, int offset);
+
+    /**
+     * Creates an agenda from its common fields and the type specific columns.
+     *
+     * @param ID      The agenda ID.
+     * @param title   The title.
+     * @param type    The type string.
+     * @param group   The group, may be null.
+     * @param notes   The notes, may be null.
+     * @param records The record buffer.
+     * @param offset  Start of the record in the buffer.
+     * @return The decoded agenda.
+     */
+    T decode(int ID, String title, String type, String group, String notes, ByteBuffer records, int offset);
+
+    AgendaBinaryCodec<AgendaTask> TASK = new AgendaBinaryCodec<>() {
+        @Override
+        public void encode(AgendaTask task, ByteBuffer records, int offset) {
+            putDate(records, offset, task.getDue());
+            putTime(records, offset, null);
+            records.putChar(offset + PRIORITY, task.getPriority());
+            records.put(offset + DAY_OF_WEEK, (byte) 0);
+        }
+
+        @Override
+        public AgendaTask decode(int ID, String title, String type, String group, String notes,
+                ByteBuffer records, int offset) {
+            return new AgendaTask(ID, title, type, group, getDate(records, offset),
+                    records.getChar(offset + PRIORITY), notes);
+        }
+    };
+
+    AgendaBinaryCodec<AgendaSpecial> SPECIAL = new AgendaBinaryCodec<>() {
+        @Override
+        public void encode(AgendaSpecial special, ByteBuffer records, int offset) {
+            putDate(records, offset, special.getDate());
+            putTime(records, offset, special.getTime());
+            records.putChar(offset + PRIORITY, (char) 0);
+            records.put(offset + DAY_OF_WEEK, (byte) 0);
+        }
+
+        @Override
+        public AgendaSpecial decode(int ID, String title, String type, String group, String notes,
+                ByteBuffer records, int offset) {
+            return new AgendaSpecial(ID, title, type, group, getDate(records, offset), getTime(records, offset), notes);
+        }
+    };
+
+    AgendaBinaryCodec<AgendaRegular> REGULAR = new AgendaBinaryCodec<>() {
+        @Override
+        public void encode(AgendaRegular regular, ByteBuffer records, int offset) {
+            putDate(records, offset, null);
+            putTime(records, offset, regular.getTime());
+            records.putChar(offset + PRIORITY, (char) 0);
+            records.put(offset + DAY_OF_WEEK, (byte) (regular.getDay() != null ? regular.getDay().getValue() : 0));
+        }
+
+        @Override
+        public AgendaRegular decode(int ID, String title, String type, String group, String notes,
+                ByteBuffer records, int offset) {
+            byte day = records.get(offset + DAY_OF_WEEK);
+            return new AgendaRegular(ID, title, type, group, day > 0 ? DayOfWeek.of(day) : null,
+                    getTime(records, offset), notes);
+        }
+    };
+
+    static void putDate(ByteBuffer records, int offset, LocalDate date) {
+        records.putInt(offset + EPOCH_DAY, date != null ? (int) date.toEpochDay() : NO_DATE);
+    }
+
+    static LocalDate getDate(ByteBuffer records, int offset) {
+        int epochDay = records.getInt(offset + EPOCH_DAY);
+        return epochDay != NO_DATE ? LocalDate.ofEpochDay(epochDay) : null;
+    }
+
+    static void putTime(ByteBuffer records, int offset, LocalTime time) {
+        records.putShort(offset + MINUTE_OF_DAY, time != null ? (short) (time.getHour() * 60 + time.getMinute()) : NO_TIME);
+        records.put(offset + SECOND, (byte) (time != null ? time.getSecond() : 0));
+    }
+
+    static LocalTime getTime(ByteBuffer records, int offset) {
+        short minuteOfDay = records.getShort(offset + MINUTE_OF_DAY);
+        if (minuteOfDay == NO_TIME) {
+            return null;
+        }
+        return LocalTime.of(minuteOfDay / 60, minuteOfDay % 60, records.get(offset + SECOND));
+    }
+}
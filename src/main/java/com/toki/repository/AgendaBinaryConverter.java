@@ -0,0 +1,57 @@
+package com.toki.repository;
+
+import com.toki.model.AgendaAbstract;
+
+/**
+ * One-shot converter from the JSON data files to the binary agenda stores.
+ * Run with an optional data directory argument (default "data/database"):
+ * regular.json, special.json and task.json are converted to .bin/.heap
+ * pairs next to them. The JSON files are left untouched, and running it
+ * again updates the binary stores in place.
+ */
+public class AgendaBinaryConverter {
+
+    public static void main(String[] args) {
+        String directory = args.length > 0 ? args[0] : "data/database";
+
+        convert(new AgendaRegularRepository(directory + "/regular.json", StorageOptions.direct()),
+                AgendaBinaryRepository.forRegular(directory + "/regular"));
+        convert(new AgendaSpecialRepository(directory + "/special.json", StorageOptions.direct()),
+                AgendaBinaryRepository.forSpecial(directory + "/special"));
+        convert(new AgendaTaskRepository(directory + "/task.json", StorageOptions.direct()),
+                AgendaBinaryRepository.forTask(directory + "/task"));
+    }
+
+    /**
+     * Copies every agenda of a repository into a binary store and closes the
+     * store. Converting again brings the store up to date without growing
+     * it: strings that did not change are not appended again, and agendas no
+     * longer in the repository are deleted.
+     *
+     * @param source The repository to read from.
+     * @param target The binary store to write to.
+     * @return The number of converted agendas.
+     */
+    public static <T extends AgendaAbstract> int convert(Agenda_RepositoryInterface<T> source,
+            AgendaBinaryRepository<T> target) {
+        int converted = 0;
+        try (target) {
+            IdIndex sourceIds = new IdIndex();
+            for (T agenda : source.findAll()) {
+                target.save(agenda);
+                sourceIds.put(agenda.getID(), 0);
+                converted++;
+            }
+            for (T stale : target.findAll()) {
+                if (!sourceIds.contains(stale.getID())) {
+                    target.deleteByID(stale.getID());
+                }
+            }
+        }
+        System.out.println("✅ Converted " + converted + " agendas to binary store (" + target.count() + " stored)");
+        return converted;
+    }
+
+    private AgendaBinaryConverter() {
+    }
+}
@@ -0,0 +1,626 @@
+package com.toki.repository;
+
+import com.toki.model.AgendaAbstract;
+import com.toki.model.AgendaRegular;
+import com.toki.model.AgendaSpecial;
+import com.toki.model.AgendaTask;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Binary, memory-mapped Agenda repository for large archives.
+ * <p>
+ * Agendas are stored as fixed-width records in {@code <base>.bin} and their
+ * strings in an append-only heap file {@code <base>.heap}. Both files are
+ * mapped with {@link FileChannel#map}, so a lookup by ID reads a single record
+ * in place instead of parsing the whole store.
+ * <p>
+ * Record layout (48 bytes): ID, flags, day-of-week, second, epoch-day,
+ * minute-of-day, priority, then (offset, length) pairs into the heap for
+ * title, type, group and notes.
+ * <p>
+ * A string equal to the one a record already points to is not appended again.
+ * Once less than half of the heap is referenced by live records, it is
+ * compacted into a heap file of the next generation ({@code <base>.1.heap},
+ * ...) and a record file of the same generation ({@code <base>.1.bin})
+ * pointing into it. No file is renamed over, truncated or deleted while it
+ * is mapped, which Windows refuses: the new record file appears under its
+ * own name, and the files of older generations are deleted once they are
+ * unmapped, or on the next open.
+ *
+ * @param <T> The agenda type stored in the file.
+ */
+public class AgendaBinaryRepository<T extends AgendaAbstract> implements Agenda_RepositoryInterface<T>, AutoCloseable {
+
+    public static final int RECORD_SIZE = 48;
+
+    private static final int MAGIC = 0x544F4B42; // "TOKB"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 32;
+    private static final int HEADER_SLOT_COUNT = 12;
+    private static final int HEADER_HEAP_GENERATION = 16;
+
+    private static final int ID = 0;
+    private static final int FLAGS = 4;
+    private static final int TITLE = 16;
+    private static final int TYPE = 24;
+    private static final int GROUP = 32;
+    private static final int NOTES = 40;
+
+    private static final byte LIVE = 1;
+    private static final int NO_STRING = -1;
+    private static final int[] STRING_COLUMNS = {TITLE, TYPE, GROUP, NOTES};
+    private static final int INITIAL_CAPACITY = 1024;
+    // Heaps smaller than this are never compacted
+    private static final long MIN_COMPACTION_BYTES = 64 * 1024;
+    // Offsets into the heap are stored as ints
+    private static final long MAX_HEAP_BYTES = Integer.MAX_VALUE;
+
+    private final String basePath;
+    private final AgendaBinaryCodec<T> codec;
+    private FileChannel recordChannel;
+    private FileChannel heapChannel;
+
+    private MappedByteBuffer records;
+    private MappedByteBuffer heap;
+    private int capacity;
+    private int slotCount;
+    // Generation of the record file, which is older than the heap's only in stores compacted by earlier releases
+    private int recordGeneration;
+    private int heapGeneration;
+    private long heapEnd;
+    // Bytes of the heap referenced by live records; the rest is garbage
+    private long liveHeapBytes;
+
+    private final IdIndex index = new IdIndex();
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+
+    /**
+     * Opens (or creates) a binary store.
+     *
+     * @param basePath Path of the store without extension, e.g. "data/database/task".
+     * @param codec    Codec of the stored agenda type.
+     */
+    public AgendaBinaryRepository(String basePath, AgendaBinaryCodec<T> codec) {
+        this.basePath = basePath;
+        this.codec = codec;
+        try {
+            File parentDir = recordFile(0).getAbsoluteFile().getParentFile();
+            if (!parentDir.exists()) {
+                parentDir.mkdirs();
+            }
+            recordGeneration = latestRecordGeneration();
+            this.recordChannel = openChannel(recordFile(recordGeneration));
+            open();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open binary store " + basePath, e);
+        }
+    }
+
+    public static AgendaBinaryRepository<AgendaRegular> forRegular(String basePath) {
+        return new AgendaBinaryRepository<>(basePath, AgendaBinaryCodec.REGULAR);
+    }
+
+    public static AgendaBinaryRepository<AgendaSpecial> forSpecial(String basePath) {
+        return new AgendaBinaryRepository<>(basePath, AgendaBinaryCodec.SPECIAL);
+    }
+
+    public static AgendaBinaryRepository<AgendaTask> forTask(String basePath) {
+        return new AgendaBinaryRepository<>(basePath, AgendaBinaryCodec.TASK);
+    }
+
+    private void open() throws IOException {
+        if (recordChannel.size() < HEADER_SIZE) {
+            capacity = INITIAL_CAPACITY;
+            mapRecords();
+            writeHeader(records, 0, 0);
+            records.force();
+            openHeap();
+            return;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        recordChannel.read(header, 0);
+        if (header.getInt(0) != MAGIC || header.getInt(8) != RECORD_SIZE) {
+            throw new IOException("Not a Toki binary agenda store");
+        }
+        if (header.getInt(4) != VERSION) {
+            throw new IOException("Binary agenda store version " + header.getInt(4) + " is not supported");
+        }
+
+        capacity = (int) ((recordChannel.size() - HEADER_SIZE) / RECORD_SIZE);
+        mapRecords();
+        slotCount = records.getInt(HEADER_SLOT_COUNT);
+        heapGeneration = records.getInt(HEADER_HEAP_GENERATION);
+        openHeap();
+        // Files of other generations are left over from a compaction that did or did not complete
+        deleteOtherGenerations();
+
+        // Only the ID, flag and string length columns are touched to build the index
+        for (int slot = 0; slot < slotCount; slot++) {
+            int offset = offsetOf(slot);
+            if (records.get(offset + FLAGS) == LIVE) {
+                index.put(records.getInt(offset + ID), slot);
+                liveHeapBytes += stringBytes(offset);
+            } else {
+                pushFreeSlot(slot);
+            }
+        }
+    }
+
+    private void openHeap() throws IOException {
+        heapChannel = openChannel(heapFile(heapGeneration));
+        heapEnd = heapChannel.size();
+        mapHeap();
+    }
+
+    private static void writeHeader(ByteBuffer buffer, int slots, int generation) {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, RECORD_SIZE);
+        buffer.putInt(HEADER_SLOT_COUNT, slots);
+        buffer.putInt(HEADER_HEAP_GENERATION, generation);
+    }
+
+    /**
+     * Writes the record file of a new generation. It is written to a temp
+     * file and renamed to a name nothing maps yet, so it either appears
+     * complete or not at all.
+     */
+    private void writeRecordFile(ByteBuffer content, int generation) throws IOException {
+        File target = recordFile(generation);
+        File temp = File.createTempFile(target.getName() + ".", ".tmp", target.getAbsoluteFile().getParentFile());
+        try (FileChannel out = openChannel(temp)) {
+            content.position(0);
+            while (content.hasRemaining()) {
+                out.write(content);
+            }
+            out.force(true);
+        }
+        AtomicFileWriter.replace(temp, target);
+        AtomicFileWriter.syncDirectory(target);
+    }
+
+    /**
+     * Finds the newest record file. Record files only appear complete, so
+     * the newest one is the current store.
+     */
+    private int latestRecordGeneration() {
+        int latest = 0;
+        for (File file : generationFiles()) {
+            Matcher name = generationName().matcher(file.getName());
+            if (name.matches() && name.group(1) != null && name.group(2).equals("bin")) {
+                latest = Math.max(latest, Integer.parseInt(name.group(1)));
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * Deletes the record and heap files of every generation but the open
+     * ones. A file still mapped by this process cannot be deleted on Windows;
+     * it is left for the next open.
+     */
+    private void deleteOtherGenerations() {
+        for (File file : generationFiles()) {
+            Matcher name = generationName().matcher(file.getName());
+            if (!name.matches()) {
+                continue;
+            }
+            int generation = name.group(1) != null ? Integer.parseInt(name.group(1)) : 0;
+            boolean current = generation == (name.group(2).equals("bin") ? recordGeneration : heapGeneration);
+            if (!current) {
+                try {
+                    Files.deleteIfExists(file.toPath());
+                } catch (IOException e) {
+                    System.err.println("Cannot delete " + file.getPath() + " yet: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private File[] generationFiles() {
+        File[] files = recordFile(0).getAbsoluteFile().getParentFile().listFiles();
+        return files != null ? files : new File[0];
+    }
+
+    // <base>.bin, <base>.heap, <base>.N.bin or <base>.N.heap
+    private Pattern generationName() {
+        return Pattern.compile(Pattern.quote(new File(basePath).getName()) + "(?:\\.(\\d+))?\\.(bin|heap)");
+    }
+
+    private File recordFile(int generation) {
+        return new File(generation == 0 ? basePath + ".bin" : basePath + "." + generation + ".bin");
+    }
+
+    private File heapFile(int generation) {
+        return new File(generation == 0 ? basePath + ".heap" : basePath + "." + generation + ".heap");
+    }
+
+    private static FileChannel openChannel(File file) throws IOException {
+        return FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private void mapRecords() throws IOException {
+        records = recordChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * RECORD_SIZE);
+    }
+
+    private void mapHeap() throws IOException {
+        heap = heapChannel.map(FileChannel.MapMode.READ_ONLY, 0, heapEnd);
+    }
+
+    private static int offsetOf(int slot) {
+        return HEADER_SIZE + slot * RECORD_SIZE;
+    }
+
+    @Override
+    public synchronized T findByID(int ID) {
+        int slot = index.get(ID);
+        return slot >= 0 ? decode(slot) : null;
+    }
+
+    @Override
+    public synchronized List<T> findAll() {
+        List<T> agendas = new ArrayList<>(index.size());
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (records.get(offsetOf(slot) + FLAGS) == LIVE) {
+                agendas.add(decode(slot));
+            }
+        }
+        return agendas;
+    }
+
+    /**
+     * Scans the epoch-day column in place and decodes only the records in range.
+     */
+    @Override
+    public synchronized List<T> findBetween(LocalDate from, LocalDate to) {
+        long fromDay = from.toEpochDay();
+        long toDay = to.toEpochDay();
+        List<T> agendas = new ArrayList<>();
+        for (int slot = 0; slot < slotCount; slot++) {
+            int offset = offsetOf(slot);
+            if (records.get(offset + FLAGS) != LIVE) {
+                continue;
+            }
+            int epochDay = records.getInt(offset + AgendaBinaryCodec.EPOCH_DAY);
+            if (epochDay != AgendaBinaryCodec.NO_DATE && epochDay >= fromDay && epochDay <= toDay) {
+                agendas.add(decode(slot));
+            }
+        }
+        return agendas;
+    }
+
+    /**
+     * Counts the stored agendas without reading any record.
+     *
+     * @return The number of live agendas.
+     */
+    @Override
+    public synchronized long count() {
+        return index.size();
+    }
+
+    /**
+     * Scans the ID column in place and decodes only the records of the page.
+     */
+    @Override
+    public synchronized List<T> findPage(int afterId, int limit) {
+        if (limit <= 0) {
+            return new ArrayList<>();
+        }
+        // Slots of the limit smallest IDs seen so far, largest ID on top
+        PriorityQueue<Integer> page = new PriorityQueue<>(Math.min(limit, 1024) + 1,
+                Comparator.comparingInt(this::idAt).reversed());
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (records.get(offsetOf(slot) + FLAGS) == LIVE && idAt(slot) > afterId) {
+                page.add(slot);
+                if (page.size() > limit) {
+                    page.poll();
+                }
+            }
+        }
+        List<Integer> slots = new ArrayList<>(page);
+        slots.sort(Comparator.comparingInt(this::idAt));
+        List<T> agendas = new ArrayList<>(slots.size());
+        for (int slot : slots) {
+            agendas.add(decode(slot));
+        }
+        return agendas;
+    }
+
+    /**
+     * Streams the stored agendas, decoding each record only when the stream
+     * reaches it. Records saved or deleted while the stream is open may or
+     * may not be seen.
+     */
+    @Override
+    public Stream<T> stream() {
+        return IntStream.range(0, Integer.MAX_VALUE)
+                .takeWhile(slot -> slot < slotCount())
+                .mapToObj(this::decodeIfLive)
+                .filter(Objects::nonNull);
+    }
+
+    private synchronized int slotCount() {
+        return slotCount;
+    }
+
+    private synchronized T decodeIfLive(int slot) {
+        return slot < slotCount && records.get(offsetOf(slot) + FLAGS) == LIVE ? decode(slot) : null;
+    }
+
+    private int idAt(int slot) {
+        return records.getInt(offsetOf(slot) + ID);
+    }
+
+    /**
+     * Saves an agenda. Its strings reach the heap and the record is forced
+     * to disk before a new slot is counted in the header, so a crash never
+     * leaves a counted slot with garbage in it.
+     */
+    @Override
+    public synchronized void save(T agenda) {
+        try {
+            byte[][] strings = {utf8(agenda.getTitle()), utf8(agenda.getType()), utf8(agenda.getGroup()),
+                    utf8(agenda.getNotes())};
+            reserveHeap(strings);
+
+            int slot = index.get(agenda.getID());
+            boolean appended = false;
+            if (slot >= 0) {
+                liveHeapBytes -= stringBytes(offsetOf(slot));
+            } else {
+                if (freeCount > 0) {
+                    slot = freeSlots[--freeCount];
+                } else {
+                    slot = reserveSlot();
+                    appended = true;
+                }
+                index.put(agenda.getID(), slot);
+            }
+            int offset = offsetOf(slot);
+            for (int i = 0; i < STRING_COLUMNS.length; i++) {
+                putString(offset + STRING_COLUMNS[i], strings[i]);
+            }
+            liveHeapBytes += stringBytes(offset);
+            heapChannel.force(false);
+
+            records.putInt(offset + ID, agenda.getID());
+            codec.encode(agenda, records, offset);
+            records.put(offset + FLAGS, LIVE);
+            records.force(offset, RECORD_SIZE);
+            if (appended) {
+                records.putInt(HEADER_SLOT_COUNT, ++slotCount);
+                records.force(0, HEADER_SIZE);
+            }
+            compactIfWasteful();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void deleteByID(int ID) {
+        int slot = index.remove(ID);
+        if (slot >= 0) {
+            liveHeapBytes -= stringBytes(offsetOf(slot));
+            records.put(offsetOf(slot) + FLAGS, (byte) 0);
+            records.force(offsetOf(slot), RECORD_SIZE);
+            pushFreeSlot(slot);
+        }
+    }
+
+    /**
+     * Gets the size of the heap file, including strings no record uses any more.
+     *
+     * @return The size in bytes.
+     */
+    public synchronized long heapSize() {
+        return heapEnd;
+    }
+
+    /**
+     * Flushes the mapped records to disk.
+     */
+    public synchronized void flush() {
+        records.force();
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            records.force();
+            recordChannel.close();
+            heapChannel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Makes room for the slot after the last one. It is only counted in the
+     * header once its record is written.
+     */
+    private int reserveSlot() throws IOException {
+        if (slotCount == capacity) {
+            capacity *= 2;
+            mapRecords();
+        }
+        return slotCount;
+    }
+
+    /**
+     * Compacts the heap once most of it is garbage, see {@link #compact()}.
+     */
+    private void compactIfWasteful() throws IOException {
+        if (heapEnd > MIN_COMPACTION_BYTES && heapEnd > 2 * liveHeapBytes) {
+            compact();
+        }
+    }
+
+    /**
+     * Copies the strings of the live records into a heap file of the next
+     * generation, then writes a record file of that generation pointing into
+     * it. The old files stay untouched, so a crash leaves either the old or
+     * the new store; the files of the other generation are deleted once the
+     * new ones are open, or on the next open.
+     */
+    public synchronized void compact() throws IOException {
+        int generation = heapGeneration + 1;
+        File newHeapFile = heapFile(generation);
+        ByteBuffer newRecords = ByteBuffer.allocate(HEADER_SIZE + capacity * RECORD_SIZE);
+        long newHeapEnd = 0;
+        try (FileChannel newHeap = FileChannel.open(newHeapFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeHeader(newRecords, slotCount, generation);
+            for (int slot = 0; slot < slotCount; slot++) {
+                int offset = offsetOf(slot);
+                newRecords.put(offset, records, offset, RECORD_SIZE);
+                for (int column : STRING_COLUMNS) {
+                    int length = records.getInt(offset + column + 4);
+                    if (records.get(offset + FLAGS) != LIVE || records.getInt(offset + column) == NO_STRING) {
+                        newRecords.putInt(offset + column, NO_STRING);
+                        newRecords.putInt(offset + column + 4, 0);
+                        continue;
+                    }
+                    ByteBuffer bytes = heapSlice(records.getInt(offset + column), length);
+                    newRecords.putInt(offset + column, (int) newHeapEnd);
+                    while (bytes.hasRemaining()) {
+                        newHeapEnd += newHeap.write(bytes, newHeapEnd);
+                    }
+                }
+            }
+            newHeap.force(true);
+        }
+        writeRecordFile(newRecords, generation);
+        records = null;
+        heap = null;
+        recordChannel.close();
+        heapChannel.close();
+        recordGeneration = generation;
+        heapGeneration = generation;
+        recordChannel = openChannel(recordFile(generation));
+        mapRecords();
+        openHeap();
+        deleteOtherGenerations();
+        liveHeapBytes = heapEnd;
+    }
+
+    private void pushFreeSlot(int slot) {
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    private T decode(int slot) {
+        int offset = offsetOf(slot);
+        return codec.decode(records.getInt(offset + ID),
+                getString(offset + TITLE), StringPool.canonical(getString(offset + TYPE)),
+                StringPool.canonical(getString(offset + GROUP)), getString(offset + NOTES),
+                records, offset);
+    }
+
+    /**
+     * Makes sure the strings of a record fit in the heap, whose offsets are
+     * ints, compacting it first if needed.
+     */
+    private void reserveHeap(byte[][] strings) throws IOException {
+        long needed = 0;
+        for (byte[] bytes : strings) {
+            needed += bytes != null ? bytes.length : 0;
+        }
+        if (heapEnd + needed > MAX_HEAP_BYTES) {
+            compact();
+            if (heapEnd + needed > MAX_HEAP_BYTES) {
+                throw new IOException("Heap of " + basePath + " would exceed " + MAX_HEAP_BYTES + " bytes");
+            }
+        }
+    }
+
+    /**
+     * Points a string column at a value, appending it to the heap unless
+     * the column already holds the same bytes.
+     */
+    private void putString(int column, byte[] bytes) throws IOException {
+        if (bytes == null) {
+            records.putInt(column, NO_STRING);
+            records.putInt(column + 4, 0);
+            return;
+        }
+        int current = records.getInt(column);
+        if (current >= 0 && records.getInt(column + 4) == bytes.length
+                && current + (long) bytes.length <= heapEnd
+                && heapSlice(current, bytes.length).equals(ByteBuffer.wrap(bytes))) {
+            return;
+        }
+        ByteBuffer source = ByteBuffer.wrap(bytes);
+        long position = heapEnd;
+        while (source.hasRemaining()) {
+            position += heapChannel.write(source, position);
+        }
+        records.putInt(column, (int) heapEnd);
+        records.putInt(column + 4, bytes.length);
+        heapEnd = position;
+    }
+
+    private static byte[] utf8(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    /**
+     * Sums the string lengths of a record.
+     */
+    private long stringBytes(int offset) {
+        long bytes = 0;
+        for (int column : STRING_COLUMNS) {
+            if (records.getInt(offset + column) != NO_STRING) {
+                bytes += records.getInt(offset + column + 4);
+            }
+        }
+        return bytes;
+    }
+
+    private ByteBuffer heapSlice(int offset, int length) {
+        if (offset + (long) length > heap.capacity()) {
+            try {
+                mapHeap();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return heap.slice(offset, length);
+    }
+
+    private String getString(int column) {
+        int offset = records.getInt(column);
+        if (offset == NO_STRING) {
+            return null;
+        }
+        int length = records.getInt(column + 4);
+        byte[] bytes = new byte[length];
+        heapSlice(offset, length).get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
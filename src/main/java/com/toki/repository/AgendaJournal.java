@@ -0,0 +1,271 @@
+package com.toki.repository;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.toki.model.AgendaAbstract;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Append-only mutation log of a journaled Agenda repository.
+ * Each line is one compact JSON record in a {@link RecordFrame}, either
+ * {@code {"op":"put","v":3,"agenda":{...}}} or {@code {"op":"delete","id":N}},
+ * where {@code "v"} is the {@link AgendaSchema} version of the agenda (1 if
+ * missing). Agendas of an older version are migrated when replayed; lines
+ * written before frames were introduced are replayed unchecked.
+ * The current state is the snapshot file with both log segments replayed on top.
+ *
+ * @param <T> The agenda type stored in the log.
+ */
+public class AgendaJournal<T extends AgendaAbstract> {
+
+    /**
+     * Receives the mutations while a log is replayed.
+     */
+    public interface Target<T> {
+        void put(T agenda);
+
+        void delete(int ID);
+    }
+
+    /**
+     * One mutation of a batch: a put if the agenda is set, otherwise a delete.
+     * A delete may carry a condition on the stored agenda; it is checked where
+     * the delete is applied and is not written to the journal.
+     */
+    public record Mutation<T>(T agenda, int ID, Predicate<? super T> condition) {
+        public static <T extends AgendaAbstract> Mutation<T> put(T agenda) {
+            return new Mutation<>(agenda, agenda.getID(), null);
+        }
+
+        public static <T> Mutation<T> delete(int ID) {
+            return new Mutation<>(null, ID, null);
+        }
+
+        public static <T> Mutation<T> deleteIf(int ID, Predicate<? super T> condition) {
+            return new Mutation<>(null, ID, condition);
+        }
+
+        public boolean isDelete() {
+            return agenda == null;
+        }
+
+        /**
+         * Checks whether this delete removes the stored agenda with its ID.
+         *
+         * @param stored The stored agenda, or null if there is none.
+         * @return false if there is nothing to delete or the condition rejects it.
+         */
+        public boolean deletes(T stored) {
+            return stored != null && (condition == null || condition.test(stored));
+        }
+    }
+
+    private final File logFile;
+    private final File compactingFile;
+    private final Gson gson;
+    private final Class<T> type;
+    private FileOutputStream output;
+    private Writer writer;
+    // Identity of the file the writer appends to, to notice a rotation by another process
+    private Object outputKey;
+
+    /**
+     * Constructs the journal that belongs to a snapshot file.
+     *
+     * @param snapshotFile The JSON snapshot of the repository.
+     * @param gson         Gson used for the compact records.
+     * @param type         Class of the stored agendas.
+     */
+    public AgendaJournal(File snapshotFile, Gson gson, Class<T> type) {
+        this.logFile = new File(snapshotFile.getPath() + ".log");
+        this.compactingFile = new File(snapshotFile.getPath() + ".log.compacting");
+        this.gson = gson;
+        this.type = type;
+    }
+
+    /**
+     * Appends a batch of mutations with a single flush.
+     *
+     * @param mutations The mutations, in order.
+     */
+    public synchronized void appendAll(List<Mutation<T>> mutations) throws IOException {
+        for (Mutation<T> mutation : mutations) {
+            append(mutation.isDelete() ? deleteRecord(mutation.ID()) : putRecord(mutation.agenda()));
+        }
+        writer.flush();
+    }
+
+    private JsonObject putRecord(T agenda) {
+        JsonObject record = new JsonObject();
+        record.addProperty("op", "put");
+        record.addProperty("v", AgendaSchema.CURRENT_VERSION);
+        record.add("agenda", gson.toJsonTree(agenda, type));
+        return record;
+    }
+
+    private JsonObject deleteRecord(int ID) {
+        JsonObject record = new JsonObject();
+        record.addProperty("op", "delete");
+        record.addProperty("id", ID);
+        return record;
+    }
+
+    private void append(JsonObject record) throws IOException {
+        if (writer != null && !isWriterCurrent()) {
+            close();
+        }
+        if (writer == null) {
+            output = new FileOutputStream(logFile, true);
+            writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+            outputKey = fileKey();
+        }
+        writer.write(RecordFrame.frame(gson.toJson(record)));
+        writer.write('\n');
+    }
+
+    /**
+     * Checks that the open writer still appends to the active log, i.e. no
+     * other process moved it aside for a compaction since it was opened.
+     */
+    private boolean isWriterCurrent() {
+        if (outputKey == null) {
+            return true; // The file system has no file keys, rotations cannot be detected
+        }
+        try {
+            return outputKey.equals(fileKey());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private Object fileKey() throws IOException {
+        return Files.readAttributes(logFile.toPath(), BasicFileAttributes.class).fileKey();
+    }
+
+    /**
+     * Forces the appended records to disk.
+     */
+    public synchronized void sync() throws IOException {
+        if (output != null) {
+            output.getChannel().force(false);
+        }
+    }
+
+    /**
+     * Replays both log segments, oldest first.
+     * A line that fails its checksum or cannot be parsed (e.g. torn by a
+     * crash) is skipped.
+     *
+     * @param target Receiver of the replayed mutations.
+     */
+    public void replay(Target<T> target) {
+        replay(compactingFile, target);
+        replay(logFile, target);
+    }
+
+    private void replay(File segment, Target<T> target) {
+        if (!segment.exists()) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(segment.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                String text = RecordFrame.isFramed(line) ? RecordFrame.unframe(line) : line;
+                if (text == null) {
+                    System.err.println("❌ Skipping journal record with a bad checksum " + segment.getName() + ":"
+                            + lineNumber);
+                    continue;
+                }
+                try {
+                    JsonObject record = JsonParser.parseString(text).getAsJsonObject();
+                    if ("delete".equals(record.get("op").getAsString())) {
+                        target.delete(record.get("id").getAsInt());
+                    } else {
+                        int version = record.has("v") ? record.get("v").getAsInt() : 1;
+                        AgendaSchema.checkSupported(version);
+                        JsonObject agenda = AgendaSchema.upgrade(record.getAsJsonObject("agenda"), version);
+                        target.put(gson.fromJson(agenda, type));
+                    }
+                } catch (JsonParseException | IllegalStateException | NullPointerException | ClassCastException e) {
+                    System.err.println("❌ Skipping damaged journal record " + segment.getName() + ":" + lineNumber);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Moves the active log aside so a snapshot can be written while new
+     * mutations go to a fresh log. If a previous compaction did not finish,
+     * the active log is appended to its segment instead.
+     */
+    public synchronized void beginCompaction() throws IOException {
+        close();
+        if (!logFile.exists()) {
+            return;
+        }
+        if (compactingFile.exists()) {
+            try (FileOutputStream out = new FileOutputStream(compactingFile, true)) {
+                Files.copy(logFile.toPath(), out);
+                out.getChannel().force(false);
+            }
+            Files.delete(logFile.toPath());
+        } else {
+            Files.move(logFile.toPath(), compactingFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    /**
+     * Drops the folded segment once the new snapshot is safely on disk.
+     */
+    public void finishCompaction() throws IOException {
+        Files.deleteIfExists(compactingFile.toPath());
+    }
+
+    public boolean hasSegments() {
+        return logFile.exists() || compactingFile.exists();
+    }
+
+    /**
+     * Size of the log segments in bytes.
+     *
+     * @return The combined size of both segments.
+     */
+    public long length() {
+        return logFile.length() + compactingFile.length();
+    }
+
+    File logFile() {
+        return logFile;
+    }
+
+    File compactingFile() {
+        return compactingFile;
+    }
+
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.flush();
+            output.getChannel().force(false);
+            writer.close();
+            writer = null;
+            output = null;
+            outputKey = null;
+        }
+    }
+}
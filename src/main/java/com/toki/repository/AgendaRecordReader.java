@@ -0,0 +1,263 @@
+package com.toki.repository;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the records of an agenda data file one at a time in any schema
+ * version, migrating them to the current one (see {@link AgendaSchema}).
+ * <p>
+ * Damaged records never end the iteration with an exception; they are noted
+ * in {@link #damaged()} instead. Since version 3 every record is a
+ * {@link RecordFrame} on its own line, so a record whose checksum does not
+ * match or that cannot be parsed is skipped and reading goes on with the next
+ * line. Older files have no frames, so there reading stops at the first
+ * damaged record and only the records before it are returned; so does a
+ * framed file that was reformatted, whose checksums cannot be verified.
+ *
+ * @param <T> The agenda type stored in the file.
+ */
+class AgendaRecordReader<T> implements Iterator<T>, Closeable {
+
+    private static final String HEADER_START = "{\"" + AgendaSchema.VERSION_FIELD + "\":";
+    private static final String HEADER_END = ",\"" + AgendaSchema.RECORDS_FIELD + "\":[";
+    static final String FOOTER = "]}";
+    private static final int MAX_HEADER_LENGTH = HEADER_START.length() + 11 + HEADER_END.length() + 2;
+
+    private final BufferedReader in;
+    private final JsonReader json;
+    private final Gson gson;
+    private final Type type;
+    private final int version;
+    private final List<String> damaged = new ArrayList<>();
+
+    private T next;
+    private boolean finished;
+    private int position;
+
+    private AgendaRecordReader(BufferedReader in, JsonReader json, Gson gson, Type type, int version) {
+        this.in = in;
+        this.json = json;
+        this.gson = gson;
+        this.type = type;
+        this.version = version;
+    }
+
+    /**
+     * Reads the header of a data file.
+     *
+     * @param reader The text of the data file; closed with this reader.
+     * @param gson   Gson bound to the agenda adapters.
+     * @param type   Class of the stored agendas.
+     * @return A reader positioned before the first record.
+     * @throws JsonParseException If the header cannot be read or its version is not supported.
+     */
+    static <T> AgendaRecordReader<T> open(Reader reader, Gson gson, Type type) throws IOException {
+        BufferedReader in = reader instanceof BufferedReader buffered ? buffered : new BufferedReader(reader);
+        try {
+            int framedVersion = readFramedHeader(in);
+            if (framedVersion > 0) {
+                AgendaSchema.checkSupported(framedVersion);
+                return new AgendaRecordReader<>(in, null, gson, type, framedVersion);
+            }
+            JsonReader json = new JsonReader(in);
+            int version = AgendaSchema.readHeader(json);
+            AgendaSchema.checkSupported(version);
+            return new AgendaRecordReader<>(in, json, gson, type, version);
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads only the schema version of a data file, even one this release
+     * cannot read.
+     *
+     * @param reader The text of the data file; closed before returning.
+     * @return The version.
+     * @throws JsonParseException If the header cannot be read.
+     */
+    static int readVersion(Reader reader) throws IOException {
+        try (BufferedReader in = reader instanceof BufferedReader buffered ? buffered : new BufferedReader(reader)) {
+            int framedVersion = readFramedHeader(in);
+            return framedVersion > 0 ? framedVersion : AgendaSchema.readHeader(new JsonReader(in));
+        }
+    }
+
+    /**
+     * Consumes the header line of a framed file. Anything else is left unread.
+     *
+     * @return The version, or -1 if the file is not framed.
+     */
+    private static int readFramedHeader(BufferedReader in) throws IOException {
+        in.mark(MAX_HEADER_LENGTH);
+        char[] head = new char[MAX_HEADER_LENGTH];
+        int length = 0;
+        int read;
+        while (length < head.length && (read = in.read(head, length, head.length - length)) > 0) {
+            length += read;
+        }
+        String start = new String(head, 0, length);
+        int end = start.indexOf('\n');
+        int version = end > 0 ? headerVersion(start.substring(0, end)) : -1;
+        in.reset();
+        if (version > 0) {
+            in.skip(end + 1);
+        }
+        return version;
+    }
+
+    /**
+     * Parses the header line of a framed file, {"schemaVersion":N,"records":[
+     *
+     * @param line The first line of a data file.
+     * @return The version, or -1 if the line is not a framed header.
+     */
+    static int headerVersion(String line) {
+        if (line.length() <= HEADER_START.length() + HEADER_END.length()
+                || !line.startsWith(HEADER_START) || !line.endsWith(HEADER_END)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(line, HEADER_START.length(), line.length() - HEADER_END.length(), 10);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Describes the damaged records seen so far.
+     *
+     * @return One message per damaged record or segment.
+     */
+    List<String> damaged() {
+        return damaged;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !finished) {
+            try {
+                next = json != null ? readUnframed() : readFramed();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        T record = next;
+        next = null;
+        return record;
+    }
+
+    /**
+     * Counts the remaining intact records without turning them into agendas.
+     *
+     * @return The number of records.
+     */
+    long skipAll() throws IOException {
+        long count = 0;
+        if (json != null) {
+            try {
+                while (json.hasNext()) {
+                    json.skipValue();
+                    count++;
+                }
+            } catch (IOException | IllegalStateException e) {
+                damaged.add("records from " + (count + 1) + " on are unreadable: " + e.getMessage());
+            }
+            return count;
+        }
+        while (nextFrame() != null) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Reads the next record of a file without frames. Any error ends the file.
+     */
+    private T readUnframed() {
+        try {
+            if (json.hasNext()) {
+                position++;
+                return AgendaSchema.readRecord(gson, json, type, version);
+            }
+        } catch (IOException | IllegalStateException | JsonParseException e) {
+            damaged.add("records from " + Math.max(position, 1) + " on are unreadable: " + e.getMessage());
+        }
+        finished = true;
+        return null;
+    }
+
+    /**
+     * Reads the next intact record of a framed file and binds it, skipping
+     * records that cannot be read.
+     */
+    private T readFramed() throws IOException {
+        String record;
+        while ((record = nextFrame()) != null) {
+            try {
+                return AgendaSchema.bindFramed(gson, record, type, version);
+            } catch (JsonParseException | IllegalStateException e) {
+                damaged.add("line " + (position + 1) + " cannot be read: " + e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads lines until one holds a record with a matching checksum.
+     *
+     * @return The JSON of the record, or null at the end of the file.
+     */
+    private String nextFrame() throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            position++;
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (line.equals(FOOTER)) {
+                finished = true;
+                return null;
+            }
+            String record = RecordFrame.unframe(line, line.endsWith(",") ? line.length() - 1 : line.length());
+            if (record != null) {
+                return record;
+            }
+            damaged.add("line " + (position + 1) + " fails its checksum: " + abbreviate(line));
+        }
+        finished = true;
+        damaged.add("file ends after line " + (position + 1) + " without the closing " + FOOTER);
+        return null;
+    }
+
+    private static String abbreviate(String line) {
+        return line.length() <= 80 ? line : line.substring(0, 77) + "...";
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -1,132 +1,77 @@
 package com.toki.repository;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
 import com.toki.model.AgendaRegular;
 
-import java.io.*;
-import java.lang.reflect.Type;
+import java.time.DayOfWeek;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
-import com.google.gson.TypeAdapter;
-import com.google.gson.stream.JsonReader;
-import com.google.gson.stream.JsonWriter;
-
-import java.time.LocalDate;
-import java.time.LocalTime;
-import java.time.format.DateTimeFormatter;
-
 /**
  * Repository implementation for Regular Agendas.
- * Manages in-memory storage of AgendaRegular objects.
+ * Stores AgendaRegular objects in data/database/regular.json.
  */
-public class AgendaRegularRepository implements Agenda_RepositoryInterface<AgendaRegular> {
+public class AgendaRegularRepository extends Agenda_RepositoryAbstract<AgendaRegular> {
 
     private static final String FILE_PATH = "data/database/regular.json";
-    private final Gson gson;
-    private final Type agendaListType;
-
-    public AgendaRegularRepository() {
-        this.gson = new GsonBuilder()
-                .setPrettyPrinting()
-                .registerTypeAdapter(LocalDate.class, new LocalDateAdapter())
-                .registerTypeAdapter(LocalTime.class, new LocalTimeAdapter())
-                .create();
-
-        this.agendaListType = new TypeToken<List<AgendaRegular>>() {
-        }.getType();
-
-        File file = new File(FILE_PATH);
-        File parentDir = file.getParentFile();
 
-        if (parentDir != null && !parentDir.exists()) {
-            parentDir.mkdirs();
-        }
-    }
-
-    @Override
-    public List<AgendaRegular> findAll() {
-        File file = new File(FILE_PATH);
-        if (!file.exists() || file.length() == 0) {
-            return new ArrayList<>();
-        }
-        try (Reader reader = new FileReader(file)) {
-            List<AgendaRegular> agendas = gson.fromJson(reader, agendaListType);
-            return agendas != null ? agendas : new ArrayList<>();
-        } catch (IOException e) {
-            e.printStackTrace();
-            return new ArrayList<>();
-        }
-    }
+    private final DayOfWeekIndex dayIndex = new DayOfWeekIndex();
 
-    private void saveAll(List<AgendaRegular> agendas) {
-        try (Writer writer = new FileWriter(FILE_PATH)) {
-            gson.toJson(agendas, writer);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    public AgendaRegularRepository() {
+        this(StorageOptions.direct());
     }
 
-    @Override
-    public void save(AgendaRegular newAgenda) {
-        List<AgendaRegular> agendas = findAll();
-
-        // Filter out existing agenda by ID (Update logic)
-        List<AgendaRegular> filteredAgendas = agendas.stream()
-                .filter(a -> a.getID() != newAgenda.getID()) // <<< REFACTOR: Use getId()
-                .collect(Collectors.toList());
-
-        filteredAgendas.add(newAgenda);
-        saveAll(filteredAgendas);
+    public AgendaRegularRepository(StorageOptions options) {
+        this(FILE_PATH, options);
     }
 
-    @Override
-    public AgendaRegular findByID(int ID) { // <<< REFACTOR: Use int ID
-        return findAll().stream()
-                .filter(agenda -> agenda.getID() == ID) // <<< REFACTOR: Use getId()
-                .findFirst()
-                .orElse(null);
+    /**
+     * Constructs the repository on a specific data file.
+     *
+     * @param filePath Path of the JSON data file.
+     * @param options  Storage settings.
+     */
+    public AgendaRegularRepository(String filePath, StorageOptions options) {
+        super(filePath, AgendaRegular.class, options);
+        addIndex(dayIndex);
     }
 
-    @Override
-    public void deleteByID(int ID) { // <<< REFACTOR: Use int ID
-        List<AgendaRegular> agendas = findAll();
-        List<AgendaRegular> updatedList = agendas.stream()
-                .filter(a -> a.getID() != ID) // <<< REFACTOR: Use getId()
-                .collect(Collectors.toList());
-        if (updatedList.size() < agendas.size()) {
-            saveAll(updatedList);
-        }
+    /**
+     * Finds the agendas of one day of the week, sorted by time.
+     * In memory they come straight from the day partition.
+     *
+     * @param day The day of the week.
+     * @return The day's agendas.
+     */
+    public List<AgendaRegular> findByDay(DayOfWeek day) {
+        return queryIndexes(() -> dayIndex.get(day), () -> findAll().stream()
+                .filter(regular -> regular.getDay() == day)
+                .sorted(DayOfWeekIndex.BY_TIME)
+                .collect(Collectors.toList()));
     }
 
-    private static class LocalDateAdapter extends TypeAdapter<LocalDate> {
-        private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE;
-
-        @Override
-        public void write(JsonWriter out, LocalDate value) throws IOException {
-            out.value(value.format(FORMATTER));
-        }
-
-        @Override
-        public LocalDate read(JsonReader in) throws IOException {
-            return LocalDate.parse(in.nextString(), FORMATTER);
-        }
+    /**
+     * Finds the agendas of the whole week, partitioned by day and sorted by time.
+     *
+     * @return The agendas of each day, Monday first; days without agendas map to an empty list.
+     */
+    public Map<DayOfWeek, List<AgendaRegular>> findWeek() {
+        return queryIndexes(dayIndex::week, this::scanWeek);
     }
 
-    private static class LocalTimeAdapter extends TypeAdapter<LocalTime> {
-        private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("HH:mm:ss");
-
-        @Override
-        public void write(JsonWriter out, LocalTime value) throws IOException {
-            out.value(value.format(FORMATTER));
+    private Map<DayOfWeek, List<AgendaRegular>> scanWeek() {
+        Map<DayOfWeek, List<AgendaRegular>> week = new EnumMap<>(DayOfWeek.class);
+        for (DayOfWeek day : DayOfWeek.values()) {
+            week.put(day, new ArrayList<>());
         }
-
-        @Override
-        public LocalTime read(JsonReader in) throws IOException {
-            return LocalTime.parse(in.nextString(), FORMATTER);
+        for (AgendaRegular regular : findAll()) {
+            if (regular.getDay() != null) {
+                week.get(regular.getDay()).add(regular);
+            }
         }
+        week.values().forEach(agendas -> agendas.sort(DayOfWeekIndex.BY_TIME));
+        return week;
     }
-}
\ No newline at end of file
+}
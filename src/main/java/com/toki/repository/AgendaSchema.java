@@ -0,0 +1,182 @@
+package com.toki.repository;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.util.List;
+
+/**
+ * Schema versions of the agenda data files and the migrations between them.
+ * <p>
+ * Version 1 is the original layout, a bare JSON array of records. Since
+ * version 2 the same records are wrapped in an envelope that names their version,
+ * {@code {"schemaVersion":2,"records":[...]}}, and every journal record
+ * carries its version as {@code "v"}. Since version 3 each record is a
+ * {@link RecordFrame} on its own line, with a CRC32C of the record.
+ * <p>
+ * Files are never rewritten just to upgrade them: records of an older version
+ * are migrated one at a time as they are read, and reach the disk in the
+ * current version the next time the file is saved or the journal compacted.
+ * To change the schema, raise {@link #CURRENT_VERSION} and append the
+ * migration from the previous version to {@code MIGRATIONS}.
+ */
+public final class AgendaSchema {
+
+    public static final int CURRENT_VERSION = 3;
+
+    static final String VERSION_FIELD = "schemaVersion";
+    static final String RECORDS_FIELD = "records";
+    // First version whose records are wrapped in a RecordFrame
+    static final int FRAMED_VERSION = 3;
+    private static final String FRAMED_RECORD_FIELD = "record";
+
+    /**
+     * Upgrades a record in place from one version to the next.
+     */
+    @FunctionalInterface
+    interface Migration {
+        void migrate(JsonObject record);
+    }
+
+    // Entry i upgrades a record from version i + 1 to version i + 2
+    private static final List<Migration> MIGRATIONS = List.of(
+            record -> {
+                // 1 to 2: records are wrapped in the versioned envelope, their fields are unchanged
+            },
+            record -> {
+                // 2 to 3: records are framed with a checksum, their fields are unchanged
+            });
+
+    private AgendaSchema() {
+    }
+
+    /**
+     * Reads the start of a data file up to its first record.
+     *
+     * @param reader Reader positioned at the start of the file.
+     * @return The schema version of the records; the reader is inside the records array.
+     * @throws JsonParseException If the file is neither an array nor an envelope.
+     */
+    static int readHeader(JsonReader reader) throws IOException {
+        try {
+            if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                return 1;
+            }
+            int version = -1;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (VERSION_FIELD.equals(name)) {
+                    version = reader.nextInt();
+                } else if (RECORDS_FIELD.equals(name) && version >= 0) {
+                    reader.beginArray();
+                    return version;
+                } else {
+                    reader.skipValue();
+                }
+            }
+            throw new JsonSyntaxException("No " + VERSION_FIELD + " followed by " + RECORDS_FIELD);
+        } catch (IllegalStateException | NumberFormatException | MalformedJsonException | EOFException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    /**
+     * Rejects records this release cannot read.
+     *
+     * @param version The schema version of the records.
+     * @throws JsonParseException If the version is unknown, e.g. written by a newer release.
+     */
+    static void checkSupported(int version) {
+        if (version < 1 || version > CURRENT_VERSION) {
+            throw new JsonParseException("Schema version " + version + " is not supported, this release reads 1 to "
+                    + CURRENT_VERSION);
+        }
+    }
+
+    /**
+     * Reads the next record of a file that is not line-framed and migrates it
+     * to the current version. The frames of a framed file that was reformatted
+     * are unwrapped without verifying their checksums.
+     *
+     * @param gson    Gson bound to the agenda adapters.
+     * @param reader  Reader positioned at a record.
+     * @param type    Class of the stored agendas.
+     * @param version Schema version of the record.
+     * @return The record.
+     */
+    static <T> T readRecord(Gson gson, JsonReader reader, Type type, int version) {
+        JsonElement record = JsonParser.parseReader(reader);
+        if (version >= FRAMED_VERSION && record.isJsonObject() && record.getAsJsonObject().has(FRAMED_RECORD_FIELD)) {
+            record = record.getAsJsonObject().get(FRAMED_RECORD_FIELD);
+        }
+        if (record.isJsonObject()) {
+            upgrade(record.getAsJsonObject(), version);
+        }
+        return gson.fromJson(record, type);
+    }
+
+    /**
+     * Binds the record of a verified frame, migrating it first if it is older.
+     *
+     * @param gson    Gson bound to the agenda adapters.
+     * @param record  The JSON of the record.
+     * @param type    Class of the stored agendas.
+     * @param version Schema version of the record.
+     * @return The record.
+     */
+    static <T> T bindFramed(Gson gson, String record, Type type, int version) {
+        if (version == CURRENT_VERSION) {
+            return gson.fromJson(record, type);
+        }
+        JsonElement tree = JsonParser.parseString(record);
+        if (tree.isJsonObject()) {
+            upgrade(tree.getAsJsonObject(), version);
+        }
+        return gson.fromJson(tree, type);
+    }
+
+    /**
+     * Migrates a record to the current version.
+     *
+     * @param record  The record, changed in place.
+     * @param version Its schema version.
+     * @return The same record.
+     */
+    static JsonObject upgrade(JsonObject record, int version) {
+        for (int from = version; from < CURRENT_VERSION; from++) {
+            MIGRATIONS.get(from - 1).migrate(record);
+        }
+        return record;
+    }
+
+    /**
+     * Writes records in the current version: the envelope, then one
+     * {@link RecordFrame} per line.
+     *
+     * @param gson    Compact Gson bound to the agenda adapters.
+     * @param records The records.
+     * @param type    Type of a record.
+     * @param writer  Destination of the file content.
+     */
+    static void writeAll(Gson gson, List<?> records, Type type, Writer writer) throws IOException {
+        writer.write("{\"" + VERSION_FIELD + "\":" + CURRENT_VERSION + ",\"" + RECORDS_FIELD + "\":[\n");
+        for (int i = 0; i < records.size(); i++) {
+            writer.write(RecordFrame.frame(gson.toJson(records.get(i), type)));
+            writer.write(i < records.size() - 1 ? ",\n" : "\n");
+        }
+        writer.write("]}\n");
+    }
+}
@@ -0,0 +1,141 @@
+package com.toki.repository;
+
+import com.toki.model.AgendaAbstract;
+import com.toki.model.AgendaRegular;
+import com.toki.model.AgendaSpecial;
+import com.toki.model.AgendaTask;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * The agenda repositories of a single user: regular.json, special.json and
+ * task.json in the user's own directory, plus the ID sequence (agenda.seq)
+ * shared by the three.
+ * <p>
+ * With {@link StorageOptions#isUnified()} the three repositories are instead
+ * views over one agendas.json, created from the typed files on first use.
+ * With {@link StorageOptions#isColumnar()} or {@link StorageOptions#isOffHeap()}
+ * the typed repositories are queried through a {@link ColumnarAgendaStore} or
+ * an {@link OffHeapAgendaStore}.
+ */
+public class AgendaShard implements AutoCloseable {
+
+    private final String owner;
+    private final Agenda_RepositoryInterface<AgendaRegular> regularRepo;
+    private final Agenda_RepositoryInterface<AgendaSpecial> specialRepo;
+    private final Agenda_RepositoryInterface<AgendaTask> taskRepo;
+    private final List<Agenda_RepositoryAbstract<?>> stores;
+    private final IdSequence idSequence;
+    private final Path directory;
+    private DataDirectoryWatcher watcher;
+
+    /**
+     * Opens the repositories in a shard directory.
+     *
+     * @param owner     Username the shard belongs to.
+     * @param directory Directory holding the shard's data files.
+     * @param options   Storage settings for the repositories.
+     */
+    public AgendaShard(String owner, String directory, StorageOptions options) {
+        this.owner = owner;
+        this.directory = Path.of(directory);
+        if (options.isUnified()) {
+            String unifiedPath = directory + "/agendas.json";
+            UnifiedAgendaRepository.importTyped(unifiedPath, directory, options.getFormat());
+            UnifiedAgendaRepository unified = new UnifiedAgendaRepository(unifiedPath, options);
+            this.regularRepo = unified.getRegularView();
+            this.specialRepo = unified.getSpecialView();
+            this.taskRepo = unified.getTaskView();
+            this.stores = List.of(unified);
+        } else {
+            AgendaRegularRepository regular = new AgendaRegularRepository(directory + "/regular.json", options);
+            AgendaSpecialRepository special = new AgendaSpecialRepository(directory + "/special.json", options);
+            AgendaTaskRepository task = new AgendaTaskRepository(directory + "/task.json", options);
+            if (options.isOffHeap()) {
+                this.regularRepo = OffHeapAgendaStore.forRegular(regular);
+                this.specialRepo = OffHeapAgendaStore.forSpecial(special);
+                this.taskRepo = OffHeapAgendaStore.forTask(task);
+            } else if (options.isColumnar()) {
+                this.regularRepo = new ColumnarAgendaStore<>(regular);
+                this.specialRepo = new ColumnarAgendaStore<>(special);
+                this.taskRepo = new ColumnarAgendaStore<>(task);
+            } else {
+                this.regularRepo = regular;
+                this.specialRepo = special;
+                this.taskRepo = task;
+            }
+            this.stores = List.of(regular, special, task);
+        }
+        this.idSequence = new IdSequence(directory + "/agenda.seq", () -> maxStoredId() + 1);
+        // Reserved in the background, so the first agenda created does not wait for it
+        idSequence.prefetch();
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public Agenda_RepositoryInterface<AgendaRegular> getRegularRepo() {
+        return regularRepo;
+    }
+
+    public Agenda_RepositoryInterface<AgendaSpecial> getSpecialRepo() {
+        return specialRepo;
+    }
+
+    public Agenda_RepositoryInterface<AgendaTask> getTaskRepo() {
+        return taskRepo;
+    }
+
+    public IdSequence getIdSequence() {
+        return idSequence;
+    }
+
+    /**
+     * Watches the shard directory and reloads a repository when another
+     * process changes its files.
+     *
+     * @param onChange Called on the watcher thread after a reload.
+     */
+    public synchronized void watch(Runnable onChange) {
+        if (watcher != null) {
+            return;
+        }
+        DataDirectoryWatcher newWatcher = new DataDirectoryWatcher(directory, onChange);
+        stores.forEach(newWatcher::register);
+        try {
+            newWatcher.start();
+            watcher = newWatcher;
+        } catch (IOException e) {
+            newWatcher.close();
+            System.err.println("❌ Cannot watch " + directory + ": " + e.getMessage());
+        }
+    }
+
+    private int maxStoredId() {
+        int maxId = 0;
+        for (Agenda_RepositoryAbstract<?> store : stores) {
+            for (AgendaAbstract agenda : store.findAll()) {
+                maxId = Math.max(maxId, agenda.getID());
+            }
+        }
+        return maxId;
+    }
+
+    /**
+     * Returns unused IDs to the sequence and closes the journals of the repositories.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (watcher != null) {
+                watcher.close();
+                watcher = null;
+            }
+        }
+        idSequence.close();
+        stores.forEach(Agenda_RepositoryAbstract::close);
+    }
+}
@@ -0,0 +1,195 @@
+package com.toki.repository;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Per-user partitioning of the agenda data. Each user gets a shard in
+ * {@code <base>/users/<name>/}, opened lazily the first time it is requested,
+ * so loading and querying only ever touch one user's agendas.
+ * <p>
+ * Before the data was partitioned every user saw the shared data files in
+ * {@code <base>} (regular.json, special.json, task.json). {@link #migrate}
+ * copies them once into the shard of each user that existed then; users
+ * registered later start with an empty shard. The shared files themselves
+ * are left as they are.
+ */
+public class AgendaShards implements AutoCloseable {
+
+    private static final String[] DATA_FILES = { "regular.json", "special.json", "task.json" };
+    // Written into <base>/users once the existing users have their shards
+    private static final String MIGRATED_MARKER = ".migrated";
+
+    private final File baseDirectory;
+    private final StorageOptions options;
+    private final Map<String, AgendaShard> openShards = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs the shard manager.
+     *
+     * @param baseDirectory Directory of the shared data files, e.g. "data/database".
+     * @param options       Storage settings for the shard repositories.
+     */
+    public AgendaShards(String baseDirectory, StorageOptions options) {
+        this.baseDirectory = new File(baseDirectory);
+        this.options = options;
+    }
+
+    /**
+     * Gets the shard of a user, opening it on first use.
+     *
+     * @param username The user's name.
+     * @return The user's shard.
+     */
+    public AgendaShard open(String username) {
+        return openShards.computeIfAbsent(username, name -> {
+            File directory = shardDirectory(name);
+            directory.mkdirs();
+            return new AgendaShard(name, directory.getPath(), options);
+        });
+    }
+
+    /**
+     * Gives every user that existed before the data was partitioned a shard
+     * seeded with the shared data files. Runs once: afterwards a marker file
+     * in {@code <base>/users} is written and later calls return at once.
+     * Users that already have a shard directory are left as they are.
+     *
+     * @param existingUsers Lists the registered users; only called if the
+     *                      migration has not run yet.
+     * @return true if the migration ran.
+     */
+    public synchronized boolean migrate(Supplier<? extends Collection<String>> existingUsers) {
+        File marker = new File(new File(baseDirectory, "users"), MIGRATED_MARKER);
+        if (marker.exists()) {
+            return false;
+        }
+        boolean complete = true;
+        for (String username : existingUsers.get()) {
+            File directory = shardDirectory(username);
+            if (!directory.exists()) {
+                complete &= seed(directory);
+            }
+        }
+        if (!complete) {
+            return false; // Shards that could not be seeded are tried again on the next start
+        }
+        try {
+            marker.getParentFile().mkdirs();
+            AtomicFileWriter.write(marker, writer -> writer.write(Instant.now() + "\n"));
+        } catch (IOException e) {
+            System.err.println("❌ Could not write " + marker.getPath() + ": " + e.getMessage());
+        }
+        return true;
+    }
+
+    /**
+     * Closes a user's shard; it is reopened on the next {@link #open}.
+     *
+     * @param username The user's name.
+     */
+    public void release(String username) {
+        AgendaShard shard = openShards.remove(username);
+        if (shard != null) {
+            shard.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        openShards.keySet().forEach(this::release);
+    }
+
+    /**
+     * Directory of a user's shard. Characters other than lowercase letters,
+     * digits, '-' and '_' are hex-escaped, uppercase letters included, so
+     * any username maps to one safe directory name and names differing only
+     * in case, like "Bob" and "bob", stay apart on case-insensitive file
+     * systems (NTFS, APFS).
+     */
+    File directoryOf(String username) {
+        return new File(new File(baseDirectory, "users"), escape(username, false));
+    }
+
+    /**
+     * Resolves the shard directory of a user, first renaming a directory
+     * named by an earlier release, which kept uppercase letters as they are.
+     * Only a directory listed under exactly that name is taken over, so on
+     * a case-insensitive file system "Bob" never takes the shard of "bob".
+     */
+    private File shardDirectory(String username) {
+        File directory = directoryOf(username);
+        File legacy = new File(directory.getParentFile(), escape(username, true));
+        String[] names = directory.getParentFile().list();
+        if (legacy.getName().equals(directory.getName()) || directory.exists()
+                || names == null || !Arrays.asList(names).contains(legacy.getName())) {
+            return directory;
+        }
+        if (!legacy.renameTo(directory)) {
+            System.err.println("❌ Could not rename " + legacy.getPath() + " to " + directory.getName());
+            return legacy;
+        }
+        return directory;
+    }
+
+    private static String escape(String username, boolean keepUpperCase) {
+        StringBuilder name = new StringBuilder();
+        for (byte b : username.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xFF);
+            if ((c >= 'a' && c <= 'z') || (keepUpperCase && c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_') {
+                name.append(c);
+            } else {
+                name.append('~').append(String.format("%02x", b & 0xFF));
+            }
+        }
+        return name.toString();
+    }
+
+    /**
+     * Copies the shared data files into a new shard directory. If any copy
+     * fails the directory is removed again.
+     *
+     * @return false if a file could not be copied.
+     */
+    private boolean seed(File directory) {
+        directory.mkdirs();
+        boolean seeded = true;
+        // Direct mode folds any journal left next to the shared files into the snapshot first
+        new AgendaRegularRepository(new File(baseDirectory, "regular.json").getPath(), StorageOptions.direct());
+        new AgendaSpecialRepository(new File(baseDirectory, "special.json").getPath(), StorageOptions.direct());
+        new AgendaTaskRepository(new File(baseDirectory, "task.json").getPath(), StorageOptions.direct());
+        for (String name : DATA_FILES) {
+            try {
+                Files.copy(new File(baseDirectory, name).toPath(), new File(directory, name).toPath());
+                // The note store holds the long notes the data file refers to
+                File notes = new File(baseDirectory, name + ".notes");
+                if (notes.exists()) {
+                    Files.copy(notes.toPath(), new File(directory, name + ".notes").toPath());
+                }
+            } catch (IOException e) {
+                System.err.println("❌ Could not seed " + name + " for shard " + directory.getName() + ": " + e.getMessage());
+                seeded = false;
+            }
+        }
+        if (!seeded) {
+            // Nothing but the copies is in the new directory yet
+            File[] copies = directory.listFiles();
+            if (copies != null) {
+                for (File copy : copies) {
+                    copy.delete();
+                }
+            }
+            directory.delete();
+        }
+        return seeded;
+    }
+}
@@ -0,0 +1,1132 @@
+package com.toki.repository;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.toki.model.AgendaAbstract;
+import com.toki.repository.AgendaJournal.Mutation;
+import com.toki.repository.json.GsonFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Base class for the JSON file backed Agenda repositories.
+ * Subclasses only provide the file location and the agenda class; reading,
+ * writing, the optional in-memory cache, the optional journal and the optional
+ * write-behind queue are handled here.
+ * <p>
+ * Concurrency: queries on the in-memory records share a read lock and run in
+ * parallel; mutations and reloads take the write lock. Every write to the
+ * files happens under a {@link ProcessFileLock}, and the records are first
+ * brought up to date with the files, so two processes (or two repository
+ * instances) using the same files in the same mode never lose each other's
+ * updates. Locks are always taken in the order compaction lock, file lock,
+ * read/write lock.
+ *
+ * @param <T> The agenda type stored in the file.
+ */
+public abstract class Agenda_RepositoryAbstract<T extends AgendaAbstract> implements Agenda_RepositoryInterface<T> {
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final File file;
+    private final Gson gson;
+    private final Class<T> type;
+    private final StorageOptions options;
+    // Long notes live here instead of in the data file and are loaded on first access.
+    private final NoteBlobStore noteStore;
+
+    // Serializes writes to the files across threads and processes.
+    private final ProcessFileLock fileLock;
+    // Held for a whole journal compaction, so two processes never compact at once.
+    private final ProcessFileLock compactionLock;
+    // Guards the in-memory state below.
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Journaled mode only: mutations are appended here instead of rewriting the file.
+    private final AgendaJournal<T> journal;
+    private final AtomicBoolean compacting = new AtomicBoolean(false);
+
+    // Cached/journaled mode only: batches the fsync of concurrent writers.
+    private final GroupCommit groupCommit;
+
+    // Cached/journaled mode only: the records, their positions by ID and the file stamp they came from.
+    private List<T> cache;
+    private IdIndex idIndex;
+    private final DateIndex<T> dateIndex = new DateIndex<>();
+    private final IdOrderIndex<T> idOrderIndex = new IdOrderIndex<>();
+    private final List<MemoryIndex<T>> indexes = new ArrayList<>(List.of(dateIndex, idOrderIndex));
+    // Replaced by readers too, once its checksum is no longer needed
+    private volatile FileStamp cacheStamp = FileStamp.NONE;
+    // Set while a DataDirectoryWatcher reports changes, so reads skip the stamp check.
+    private volatile boolean watched;
+
+    // Cached and write-behind mode: latest mutation per ID that is not persisted yet.
+    private final Map<Integer, Mutation<T>> pending = new LinkedHashMap<>();
+    private final WriteBehindFlusher flusher;
+
+    /**
+     * Constructs the repository and makes sure the data file exists.
+     *
+     * @param filePath Path of the JSON data file.
+     * @param type     Class of the stored agendas.
+     * @param options  Storage settings.
+     */
+    protected Agenda_RepositoryAbstract(String filePath, Class<T> type, StorageOptions options) {
+        this(filePath, type, options, GsonFactory::compact);
+    }
+
+    /**
+     * Constructs the repository with its own Gson instance, e.g. for a store
+     * whose records need a polymorphic adapter.
+     *
+     * @param filePath Path of the JSON data file.
+     * @param type     Class of the stored agendas.
+     * @param options  Storage settings.
+     * @param gson     Creates the compact Gson used for reading and writing, bound to the note store.
+     */
+    protected Agenda_RepositoryAbstract(String filePath, Class<T> type, StorageOptions options,
+                                        Function<NoteBlobStore, Gson> gson) {
+        this.file = new File(filePath);
+        this.type = type;
+        this.options = options;
+        this.noteStore = new NoteBlobStore(new File(filePath + ".notes"), options.getNotesInlineLimit());
+        this.gson = gson.apply(noteStore);
+        this.fileLock = new ProcessFileLock(new File(filePath + ".lock"));
+        this.compactionLock = new ProcessFileLock(new File(filePath + ".compact.lock"));
+        this.groupCommit = new GroupCommit(options.getGroupCommitWindowMillis());
+        this.flusher = options.isWriteBehind()
+                ? new WriteBehindFlusher("toki-write-behind-" + file.getName(), options.getWriteBehindDelayMillis(), this::flushPending)
+                : null;
+
+        File parentDir = file.getParentFile();
+        if (parentDir != null && !parentDir.exists()) {
+            parentDir.mkdirs();
+        }
+
+        // Jamin file ada dan berisi "[]" jika kosong
+        if (!file.exists() || file.length() == 0) {
+            writeAll(new ArrayList<>());
+            System.out.println("✅ Data file initialized: " + file.getPath());
+        }
+
+        int version = storedSchemaVersion();
+        if (version > AgendaSchema.CURRENT_VERSION) {
+            // Reading it would fail and the next save would replace it with an empty file
+            throw new IllegalStateException(file.getPath() + " was written with schema version " + version
+                    + ", this release reads up to " + AgendaSchema.CURRENT_VERSION);
+        }
+
+        AgendaJournal<T> existingJournal = new AgendaJournal<>(file, this.gson, type);
+        if (options.isJournaled()) {
+            this.journal = existingJournal;
+        } else {
+            this.journal = null;
+            if (existingJournal.hasSegments()) {
+                foldJournal(existingJournal);
+            }
+        }
+    }
+
+    /**
+     * Gets the JSON data file of this repository.
+     *
+     * @return The data file.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Gets the lock that serializes writes to the data file across processes.
+     *
+     * @return The file lock.
+     */
+    ProcessFileLock getFileLock() {
+        return fileLock;
+    }
+
+    /**
+     * Gets the store holding the long notes of this repository.
+     *
+     * @return The note store.
+     */
+    NoteBlobStore getNoteStore() {
+        return noteStore;
+    }
+
+    /**
+     * Marks whether a {@link DataDirectoryWatcher} reports changes of the data
+     * files. While watched, reads no longer check the file stamp; the records
+     * are only reloaded through {@link #reloadIfChanged()}.
+     *
+     * @param watched true while a watcher is attached.
+     */
+    public void setWatched(boolean watched) {
+        this.watched = watched;
+    }
+
+    /**
+     * Reloads the in-memory records if the files no longer match the stamp of
+     * the last read or write, i.e. another process changed them. Changes made
+     * through this repository do not count.
+     *
+     * @return true if the data changed (always true in direct mode, which keeps nothing in memory).
+     */
+    public boolean reloadIfChanged() {
+        if (!isInMemory()) {
+            return true;
+        }
+        ProcessFileLock.Handle handle = lockOrReport();
+        if (handle == null) {
+            return false;
+        }
+        try (handle) {
+            lock.writeLock().lock();
+            try {
+                if (cache != null && isStampCurrent()) {
+                    return false;
+                }
+                cache = null;
+                loadCache(false);
+                return true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Gets the storage settings of this repository.
+     *
+     * @return The storage options.
+     */
+    public StorageOptions getOptions() {
+        return options;
+    }
+
+    @Override
+    public List<T> findAll() {
+        if (!isInMemory()) {
+            return readFile();
+        }
+        return read(() -> new ArrayList<>(cache));
+    }
+
+    @Override
+    public T findByID(int ID) {
+        if (isInMemory()) {
+            return read(() -> {
+                int position = idIndex.get(ID);
+                return position >= 0 ? cache.get(position) : null;
+            });
+        }
+        return findFirst(agenda -> agenda.getID() == ID);
+    }
+
+    /**
+     * Registers a secondary index. It is filled from the records already in
+     * memory and kept up to date from then on. Meant to be called from the
+     * constructor of a subclass.
+     *
+     * @param index The index to maintain.
+     */
+    protected void addIndex(MemoryIndex<T> index) {
+        lock.writeLock().lock();
+        try {
+            indexes.add(index);
+            if (cache != null) {
+                cache.forEach(index::put);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Answers a query from the in-memory indexes under the shared read lock,
+     * or with the fallback in direct mode.
+     *
+     * @param query    Reads the indexes; must not modify anything.
+     * @param fallback Computes the result from the file in direct mode.
+     * @return The result of the query or of the fallback.
+     */
+    protected <R> R queryIndexes(Supplier<R> query, Supplier<R> fallback) {
+        return isInMemory() ? read(query) : fallback.get();
+    }
+
+    /**
+     * Finds the agendas whose relevant date lies in a range. In memory the
+     * date index answers in O(log N + K); in direct mode the file is scanned.
+     *
+     * @param from First day of the range (inclusive).
+     * @param to   Last day of the range (inclusive).
+     * @return The agendas in the range.
+     */
+    @Override
+    public List<T> findBetween(LocalDate from, LocalDate to) {
+        return queryIndexes(() -> dateIndex.between(from, to),
+                () -> Agenda_RepositoryInterface.super.findBetween(from, to));
+    }
+
+    /**
+     * Gets one page of agendas in ascending ID order. In memory the page comes
+     * from the ID-ordered index; in direct mode the file is streamed once and
+     * only the page is kept.
+     *
+     * @param afterId Only agendas with a greater ID are returned.
+     * @param limit   Maximum number of agendas on the page.
+     * @return The agendas, sorted by ID.
+     */
+    @Override
+    public List<T> findPage(int afterId, int limit) {
+        return queryIndexes(() -> idOrderIndex.page(afterId, limit), () -> {
+            try {
+                return Agenda_RepositoryInterface.super.findPage(afterId, limit);
+            } catch (JsonParseException | UncheckedIOException e) {
+                System.err.println("❌ Failed to read " + file.getPath() + ": " + e.getMessage());
+                return new ArrayList<>();
+            }
+        });
+    }
+
+    /**
+     * Counts the stored agendas. In direct mode the records are skipped
+     * token by token without being turned into objects. A subclass that
+     * overrides {@link #findAll()} is counted through it instead, so the count
+     * always matches what it lists.
+     *
+     * @return The number of agendas.
+     */
+    @Override
+    public long count() {
+        if (overridesFindAll()) {
+            return findAll().size();
+        }
+        return queryIndexes(() -> (long) cache.size(), this::countStored);
+    }
+
+    private boolean overridesFindAll() {
+        try {
+            return getClass().getMethod("findAll").getDeclaringClass() != Agenda_RepositoryAbstract.class;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private long countStored() {
+        if (!file.exists() || file.length() == 0) {
+            return 0;
+        }
+        try (AgendaRecordReader<T> reader = AgendaRecordReader.open(openReader(), gson, type)) {
+            long count = reader.skipAll();
+            reportDamage(reader.damaged());
+            return count;
+        } catch (IOException | JsonParseException e) {
+            System.err.println("❌ Failed to read " + file.getPath() + ": " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Finds the first agenda matching a predicate. In direct mode the file is
+     * parsed one record at a time and parsing stops at the first match.
+     *
+     * @param predicate The condition to match.
+     * @return The first matching agenda, or null if none matches.
+     */
+    public T findFirst(Predicate<? super T> predicate) {
+        try (Stream<T> agendas = stream()) {
+            return agendas.filter(predicate).findFirst().orElse(null);
+        } catch (JsonParseException | UncheckedIOException e) {
+            System.err.println("❌ Failed to read " + file.getPath() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Streams the stored agendas. In direct mode records are parsed (and
+     * migrated, see {@link AgendaSchema}) lazily while the stream is consumed,
+     * so memory use does not grow with the file; the stream must be closed to
+     * release the file (use try-with-resources).
+     *
+     * @return A stream of agendas.
+     */
+    @Override
+    public Stream<T> stream() {
+        if (isInMemory()) {
+            return read(() -> new ArrayList<>(cache)).stream();
+        }
+        if (!file.exists() || file.length() == 0) {
+            return Stream.empty();
+        }
+
+        AgendaRecordReader<T> reader;
+        try {
+            reader = AgendaRecordReader.open(openReader(), gson, type);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return Stream.empty();
+        } catch (JsonParseException e) {
+            System.err.println("❌ Failed to read " + file.getPath() + ": " + e.getMessage());
+            return Stream.empty();
+        }
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(reader, Spliterator.ORDERED), false)
+                .onClose(() -> {
+                    try {
+                        reader.close();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                    reportDamage(reader.damaged());
+                });
+    }
+
+    /**
+     * Runs a query on the in-memory records under the read lock, so queries
+     * run in parallel. If the records are missing or stale they are reloaded
+     * under the write lock first, which is then downgraded to the read lock.
+     */
+    private <R> R read(Supplier<R> query) {
+        lock.readLock().lock();
+        try {
+            if (cache != null && (watched || isStampCurrent())) {
+                return query.get();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        // Locked so the reload never sees half of a write. Without the lock it goes
+        // ahead anyway: a torn journal record is skipped and picked up by the next reload.
+        ProcessFileLock.Handle handle = lockOrReport();
+        try {
+            lock.writeLock().lock();
+            try {
+                loadCache(false);
+                lock.readLock().lock();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            if (handle != null) {
+                handle.close();
+            }
+        }
+        try {
+            return query.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Takes the file lock, reporting why if it cannot be taken.
+     *
+     * @return The handle to release the lock with, or null if it was not taken.
+     */
+    private ProcessFileLock.Handle lockOrReport() {
+        try {
+            return fileLock.acquire();
+        } catch (IOException e) {
+            System.err.println("❌ Failed to lock " + file.getPath() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private boolean isLoaded() {
+        lock.readLock().lock();
+        try {
+            return cache != null && (watched || isStampCurrent());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reads the schema version of the data file without reading its records.
+     *
+     * @return The version, or the current one if the file cannot be read.
+     */
+    private int storedSchemaVersion() {
+        try {
+            return AgendaRecordReader.readVersion(openReader());
+        } catch (IOException | JsonParseException e) {
+            return AgendaSchema.CURRENT_VERSION;
+        }
+    }
+
+    private Reader openReader() throws IOException {
+        InputStream in = StorageFormat.decode(Files.newInputStream(file.toPath()), READ_BUFFER_SIZE);
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), READ_BUFFER_SIZE);
+    }
+
+    /**
+     * Writes a full snapshot of the agendas in the configured storage format
+     * and the current schema version.
+     */
+    private void writeSnapshot(List<T> agendas) throws IOException {
+        AtomicFileWriter.write(file, options.getFormat(), snapshotContent(agendas));
+    }
+
+    private AtomicFileWriter.Content snapshotContent(List<T> agendas) {
+        return writer -> AgendaSchema.writeAll(gson, agendas, type, writer);
+    }
+
+    @Override
+    public void save(T newAgenda) {
+        mutate(List.of(Mutation.put(newAgenda)));
+    }
+
+    @Override
+    public void deleteByID(int ID) {
+        mutate(List.of(Mutation.delete(ID)));
+    }
+
+    /**
+     * Deletes an agenda only if the stored one matches a condition. The
+     * condition is checked where the delete is applied, under the same locks,
+     * so an agenda saved meanwhile under the same ID is only deleted if it
+     * matches as well.
+     *
+     * @param ID        The ID of the agenda.
+     * @param condition Checked against the stored agenda.
+     */
+    protected void deleteIf(int ID, Predicate<? super T> condition) {
+        mutate(List.of(Mutation.deleteIf(ID, condition)));
+    }
+
+    /**
+     * Applies a batch of mutations with one read and one write: in direct mode
+     * the file is parsed and rewritten once, in memory the batch is appended
+     * to the journal (or written as one snapshot) in a single commit.
+     */
+    @Override
+    public void bulk(Consumer<BulkWriter<T>> mutations) {
+        bulk(mutations, null);
+    }
+
+    /**
+     * Applies a batch whose deletes only remove agendas that match a
+     * condition, checked like in {@link #deleteIf}.
+     *
+     * @param mutations       Collects the mutations.
+     * @param deleteCondition Checked against each agenda to delete; null deletes unconditionally.
+     */
+    protected void bulk(Consumer<BulkWriter<T>> mutations, Predicate<? super T> deleteCondition) {
+        List<Mutation<T>> batch = new ArrayList<>();
+        mutations.accept(new BulkWriter<>() {
+            @Override
+            public void save(T item) {
+                batch.add(Mutation.put(item));
+            }
+
+            @Override
+            public void deleteByID(int ID) {
+                batch.add(Mutation.deleteIf(ID, deleteCondition));
+            }
+        });
+        if (!batch.isEmpty()) {
+            mutate(batch);
+        }
+    }
+
+    /**
+     * Applies mutations and persists them according to the storage mode:
+     * <ul>
+     * <li>direct: the file is read, changed and rewritten under the file lock;</li>
+     * <li>write-behind: memory is updated and the mutations are queued, no disk access;</li>
+     * <li>journaled: the mutations are appended to the journal, the fsync is group-committed;</li>
+     * <li>cached: the mutations are queued and the group commit writes one snapshot.</li>
+     * </ul>
+     */
+    private void mutate(List<Mutation<T>> batch) {
+        if (!isInMemory()) {
+            rewrite(batch);
+            return;
+        }
+
+        if (flusher != null) {
+            // Never touches the disk, so a save from the UI thread does not wait for it. Stale or
+            // missing records are not reloaded here: the flusher reloads them under the file lock,
+            // and every reload applies the queued mutations on top of what is on disk.
+            lock.writeLock().lock();
+            try {
+                boolean current = cache != null && (watched || isStampCurrent());
+                List<Mutation<T>> applied = cache != null ? apply(batch) : batch;
+                // Against stale records a delete may look like a no-op, so the whole batch is queued
+                (current ? applied : batch).forEach(this::queue);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            flusher.request();
+            return;
+        }
+
+        ProcessFileLock.Handle handle = lockOrReport();
+        if (handle == null) {
+            return;
+        }
+        long ticket;
+        try (handle) {
+            storeNotes(batch);
+            lock.writeLock().lock();
+            try {
+                // Pick up what other processes wrote, so refreshing the stamp below cannot hide it
+                loadCache(true);
+                List<Mutation<T>> applied = apply(batch);
+                if (applied.isEmpty()) {
+                    return;
+                }
+                if (journal != null) {
+                    try {
+                        journal.appendAll(applied);
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                        cache = null;
+                        return;
+                    }
+                    refreshStamp();
+                } else {
+                    applied.forEach(this::queue);
+                }
+                ticket = groupCommit.register();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        awaitCommit(ticket);
+    }
+
+    /**
+     * Direct mode: reads the file, applies the mutations in order and writes
+     * it back, all under the file lock.
+     */
+    private void rewrite(List<Mutation<T>> batch) {
+        ProcessFileLock.Handle handle = lockOrReport();
+        if (handle == null) {
+            return;
+        }
+        try (handle) {
+            storeNotes(batch);
+            Map<Integer, T> agendas = new LinkedHashMap<>();
+            for (T agenda : findAll()) {
+                agendas.put(agenda.getID(), agenda);
+            }
+            boolean changed = false;
+            for (Mutation<T> mutation : batch) {
+                if (mutation.isDelete() && !mutation.deletes(agendas.get(mutation.ID()))) {
+                    continue;
+                }
+                // Remove first, so an update moves to the end like it always did
+                changed |= agendas.remove(mutation.ID()) != null;
+                if (!mutation.isDelete()) {
+                    agendas.put(mutation.ID(), mutation.agenda());
+                    changed = true;
+                }
+            }
+            if (changed) {
+                writeAll(new ArrayList<>(agendas.values()));
+            }
+        }
+    }
+
+    /**
+     * Moves the long notes of saved agendas into the note store and drops the
+     * text from memory; it is loaded again when the notes are next read.
+     * Callers hold the file lock, so a compaction cannot sweep the new blobs
+     * before the records referring to them are written.
+     */
+    private void storeNotes(List<Mutation<T>> batch) {
+        for (Mutation<T> mutation : batch) {
+            T agenda = mutation.agenda();
+            if (mutation.isDelete()) {
+                continue;
+            }
+            String ref = agenda.getNotesRef();
+            if (ref != null && noteStore.contains(ref)) {
+                continue;
+            }
+            String notes = agenda.getNotes();
+            if (noteStore.shouldStore(notes)) {
+                try {
+                    agenda.setNotesRef(noteStore.put(notes), noteStore::get);
+                } catch (IOException e) {
+                    System.err.println("❌ Failed to store notes of agenda " + agenda.getID() + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies mutations to the in-memory records. Callers must hold the write lock.
+     *
+     * @return The mutations that changed something (deletes of missing IDs are dropped).
+     */
+    private List<Mutation<T>> apply(List<Mutation<T>> batch) {
+        List<Mutation<T>> applied = new ArrayList<>(batch.size());
+        for (Mutation<T> mutation : batch) {
+            if (applyInMemory(mutation)) {
+                applied.add(mutation);
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Applies one mutation to the in-memory records. Callers must hold the write lock.
+     *
+     * @return false if it changed nothing: a delete of a missing ID or one its condition rejects.
+     */
+    private boolean applyInMemory(Mutation<T> mutation) {
+        if (!mutation.isDelete()) {
+            putInMemory(mutation.agenda());
+            return true;
+        }
+        int position = idIndex.get(mutation.ID());
+        return position >= 0 && mutation.deletes(cache.get(position)) && removeInMemory(mutation.ID());
+    }
+
+    /**
+     * Waits until a mutation is durable. Writers arriving within the group
+     * commit window share one fsync: the journal is forced once, or the latest
+     * in-memory state is written once, for the whole batch.
+     */
+    private void awaitCommit(long ticket) {
+        try {
+            groupCommit.await(ticket, journal != null ? journal::sync : this::flushPending);
+        } catch (IOException e) {
+            System.err.println("❌ Failed to save " + file.getPath() + ": " + e.getMessage());
+            lock.writeLock().lock();
+            try {
+                cache = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return;
+        }
+        compactIfNeeded();
+    }
+
+    private void compactIfNeeded() {
+        if (journal != null && journal.length() > options.getCompactionThreshold()
+                && compacting.compareAndSet(false, true)) {
+            Thread compactor = new Thread(this::compact, "toki-compaction-" + file.getName());
+            compactor.setDaemon(true);
+            compactor.start();
+        }
+    }
+
+    /**
+     * Queues a mutation until it is persisted; a later mutation of the same ID
+     * replaces it. Callers must hold the write lock.
+     */
+    private void queue(Mutation<T> mutation) {
+        pending.remove(mutation.ID());
+        pending.put(mutation.ID(), mutation);
+    }
+
+    /**
+     * Persists the queued mutations: appended to the journal as one batch, or
+     * as one snapshot of the in-memory state. Runs on the write-behind flusher
+     * or as the group commit of cached mode. If persisting fails, the
+     * mutations are queued again unless a newer one for the same ID arrived
+     * in the meantime.
+     */
+    private void flushPending() throws IOException {
+        List<Mutation<T>> batch;
+        ProcessFileLock.Handle handle = fileLock.acquire();
+        try (handle) {
+            // Stored before the batch is taken, so the fsync of new notes does not block
+            // readers; a mutation queued meanwhile is written with its notes inline
+            List<Mutation<T>> queued;
+            lock.writeLock().lock();
+            try {
+                queued = new ArrayList<>(pending.values());
+            } finally {
+                lock.writeLock().unlock();
+            }
+            storeNotes(queued);
+
+            List<T> snapshot = null;
+            lock.writeLock().lock();
+            try {
+                // A reload re-applies the queue on top of what other processes wrote
+                loadCache(true);
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = new ArrayList<>(pending.values());
+                pending.clear();
+                if (journal != null) {
+                    try {
+                        journal.appendAll(batch);
+                    } catch (IOException e) {
+                        requeue(batch);
+                        throw e;
+                    }
+                    refreshStamp();
+                } else {
+                    snapshot = new ArrayList<>(cache);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            if (snapshot != null) {
+                // Written outside the read/write lock, so queries and write-behind saves are not blocked
+                try {
+                    File temp = AtomicFileWriter.writeTemp(file, options.getFormat(), snapshotContent(snapshot));
+                    lock.writeLock().lock();
+                    try {
+                        AtomicFileWriter.replace(temp, file);
+                        refreshStamp();
+                    } finally {
+                        lock.writeLock().unlock();
+                    }
+                } catch (IOException e) {
+                    requeueLocked(batch);
+                    throw e;
+                }
+            }
+        }
+        try {
+            if (journal != null) {
+                journal.sync();
+            } else {
+                AtomicFileWriter.syncDirectory(file);
+            }
+        } catch (IOException e) {
+            requeueLocked(batch);
+            throw e;
+        }
+        compactIfNeeded();
+    }
+
+    private void requeue(List<Mutation<T>> batch) {
+        for (Mutation<T> mutation : batch) {
+            pending.putIfAbsent(mutation.ID(), mutation);
+        }
+    }
+
+    private void requeueLocked(List<Mutation<T>> batch) {
+        lock.writeLock().lock();
+        try {
+            requeue(batch);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Flushes queued write-behind mutations (waiting at most the configured
+     * flush timeout) and closes the note store and the journal writer, if any. The repository can
+     * still be used afterwards; the writer is reopened on the next mutation.
+     */
+    public void close() {
+        if (flusher != null && !flusher.flush(options.getFlushTimeoutMillis())) {
+            System.err.println("❌ Unflushed changes left in " + file.getPath() + " after "
+                    + options.getFlushTimeoutMillis() + " ms");
+        }
+        noteStore.close();
+        if (journal == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            journal.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Waits until all queued write-behind mutations are persisted.
+     *
+     * @param timeoutMillis Maximum time to wait.
+     * @return true if nothing is left to flush.
+     */
+    public boolean flush(long timeoutMillis) {
+        return flusher == null || flusher.flush(timeoutMillis);
+    }
+
+    private boolean isInMemory() {
+        return options.isCached() || options.isJournaled() || options.isWriteBehind();
+    }
+
+    /**
+     * Returns the in-memory records, rebuilding them from disk only when the
+     * {@link FileStamp} of the files differs from the last read or write.
+     * While watched, the stamp is only checked when the watcher reports a change
+     * or when verify is set (before writing under the file lock).
+     * Callers must hold the write lock.
+     */
+    private List<T> loadCache(boolean verify) {
+        if (cache != null && watched && !verify) {
+            return cache;
+        }
+        FileStamp stamp = cacheStamp.current(storedFiles());
+        if (cache == null || !stamp.equals(cacheStamp)) {
+            cache = indexRecords(readFile());
+            if (journal != null) {
+                journal.replay(memoryTarget());
+            }
+            // Mutations still queued are not on disk yet. A queued conditional delete
+            // is dropped once the stored agenda no longer matches, so it is never persisted.
+            for (Iterator<Mutation<T>> queued = pending.values().iterator(); queued.hasNext(); ) {
+                Mutation<T> mutation = queued.next();
+                if (!applyInMemory(mutation) && mutation.condition() != null) {
+                    queued.remove();
+                }
+            }
+            cacheStamp = stamp.settled();
+        }
+        return cache;
+    }
+
+    private boolean isStampCurrent() {
+        FileStamp stamp = cacheStamp;
+        FileStamp current = stamp.current(storedFiles());
+        if (!current.equals(stamp)) {
+            return false;
+        }
+        cacheStamp = current.settled();
+        return true;
+    }
+
+    /**
+     * Gets the files the records are read from: the data file, plus the
+     * journal files in journaled mode.
+     *
+     * @return The files, some of which may not exist.
+     */
+    File[] storedFiles() {
+        return journal == null ? new File[] {file} : new File[] {file, journal.logFile(), journal.compactingFile()};
+    }
+
+    private void refreshStamp() {
+        cacheStamp = FileStamp.of(storedFiles());
+    }
+
+    /**
+     * Builds the ID index for freshly read records. If an ID occurs more than
+     * once, the last occurrence wins, since save used to append updates at the end.
+     */
+    private List<T> indexRecords(List<T> records) {
+        idIndex = new IdIndex(records.size());
+        indexes.forEach(MemoryIndex::clear);
+        cache = new ArrayList<>(records.size());
+        records.forEach(this::putInMemory);
+        return cache;
+    }
+
+    private void putInMemory(T agenda) {
+        int position = idIndex.get(agenda.getID());
+        if (position >= 0) {
+            cache.set(position, agenda);
+        } else {
+            idIndex.put(agenda.getID(), cache.size());
+            cache.add(agenda);
+        }
+        for (MemoryIndex<T> index : indexes) {
+            index.put(agenda);
+        }
+    }
+
+    private boolean removeInMemory(int ID) {
+        int position = idIndex.remove(ID);
+        if (position < 0) {
+            return false;
+        }
+        for (MemoryIndex<T> index : indexes) {
+            index.remove(ID);
+        }
+        // Move the last record into the gap so removal stays O(1)
+        T last = cache.remove(cache.size() - 1);
+        if (position < cache.size()) {
+            cache.set(position, last);
+            idIndex.put(last.getID(), position);
+        }
+        return true;
+    }
+
+    private AgendaJournal.Target<T> memoryTarget() {
+        return new AgendaJournal.Target<>() {
+            @Override
+            public void put(T agenda) {
+                putInMemory(agenda);
+            }
+
+            @Override
+            public void delete(int ID) {
+                removeInMemory(ID);
+            }
+        };
+    }
+
+    /**
+     * Folds the journal into a new snapshot. The state is captured and the log
+     * rotated under the locks; the snapshot itself is written without blocking
+     * readers or writers. The compaction lock keeps other processes from
+     * compacting the same journal meanwhile.
+     */
+    private void compact() {
+        try {
+            ProcessFileLock.Handle compactionHandle = compactionLock.acquire();
+            try (compactionHandle) {
+                List<T> snapshot;
+                ProcessFileLock.Handle captureHandle = fileLock.acquire();
+                try (captureHandle) {
+                    lock.writeLock().lock();
+                    try {
+                        snapshot = new ArrayList<>(loadCache(true));
+                        journal.beginCompaction();
+                        refreshStamp();
+                    } finally {
+                        lock.writeLock().unlock();
+                    }
+                }
+                File temp = AtomicFileWriter.writeTemp(file, options.getFormat(), snapshotContent(snapshot));
+                ProcessFileLock.Handle replaceHandle = fileLock.acquire();
+                try (replaceHandle) {
+                    Set<String> liveNotes = new HashSet<>();
+                    lock.writeLock().lock();
+                    try {
+                        // Take in anything another process appended while the snapshot was written
+                        loadCache(true);
+                        AtomicFileWriter.replace(temp, file);
+                        journal.finishCompaction();
+                        refreshStamp();
+                        for (T agenda : cache) {
+                            liveNotes.add(agenda.getNotesRef());
+                        }
+                    } finally {
+                        lock.writeLock().unlock();
+                    }
+                    sweepNotes(liveNotes);
+                }
+                AtomicFileWriter.syncDirectory(file);
+            }
+        } catch (IOException e) {
+            System.err.println("❌ Journal compaction failed for " + file.getPath() + ": " + e.getMessage());
+        } finally {
+            compacting.set(false);
+        }
+    }
+
+    /**
+     * Drops the notes no record refers to any more. Callers hold the file lock,
+     * under which notes are stored, and pass the references of all records.
+     */
+    private void sweepNotes(Set<String> liveNotes) {
+        try {
+            int dropped = noteStore.sweep(liveNotes);
+            if (dropped > 0) {
+                System.out.println("✅ Dropped " + dropped + " unused notes of " + file.getPath());
+            }
+        } catch (IOException e) {
+            // Left for the next compaction, e.g. while another process has the file open on Windows
+            System.err.println("❌ Could not sweep the notes of " + file.getPath() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Applies a journal left behind by journaled mode to the snapshot, so its
+     * mutations are not lost when the repository is opened in another mode.
+     */
+    private void foldJournal(AgendaJournal<T> leftover) {
+        try {
+            // Waits for a compaction in another process, which would otherwise overwrite the folded snapshot
+            ProcessFileLock.Handle compactionHandle = compactionLock.acquire();
+            try (compactionHandle) {
+                ProcessFileLock.Handle handle = fileLock.acquire();
+                try (handle) {
+                    indexRecords(readFile());
+                    leftover.replay(memoryTarget());
+                    writeSnapshot(cache);
+                    leftover.beginCompaction();
+                    leftover.finishCompaction();
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("❌ Could not fold journal into " + file.getPath() + ": " + e.getMessage());
+        }
+        // The folded records were only needed for the snapshot; cached mode reloads lazily
+        cache = null;
+        idIndex = null;
+        indexes.forEach(MemoryIndex::clear);
+    }
+
+    /**
+     * Reads all intact records of the data file. Damaged records are skipped
+     * (see {@link AgendaRecordReader}) and reported by {@link #reportDamage}.
+     */
+    private List<T> readFile() {
+        if (!file.exists() || file.length() == 0) {
+            return new ArrayList<>();
+        }
+        try (AgendaRecordReader<T> reader = AgendaRecordReader.open(openReader(), gson, type)) {
+            List<T> agendas = new ArrayList<>();
+            reader.forEachRemaining(agendas::add);
+            reportDamage(reader.damaged());
+            return agendas;
+        } catch (IOException | UncheckedIOException e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        } catch (JsonParseException e) {
+            keepCorruptCopy();
+            System.err.println("❌ Data file corrupted, copied to " + corruptCopy().getName()
+                    + ". Returning empty list: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Logs the damaged records found while reading and keeps a copy of the
+     * file, so the next save cannot silently discard them.
+     */
+    private void reportDamage(List<String> damaged) {
+        if (damaged.isEmpty()) {
+            return;
+        }
+        keepCorruptCopy();
+        System.err.println("❌ Skipped " + damaged.size() + " damaged record(s) in " + file.getPath()
+                + ", copied to " + corruptCopy().getName() + ":");
+        damaged.forEach(message -> System.err.println("❌   " + message));
+    }
+
+    private File corruptCopy() {
+        return new File(file.getPath() + ".corrupt-" + file.lastModified());
+    }
+
+    private void keepCorruptCopy() {
+        File copy = corruptCopy();
+        try {
+            if (!copy.exists()) {
+                Files.copy(file.toPath(), copy.toPath());
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void writeAll(List<T> agendas) {
+        try {
+            writeSnapshot(agendas);
+        } catch (IOException e) {
+            System.err.println("❌ Failed to save " + file.getPath() + ": " + e.getMessage());
+        }
+    }
+}
@@ -1,10 +1,131 @@
 package com.toki.repository;
 
+import com.toki.model.AgendaAbstract;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
-public interface Agenda_RepositoryInterface<T> {
+public interface Agenda_RepositoryInterface<T extends AgendaAbstract> {
     void save(T item);
     T findByID(int ID); 
     List<T> findAll();
     void deleteByID(int ID);
-}
\ No newline at end of file
+
+    /**
+     * Saves many agendas at once.
+     *
+     * @param items The agendas to insert or update.
+     */
+    default void saveAll(Collection<? extends T> items) {
+        bulk(writer -> items.forEach(writer::save));
+    }
+
+    /**
+     * Deletes many agendas at once. IDs that do not exist are ignored.
+     *
+     * @param IDs The IDs to delete.
+     */
+    default void deleteAllByID(int... IDs) {
+        bulk(writer -> {
+            for (int ID : IDs) {
+                writer.deleteByID(ID);
+            }
+        });
+    }
+
+    /**
+     * Applies a batch of saves and deletes. Repositories that persist the
+     * whole file override this to read and write once for the batch; the
+     * default simply applies each mutation in turn.
+     *
+     * @param mutations Receives the writer to record the mutations on.
+     */
+    default void bulk(Consumer<BulkWriter<T>> mutations) {
+        mutations.accept(new BulkWriter<>() {
+            @Override
+            public void save(T item) {
+                Agenda_RepositoryInterface.this.save(item);
+            }
+
+            @Override
+            public void deleteByID(int ID) {
+                Agenda_RepositoryInterface.this.deleteByID(ID);
+            }
+        });
+    }
+
+    /**
+     * Finds the agendas whose relevant date lies in a range.
+     * Agendas without a relevant date are never returned.
+     *
+     * @param from First day of the range (inclusive).
+     * @param to   Last day of the range (inclusive).
+     * @return The agendas in the range.
+     */
+    default List<T> findBetween(LocalDate from, LocalDate to) {
+        return findAll().stream()
+                .filter(agenda -> {
+                    LocalDate date = agenda.getRelevantDate();
+                    return date != null && !date.isBefore(from) && !date.isAfter(to);
+                })
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Streams the stored agendas. Repositories that read from disk parse the
+     * records lazily while the stream is consumed, so the stream must be
+     * closed (use try-with-resources).
+     *
+     * @return A stream of agendas.
+     */
+    default Stream<T> stream() {
+        return findAll().stream();
+    }
+
+    /**
+     * Counts the stored agendas without keeping them in memory.
+     *
+     * @return The number of agendas.
+     */
+    default long count() {
+        try (Stream<T> agendas = stream()) {
+            return agendas.count();
+        }
+    }
+
+    /**
+     * Gets one page of agendas in ascending ID order, for walking a large
+     * store with bounded memory: pass the ID of the last agenda of a page as
+     * the cursor for the next one, starting with 0.
+     *
+     * @param afterId Only agendas with a greater ID are returned.
+     * @param limit   Maximum number of agendas on the page.
+     * @return The agendas, sorted by ID; fewer than limit on the last page.
+     */
+    default List<T> findPage(int afterId, int limit) {
+        if (limit <= 0) {
+            return new ArrayList<>();
+        }
+        // Keeps the limit smallest IDs seen so far, largest on top
+        Comparator<T> byId = Comparator.comparingInt(AgendaAbstract::getID);
+        PriorityQueue<T> page = new PriorityQueue<>(Math.min(limit, 1024) + 1, byId.reversed());
+        try (Stream<T> agendas = stream()) {
+            agendas.filter(agenda -> agenda.getID() > afterId).forEach(agenda -> {
+                page.add(agenda);
+                if (page.size() > limit) {
+                    page.poll();
+                }
+            });
+        }
+        List<T> sorted = new ArrayList<>(page);
+        sorted.sort(byId);
+        return sorted;
+    }
+}
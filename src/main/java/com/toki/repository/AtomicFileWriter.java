@@ -0,0 +1,107 @@
+package com.toki.repository;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Crash-safe file replacement: the new content is written to a temp file in
+ * the same directory, forced to disk, and then atomically renamed over the
+ * target. Readers see either the old or the new file, never a truncated one.
+ */
+public final class AtomicFileWriter {
+
+    /**
+     * Produces the content of the file.
+     */
+    public interface Content {
+        void writeTo(Writer writer) throws IOException;
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private AtomicFileWriter() {
+    }
+
+    /**
+     * Replaces the target file with the given content.
+     *
+     * @param target  The file to replace.
+     * @param content The new content.
+     * @throws IOException If writing or renaming fails; the target is then unchanged.
+     */
+    public static void write(File target, Content content) throws IOException {
+        write(target, StorageFormat.COMPACT, content);
+    }
+
+    /**
+     * Replaces the target file with the given content in a storage format.
+     *
+     * @param target  The file to replace.
+     * @param format  Encoding of the file (plain or gzip).
+     * @param content The new content.
+     * @throws IOException If writing or renaming fails; the target is then unchanged.
+     */
+    public static void write(File target, StorageFormat format, Content content) throws IOException {
+        replace(writeTemp(target, format, content), target);
+        syncDirectory(target);
+    }
+
+    /**
+     * Writes the content to a temp file next to the target and forces it to disk.
+     *
+     * @param target  The file that will be replaced.
+     * @param format  Encoding of the file (plain or gzip).
+     * @param content The new content.
+     * @return The temp file, ready for {@link #replace}.
+     * @throws IOException If writing fails.
+     */
+    public static File writeTemp(File target, StorageFormat format, Content content) throws IOException {
+        File directory = target.getAbsoluteFile().getParentFile();
+        File temp = File.createTempFile(target.getName() + ".", ".tmp", directory);
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            OutputStream encoded = format.encode(out, BUFFER_SIZE);
+            Writer writer = new BufferedWriter(new OutputStreamWriter(encoded, StandardCharsets.UTF_8), BUFFER_SIZE);
+            content.writeTo(writer);
+            writer.flush();
+            if (encoded instanceof DeflaterOutputStream deflater) {
+                deflater.finish();
+            }
+            out.getChannel().force(true);
+        } catch (IOException | RuntimeException e) {
+            temp.delete();
+            throw e;
+        }
+        return temp;
+    }
+
+    /**
+     * Atomically renames a temp file over the target.
+     *
+     * @param temp   A file returned by {@link #writeTemp}.
+     * @param target The file to replace.
+     * @throws IOException If the rename fails.
+     */
+    public static void replace(File temp, File target) throws IOException {
+        Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Forces the directory entry of a replaced file to disk. Not every
+     * platform allows opening a directory; there the rename is left to the OS.
+     *
+     * @param target A file in the directory to sync.
+     */
+    public static void syncDirectory(File target) {
+        File directory = target.getAbsoluteFile().getParentFile();
+        try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Windows cannot open directories, the rename itself is still atomic
+        }
+    }
+}
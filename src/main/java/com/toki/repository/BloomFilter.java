@@ -0,0 +1,94 @@
+package com.toki.repository;
+
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * Bloom filter over 64-bit key hashes, stored in a {@link LongBuffer} so its
+ * owner decides where the bits live. A negative answer is exact, a positive one
+ * is wrong with about the configured probability. The bit positions are
+ * derived from the two halves of the hash (Kirsch-Mitzenmacher), so a key is
+ * hashed once no matter how many bits it sets.
+ */
+public class BloomFilter {
+
+    private final LongBuffer words;
+    private final long bitCount;
+    private final int hashCount;
+
+    /**
+     * Wraps a bit array.
+     *
+     * @param words     The bits, all zero for an empty filter; used in place.
+     * @param hashCount Number of bits set per key.
+     */
+    public BloomFilter(LongBuffer words, int hashCount) {
+        this.words = words;
+        this.bitCount = (long) words.capacity() * Long.SIZE;
+        this.hashCount = hashCount;
+    }
+
+    /**
+     * Number of 64-bit words needed for a false positive rate.
+     *
+     * @param expectedKeys      Number of keys the filter is sized for.
+     * @param falsePositiveRate Accepted rate of wrong positive answers, e.g. 0.01.
+     * @return The number of words.
+     */
+    public static int wordsFor(int expectedKeys, double falsePositiveRate) {
+        double bits = -Math.max(1, expectedKeys) * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        return (int) Math.ceil(bits / Long.SIZE);
+    }
+
+    /**
+     * Number of bits per key that minimizes the false positive rate.
+     *
+     * @param expectedKeys Number of keys the filter is sized for.
+     * @param words        Size of the filter in words.
+     * @return The number of hashes, at least 1.
+     */
+    public static int hashesFor(int expectedKeys, int words) {
+        return Math.max(1, (int) Math.round((double) words * Long.SIZE / Math.max(1, expectedKeys) * Math.log(2)));
+    }
+
+    /**
+     * Adds a key.
+     *
+     * @param hash The 64-bit hash of the key.
+     * @return The index of every word a bit was set in, e.g. to write them back to a file.
+     */
+    public int[] add(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        int[] changed = new int[hashCount];
+        int count = 0;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Integer.toUnsignedLong(h1 + i * h2) % bitCount;
+            int word = (int) (bit >>> 6);
+            long value = words.get(word);
+            if ((value & (1L << bit)) == 0) {
+                words.put(word, value | (1L << bit));
+                changed[count++] = word;
+            }
+        }
+        return Arrays.copyOf(changed, count);
+    }
+
+    /**
+     * Checks whether a key may have been added.
+     *
+     * @param hash The 64-bit hash of the key.
+     * @return false if the key was certainly never added.
+     */
+    public boolean mightContain(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Integer.toUnsignedLong(h1 + i * h2) % bitCount;
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,13 @@
+package com.toki.repository;
+
+/**
+ * Collects the mutations of one {@link Agenda_RepositoryInterface#bulk} call.
+ * They are applied in the order given, as a single read and a single write.
+ *
+ * @param <T> The agenda type.
+ */
+public interface BulkWriter<T> {
+    void save(T item);
+
+    void deleteByID(int ID);
+}
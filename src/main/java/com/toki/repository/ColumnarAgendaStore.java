@@ -0,0 +1,424 @@
+package com.toki.repository;
+
+import com.toki.model.AgendaAbstract;
+import com.toki.model.AgendaRegular;
+import com.toki.model.AgendaSpecial;
+import com.toki.model.AgendaTask;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Agenda store that keeps the records of a JSON repository as primitive
+ * columns instead of model objects: IDs and epoch-days as {@code int[]},
+ * minute-of-day as {@code short[]}, kind and day-of-week as {@code byte[]},
+ * and type and group as codes into a dictionary of the distinct strings.
+ * <p>
+ * Queries filter and sort on the columns alone (range queries on an
+ * {@link EpochDayOrder} of the dated rows that is kept sorted as records
+ * change); an {@link AgendaAbstract} is
+ * only created for the rows that are returned, already in schedule order
+ * (date, then agendas with a time before tasks, by time or priority).
+ * Long notes stay in the note store and are loaded when first read.
+ * <p>
+ * Writes go to the wrapped repository first and are then applied to the
+ * columns, see {@link MirroredAgendaStore}.
+ *
+ * @param <T> The agenda type stored in the repository.
+ */
+public class ColumnarAgendaStore<T extends AgendaAbstract> extends MirroredAgendaStore<T> {
+
+    private static final byte REGULAR = 0;
+    private static final byte SPECIAL = 1;
+    private static final byte TASK = 2;
+
+    private static final int NO_CODE = -1;
+    private static final int NO_TIME_RANK = 24 * 60;
+    private static final int INITIAL_CAPACITY = 256;
+
+    private int size;
+    private int[] ids = new int[INITIAL_CAPACITY];
+    private int[] epochDays = new int[INITIAL_CAPACITY];
+    private short[] minutesOfDay = new short[INITIAL_CAPACITY];
+    private byte[] seconds = new byte[INITIAL_CAPACITY];
+    private byte[] kinds = new byte[INITIAL_CAPACITY];
+    private byte[] daysOfWeek = new byte[INITIAL_CAPACITY];
+    private char[] priorities = new char[INITIAL_CAPACITY];
+    private int[] typeCodes = new int[INITIAL_CAPACITY];
+    private int[] groupCodes = new int[INITIAL_CAPACITY];
+    private String[] titles = new String[INITIAL_CAPACITY];
+    // Inline notes, or the reference into the note store when notesRefs[row] is set
+    private String[] notes = new String[INITIAL_CAPACITY];
+    private String[] notesRefs = new String[INITIAL_CAPACITY];
+
+    private final Dictionary types = new Dictionary();
+    private final Dictionary groups = new Dictionary();
+    private final IdIndex rows = new IdIndex();
+
+    // IDs of the rows that have a date, sorted by epoch-day
+    private final EpochDayOrder dateOrder = new EpochDayOrder();
+    private int lastEpochDay;
+    private LocalDate lastDate;
+
+    /**
+     * Wraps a repository. The columns are built on the first query.
+     *
+     * @param source The repository that persists the agendas.
+     */
+    public ColumnarAgendaStore(Agenda_RepositoryAbstract<T> source) {
+        super(source);
+    }
+
+    @Override
+    public synchronized T findByID(int ID) {
+        ensureLoaded();
+        int row = rows.get(ID);
+        return row >= 0 ? materialize(row) : null;
+    }
+
+    @Override
+    public synchronized List<T> findAll() {
+        ensureLoaded();
+        List<T> agendas = new ArrayList<>(size);
+        for (int row = 0; row < size; row++) {
+            agendas.add(materialize(row));
+        }
+        return agendas;
+    }
+
+    /**
+     * Binary-searches the rows ordered by epoch-day and materializes only the
+     * rows in range, sorted by date and then in schedule order within each day.
+     */
+    @Override
+    public synchronized List<T> findBetween(LocalDate from, LocalDate to) {
+        ensureLoaded();
+        long toDay = to.toEpochDay();
+        long[] keys = new long[16];
+        int matches = 0;
+        for (int i = dateOrder.firstOnOrAfter(from.toEpochDay());
+             i < dateOrder.size() && dateOrder.epochDayAt(i) <= toDay; i++) {
+            if (matches == keys.length) {
+                keys = Arrays.copyOf(keys, matches * 2);
+            }
+            keys[matches++] = ((long) dateOrder.epochDayAt(i) << 32) | rows.get(dateOrder.idAt(i));
+        }
+
+        // Within a day the rows are sorted again by schedule key
+        for (int start = 0; start < matches; ) {
+            int day = (int) (keys[start] >> 32);
+            int end = start;
+            while (end < matches && (int) (keys[end] >> 32) == day) {
+                keys[end] = scheduleKey((int) keys[end]);
+                end++;
+            }
+            Arrays.sort(keys, start, end);
+            start = end;
+        }
+        return materializeByScheduleKey(keys, matches);
+    }
+
+    /**
+     * Gets the regular agendas of a weekday sorted by time (missing times
+     * last), then by ID, as {@link DayOfWeekIndex} orders them.
+     *
+     * @param day The weekday.
+     * @return The agendas of that day.
+     */
+    public synchronized List<T> findByDay(DayOfWeek day) {
+        ensureLoaded();
+        byte value = (byte) day.getValue();
+        long[] keys = new long[16];
+        int matches = 0;
+        for (int row = 0; row < size; row++) {
+            if (daysOfWeek[row] == value) {
+                if (matches == keys.length) {
+                    keys = Arrays.copyOf(keys, matches * 2);
+                }
+                keys[matches++] = scheduleKey(row);
+            }
+        }
+        Arrays.sort(keys, 0, matches);
+        return materializeByScheduleKey(keys, matches);
+    }
+
+    /**
+     * Gets the regular agendas of every weekday, each sorted by time. The
+     * rows are bucketed by weekday in a single scan of the day column.
+     *
+     * @return The agendas per weekday, Monday first.
+     */
+    public synchronized Map<DayOfWeek, List<T>> findWeek() {
+        ensureLoaded();
+        long[][] keys = new long[8][16];
+        int[] matches = new int[8];
+        for (int row = 0; row < size; row++) {
+            byte day = daysOfWeek[row];
+            if (day > 0) {
+                if (matches[day] == keys[day].length) {
+                    keys[day] = Arrays.copyOf(keys[day], matches[day] * 2);
+                }
+                keys[day][matches[day]++] = scheduleKey(row);
+            }
+        }
+        Map<DayOfWeek, List<T>> week = new EnumMap<>(DayOfWeek.class);
+        for (DayOfWeek day : DayOfWeek.values()) {
+            int value = day.getValue();
+            Arrays.sort(keys[value], 0, matches[value]);
+            week.put(day, materializeByScheduleKey(keys[value], matches[value]));
+        }
+        return week;
+    }
+
+    @Override
+    public synchronized long count() {
+        ensureLoaded();
+        return size;
+    }
+
+    /**
+     * Scans the ID column and materializes only the rows of the page.
+     */
+    @Override
+    public synchronized List<T> findPage(int afterId, int limit) {
+        ensureLoaded();
+        if (limit <= 0) {
+            return new ArrayList<>();
+        }
+        long[] keys = new long[16];
+        int matches = 0;
+        for (int row = 0; row < size; row++) {
+            if (ids[row] > afterId) {
+                if (matches == keys.length) {
+                    keys = Arrays.copyOf(keys, matches * 2);
+                }
+                keys[matches++] = ((long) ids[row] << 32) | row;
+            }
+        }
+        Arrays.sort(keys, 0, matches);
+        int pageSize = Math.min(limit, matches);
+        List<T> page = new ArrayList<>(pageSize);
+        for (int i = 0; i < pageSize; i++) {
+            page.add(materialize((int) keys[i]));
+        }
+        return page;
+    }
+
+    @Override
+    protected void clearRecords() {
+        for (int row = 0; row < size; row++) {
+            titles[row] = null;
+            notes[row] = null;
+            notesRefs[row] = null;
+        }
+        size = 0;
+        dateOrder.clear();
+        rows.clear();
+        types.clear();
+        groups.clear();
+    }
+
+    @Override
+    protected void putRecord(T agenda) {
+        int row = rows.get(agenda.getID());
+        if (row >= 0 && epochDays[row] != AgendaBinaryCodec.NO_DATE) {
+            dateOrder.remove(epochDays[row], agenda.getID());
+        }
+        if (row < 0) {
+            if (size == ids.length) {
+                grow();
+            }
+            row = size++;
+            rows.put(agenda.getID(), row);
+        }
+        ids[row] = agenda.getID();
+        titles[row] = agenda.getTitle();
+        typeCodes[row] = types.encode(agenda.getType());
+        groupCodes[row] = groups.encode(agenda.getGroup());
+        // The reference is kept as is, so the notes are not loaded here
+        String ref = agenda.getNotesRef();
+        notesRefs[row] = ref;
+        notes[row] = ref != null ? null : agenda.getNotes();
+
+        LocalDate date = agenda.getRelevantDate();
+        epochDays[row] = date != null ? (int) date.toEpochDay() : AgendaBinaryCodec.NO_DATE;
+        if (date != null) {
+            dateOrder.add(epochDays[row], agenda.getID());
+        }
+        LocalTime time = null;
+        daysOfWeek[row] = 0;
+        priorities[row] = 0;
+        if (agenda instanceof AgendaRegular regular) {
+            kinds[row] = REGULAR;
+            time = regular.getTime();
+            daysOfWeek[row] = (byte) (regular.getDay() != null ? regular.getDay().getValue() : 0);
+        } else if (agenda instanceof AgendaSpecial special) {
+            kinds[row] = SPECIAL;
+            time = special.getTime();
+        } else {
+            kinds[row] = TASK;
+            priorities[row] = ((AgendaTask) agenda).getPriority();
+        }
+        minutesOfDay[row] = time != null ? (short) (time.getHour() * 60 + time.getMinute()) : AgendaBinaryCodec.NO_TIME;
+        seconds[row] = (byte) (time != null ? time.getSecond() : 0);
+    }
+
+    /**
+     * Removes a row by moving the last row into its place.
+     */
+    @Override
+    protected void removeRecord(int ID) {
+        int row = rows.remove(ID);
+        if (row < 0) {
+            return;
+        }
+        if (epochDays[row] != AgendaBinaryCodec.NO_DATE) {
+            dateOrder.remove(epochDays[row], ID);
+        }
+        // The order holds IDs, so the row moved below keeps its place in it
+        int last = --size;
+        if (row != last) {
+            ids[row] = ids[last];
+            epochDays[row] = epochDays[last];
+            minutesOfDay[row] = minutesOfDay[last];
+            seconds[row] = seconds[last];
+            kinds[row] = kinds[last];
+            daysOfWeek[row] = daysOfWeek[last];
+            priorities[row] = priorities[last];
+            typeCodes[row] = typeCodes[last];
+            groupCodes[row] = groupCodes[last];
+            titles[row] = titles[last];
+            notes[row] = notes[last];
+            notesRefs[row] = notesRefs[last];
+            rows.put(ids[row], row);
+        }
+        titles[last] = null;
+        notes[last] = null;
+        notesRefs[last] = null;
+    }
+
+    private void grow() {
+        int capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        epochDays = Arrays.copyOf(epochDays, capacity);
+        minutesOfDay = Arrays.copyOf(minutesOfDay, capacity);
+        seconds = Arrays.copyOf(seconds, capacity);
+        kinds = Arrays.copyOf(kinds, capacity);
+        daysOfWeek = Arrays.copyOf(daysOfWeek, capacity);
+        priorities = Arrays.copyOf(priorities, capacity);
+        typeCodes = Arrays.copyOf(typeCodes, capacity);
+        groupCodes = Arrays.copyOf(groupCodes, capacity);
+        titles = Arrays.copyOf(titles, capacity);
+        notes = Arrays.copyOf(notes, capacity);
+        notesRefs = Arrays.copyOf(notesRefs, capacity);
+    }
+
+    /**
+     * Sort key of a row within one day: agendas with a time first, by time
+     * (missing times last), then tasks by priority; ties by ID. The ID is
+     * stored in the low 32 bits, offset so that negative IDs sort first.
+     */
+    private long scheduleKey(int row) {
+        int tier;
+        int rank;
+        if (kinds[row] == TASK) {
+            tier = 1;
+            rank = priorityRank(priorities[row]);
+        } else {
+            tier = 0;
+            rank = minutesOfDay[row] != AgendaBinaryCodec.NO_TIME ? minutesOfDay[row] : NO_TIME_RANK;
+        }
+        return ((long) tier << 43) | ((long) rank << 32) | ((ids[row] ^ Integer.MIN_VALUE) & 0xFFFFFFFFL);
+    }
+
+    private static int priorityRank(char priority) {
+        switch (Character.toUpperCase(priority)) {
+            case 'H':
+                return 1;
+            case 'M':
+                return 2;
+            case 'L':
+                return 3;
+            default:
+                return 99;
+        }
+    }
+
+    private List<T> materializeByScheduleKey(long[] keys, int count) {
+        List<T> agendas = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int ID = (int) keys[i] ^ Integer.MIN_VALUE;
+            agendas.add(materialize(rows.get(ID)));
+        }
+        return agendas;
+    }
+
+    /**
+     * Converts an epoch-day, reusing the date of the previous call: rows
+     * are mostly materialized in date order, many on the same day.
+     */
+    private LocalDate dateOf(int epochDay) {
+        if (epochDay == AgendaBinaryCodec.NO_DATE) {
+            return null;
+        }
+        if (lastDate == null || epochDay != lastEpochDay) {
+            lastDate = LocalDate.ofEpochDay(epochDay);
+            lastEpochDay = epochDay;
+        }
+        return lastDate;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T materialize(int row) {
+        String type = types.decode(typeCodes[row]);
+        String group = groups.decode(groupCodes[row]);
+        LocalDate date = dateOf(epochDays[row]);
+        short minuteOfDay = minutesOfDay[row];
+        LocalTime time = minuteOfDay != AgendaBinaryCodec.NO_TIME
+                ? LocalTime.of(minuteOfDay / 60, minuteOfDay % 60, seconds[row])
+                : null;
+
+        AgendaAbstract agenda = switch (kinds[row]) {
+            case REGULAR -> new AgendaRegular(ids[row], titles[row], type, group,
+                    daysOfWeek[row] > 0 ? DayOfWeek.of(daysOfWeek[row]) : null, time, notes[row]);
+            case SPECIAL -> new AgendaSpecial(ids[row], titles[row], type, group, date, time, notes[row]);
+            default -> new AgendaTask(ids[row], titles[row], type, group, date, priorities[row], notes[row]);
+        };
+        attachNotes(agenda, notesRefs[row]);
+        return (T) agenda;
+    }
+
+    /**
+     * Codes of the distinct strings of a column; null has no code.
+     */
+    private static class Dictionary {
+        private final List<String> values = new ArrayList<>();
+        private final Map<String, Integer> codes = new HashMap<>();
+
+        int encode(String value) {
+            if (value == null) {
+                return NO_CODE;
+            }
+            return codes.computeIfAbsent(value, v -> {
+                values.add(StringPool.canonical(v));
+                return values.size() - 1;
+            });
+        }
+
+        String decode(int code) {
+            return code != NO_CODE ? values.get(code) : null;
+        }
+
+        void clear() {
+            values.clear();
+            codes.clear();
+        }
+    }
+}
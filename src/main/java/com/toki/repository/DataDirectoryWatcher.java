@@ -0,0 +1,125 @@
+package com.toki.repository;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches a data directory with a {@link WatchService} and reloads only the
+ * repositories whose files were changed by another process or tool.
+ * <p>
+ * Events are collected for a short debounce period. Each affected repository
+ * then compares its files with the stamp of its own last read or write, so
+ * the app's own saves never cause a reparse. If anything was reloaded, the
+ * change listener runs on the watcher thread.
+ */
+public class DataDirectoryWatcher implements AutoCloseable {
+
+    private static final long DEBOUNCE_MILLIS = 100;
+
+    private final Path directory;
+    private final Runnable onChange;
+    private final List<Agenda_RepositoryAbstract<?>> repositories = new CopyOnWriteArrayList<>();
+    private WatchService watchService;
+
+    /**
+     * Constructs a watcher.
+     *
+     * @param directory Directory holding the data files.
+     * @param onChange  Called after one or more repositories were reloaded.
+     */
+    public DataDirectoryWatcher(Path directory, Runnable onChange) {
+        this.directory = directory;
+        this.onChange = onChange;
+    }
+
+    /**
+     * Adds a repository whose data file lies in the watched directory.
+     *
+     * @param repository The repository to keep up to date.
+     */
+    public void register(Agenda_RepositoryAbstract<?> repository) {
+        repositories.add(repository);
+        repository.setWatched(true);
+    }
+
+    /**
+     * Starts watching on a virtual thread.
+     *
+     * @throws IOException If the directory cannot be watched.
+     */
+    public synchronized void start() throws IOException {
+        watchService = directory.getFileSystem().newWatchService();
+        directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        Thread.ofVirtual().name("toki-watcher-" + directory.getFileName()).start(this::run);
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                Set<Agenda_RepositoryAbstract<?>> affected = new HashSet<>();
+                WatchKey key = watchService.take();
+                // Collect the burst of events a single save produces (temp file, rename, log append)
+                while (key != null) {
+                    collect(key, affected);
+                    key = watchService.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                boolean changed = false;
+                for (Agenda_RepositoryAbstract<?> repository : affected) {
+                    changed |= repository.reloadIfChanged();
+                }
+                if (changed) {
+                    onChange.run();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Watcher closed
+        }
+    }
+
+    private void collect(WatchKey key, Set<Agenda_RepositoryAbstract<?>> affected) {
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                affected.addAll(repositories);
+                continue;
+            }
+            String name = event.context().toString();
+            if (name.endsWith(".tmp") || name.endsWith(".lock")) {
+                continue; // Snapshot being written (its rename is reported separately) or a lock side file
+            }
+            for (Agenda_RepositoryAbstract<?> repository : repositories) {
+                String dataFile = repository.getFile().getName();
+                // The data file itself, or one of its journal segments
+                if (name.equals(dataFile) || name.startsWith(dataFile + ".")) {
+                    affected.add(repository);
+                }
+            }
+        }
+        key.reset();
+    }
+
+    /**
+     * Stops watching; the repositories go back to checking the file stamp on every read.
+     */
+    @Override
+    public synchronized void close() {
+        repositories.forEach(repository -> repository.setWatched(false));
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
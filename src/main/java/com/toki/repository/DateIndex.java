@@ -0,0 +1,70 @@
+package com.toki.repository;
+
+import com.toki.model.AgendaAbstract;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Sorted index of agendas by their relevant date.
+ * Keys combine the epoch-day (high 32 bits) and the ID (low 32 bits), so a
+ * date range is one contiguous sub-map: a query costs O(log N + K).
+ * Agendas without a relevant date (Regular) are not indexed.
+ *
+ * @param <T> The agenda type.
+ */
+public class DateIndex<T extends AgendaAbstract> implements MemoryIndex<T> {
+
+    private final NavigableMap<Long, T> byDay = new TreeMap<>();
+    // Epoch-day each ID was indexed under, so removal works even if the agenda changed since
+    private final IdIndex dayById = new IdIndex();
+
+    @Override
+    public void put(T agenda) {
+        remove(agenda.getID());
+        LocalDate date = agenda.getRelevantDate();
+        if (date == null) {
+            return;
+        }
+        int epochDay = (int) date.toEpochDay();
+        byDay.put(key(epochDay, agenda.getID()), agenda);
+        dayById.put(agenda.getID(), epochDay);
+    }
+
+    @Override
+    public void remove(int ID) {
+        if (dayById.contains(ID)) {
+            byDay.remove(key(dayById.getOrDefault(ID, 0), ID));
+            dayById.remove(ID);
+        }
+    }
+
+    @Override
+    public void clear() {
+        byDay.clear();
+        dayById.clear();
+    }
+
+    /**
+     * Gets the agendas whose relevant date lies in a range, ordered by date.
+     *
+     * @param from First day of the range (inclusive).
+     * @param to   Last day of the range (inclusive).
+     * @return The agendas in the range.
+     */
+    public List<T> between(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            return new ArrayList<>();
+        }
+        long fromKey = key((int) from.toEpochDay(), 0);
+        long toKey = key((int) to.toEpochDay(), -1);
+        return new ArrayList<>(byDay.subMap(fromKey, true, toKey, true).values());
+    }
+
+    private static long key(int epochDay, int ID) {
+        return ((long) epochDay << 32) | (ID & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,92 @@
+package com.toki.repository;
+
+import com.toki.model.AgendaRegular;
+
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Regular agendas partitioned by day of the week, each day kept sorted by time.
+ * A save inserts at the binary-searched position and a delete removes from a
+ * single day, so the partition never needs to be rebuilt or re-sorted.
+ */
+public class DayOfWeekIndex implements MemoryIndex<AgendaRegular> {
+
+    /**
+     * Order of the agendas within a day: by time (missing times last), then by ID.
+     */
+    public static final Comparator<AgendaRegular> BY_TIME = Comparator
+            .comparing(AgendaRegular::getTime, Comparator.nullsLast(Comparator.<LocalTime>naturalOrder()))
+            .thenComparingInt(AgendaRegular::getID);
+
+    private final Map<DayOfWeek, List<AgendaRegular>> byDay = new EnumMap<>(DayOfWeek.class);
+    // Day each ID was filed under, so removal works even if the agenda changed since
+    private final IdIndex dayById = new IdIndex();
+
+    public DayOfWeekIndex() {
+        for (DayOfWeek day : DayOfWeek.values()) {
+            byDay.put(day, new ArrayList<>());
+        }
+    }
+
+    @Override
+    public void put(AgendaRegular agenda) {
+        remove(agenda.getID());
+        DayOfWeek day = agenda.getDay();
+        if (day == null) {
+            return;
+        }
+        List<AgendaRegular> agendas = byDay.get(day);
+        int position = Collections.binarySearch(agendas, agenda, BY_TIME);
+        agendas.add(position < 0 ? -position - 1 : position, agenda);
+        dayById.put(agenda.getID(), day.getValue());
+    }
+
+    @Override
+    public void remove(int ID) {
+        int day = dayById.remove(ID);
+        if (day < 0) {
+            return;
+        }
+        List<AgendaRegular> agendas = byDay.get(DayOfWeek.of(day));
+        for (int i = 0; i < agendas.size(); i++) {
+            if (agendas.get(i).getID() == ID) {
+                agendas.remove(i);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        byDay.values().forEach(List::clear);
+        dayById.clear();
+    }
+
+    /**
+     * Gets the agendas of one day, sorted by time.
+     *
+     * @param day The day of the week.
+     * @return A copy of the day's agendas.
+     */
+    public List<AgendaRegular> get(DayOfWeek day) {
+        return new ArrayList<>(byDay.get(day));
+    }
+
+    /**
+     * Gets the agendas of every day, each day sorted by time.
+     *
+     * @return A copy of the partition, Monday first.
+     */
+    public Map<DayOfWeek, List<AgendaRegular>> week() {
+        Map<DayOfWeek, List<AgendaRegular>> week = new EnumMap<>(DayOfWeek.class);
+        byDay.forEach((day, agendas) -> week.put(day, new ArrayList<>(agendas)));
+        return week;
+    }
+}
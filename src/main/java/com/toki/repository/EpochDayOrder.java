@@ -0,0 +1,118 @@
+package com.toki.repository;
+
+import java.util.Arrays;
+
+/**
+ * IDs of dated records sorted by epoch-day, as one {@code long[]} of keys
+ * combining the epoch-day (high 32 bits) and the ID (low 32 bits) like
+ * {@link DateIndex}, for the stores that do not hold model objects. A date
+ * range is a contiguous run found by binary search.
+ * <p>
+ * Single changes keep the array sorted by insertion; while a store is being
+ * (re)loaded the keys are only appended and sorted once, by the first query.
+ */
+class EpochDayOrder {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private int size;
+    private boolean loading = true;
+
+    /**
+     * Adds the key of a record.
+     *
+     * @param epochDay The record's epoch-day.
+     * @param ID       The record's ID.
+     */
+    void add(int epochDay, int ID) {
+        long key = key(epochDay, ID);
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+        }
+        if (loading) {
+            keys[size++] = key;
+            return;
+        }
+        int position = Arrays.binarySearch(keys, 0, size, key);
+        if (position >= 0) {
+            return;
+        }
+        position = -position - 1;
+        System.arraycopy(keys, position, keys, position + 1, size - position);
+        keys[position] = key;
+        size++;
+    }
+
+    /**
+     * Removes the key of a record; the epoch-day must be the one it was added with.
+     *
+     * @param epochDay The epoch-day the record was added with.
+     * @param ID       The record's ID.
+     */
+    void remove(int epochDay, int ID) {
+        long key = key(epochDay, ID);
+        if (loading) {
+            // Unsorted yet, e.g. an ID stored twice in the file: swap the last key in
+            for (int i = 0; i < size; i++) {
+                if (keys[i] == key) {
+                    keys[i] = keys[--size];
+                    return;
+                }
+            }
+            return;
+        }
+        int position = Arrays.binarySearch(keys, 0, size, key);
+        if (position >= 0) {
+            System.arraycopy(keys, position + 1, keys, position, size - position - 1);
+            size--;
+        }
+    }
+
+    /**
+     * Removes all keys and appends the following ones unsorted until the next query.
+     */
+    void clear() {
+        size = 0;
+        loading = true;
+    }
+
+    /**
+     * Finds the first key on or after a day.
+     *
+     * @param epochDay The day.
+     * @return The position, or {@link #size()} if every key is before the day.
+     */
+    int firstOnOrAfter(long epochDay) {
+        sort();
+        if (epochDay > Integer.MAX_VALUE) {
+            return size;
+        }
+        long fromKey = key((int) Math.max(epochDay, Integer.MIN_VALUE), 0);
+        int position = Arrays.binarySearch(keys, 0, size, fromKey);
+        return position >= 0 ? position : -position - 1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int epochDayAt(int position) {
+        return (int) (keys[position] >> 32);
+    }
+
+    int idAt(int position) {
+        return (int) keys[position];
+    }
+
+    private void sort() {
+        if (loading) {
+            Arrays.sort(keys, 0, size);
+            loading = false;
+        }
+    }
+
+    private static long key(int epochDay, int ID) {
+        return ((long) epochDay << 32) | (ID & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,125 @@
+package com.toki.repository;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+/**
+ * What a repository last saw of its files, to tell whether another process
+ * changed them since: the latest modification time in nanoseconds, the total
+ * length, the file keys (device and inode) and, while the files are recently
+ * modified, a CRC32C of their content.
+ * <p>
+ * A snapshot is written to a new file and renamed over the old one, so a
+ * rewrite that keeps the length changes the key where the file system has
+ * one. Where it has none (Windows) or the key is reused, a rewrite within
+ * the same tick of the file system clock would still keep the stamp. That
+ * can only happen while the modification time is recent, so only then is
+ * the content read and checksummed; once the clock has moved on,
+ * {@link #settled()} drops the checksum and comparing is attribute reads
+ * again. A time with sub-millisecond digits comes from a fine clock (ext4,
+ * NTFS, APFS: ticks of at most about 16 ms); whole milliseconds or coarser
+ * (FAT, HFS+) may hide up to 2 s.
+ *
+ * @param modified Latest modification time of the files, in nanoseconds.
+ * @param length   Combined length of the files.
+ * @param fileKeys Key of each file, null for a missing file or a file system without keys.
+ * @param checksum CRC32C of the content of the files, or {@link #NO_CHECKSUM}.
+ */
+record FileStamp(long modified, long length, List<Object> fileKeys, long checksum) {
+
+    static final long NO_CHECKSUM = -1;
+
+    /**
+     * Matches no files, not even missing ones.
+     */
+    static final FileStamp NONE = new FileStamp(-1, -1, List.of(), NO_CHECKSUM);
+
+    // Longest tick of a file system clock with sub-millisecond timestamps
+    private static final long FINE_SETTLE_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    // Coarsest modification time resolution of the common file systems (FAT)
+    private static final long COARSE_SETTLE_NANOS = TimeUnit.SECONDS.toNanos(2);
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Reads the stamp of some files, with a checksum if any of them was
+     * modified recently.
+     *
+     * @param files The files; missing ones count as empty.
+     * @return The stamp.
+     */
+    static FileStamp of(File... files) {
+        return read(files, false);
+    }
+
+    /**
+     * Reads the current stamp of the same files, comparable to this one with
+     * {@link #equals}: it has a checksum if this one has.
+     *
+     * @param files The files this stamp was read from.
+     * @return The current stamp.
+     */
+    FileStamp current(File... files) {
+        return read(files, checksum != NO_CHECKSUM);
+    }
+
+    /**
+     * Drops the checksum once the files were last modified long enough ago
+     * that no later write can share their modification time.
+     *
+     * @return This stamp, without checksum if it is settled.
+     */
+    FileStamp settled() {
+        return checksum != NO_CHECKSUM && !isRecent(modified)
+                ? new FileStamp(modified, length, fileKeys, NO_CHECKSUM) : this;
+    }
+
+    private static FileStamp read(File[] files, boolean withChecksum) {
+        long modified = 0;
+        long length = 0;
+        List<Object> fileKeys = new ArrayList<>(files.length);
+        for (File file : files) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+                modified = Math.max(modified, attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS));
+                length += attributes.size();
+                fileKeys.add(attributes.fileKey());
+            } catch (IOException e) {
+                fileKeys.add(null);
+            }
+        }
+        long checksum = withChecksum || isRecent(modified) ? checksum(files) : NO_CHECKSUM;
+        return new FileStamp(modified, length, fileKeys, checksum);
+    }
+
+    private static boolean isRecent(long modified) {
+        long settle = modified % 1_000_000 != 0 ? FINE_SETTLE_NANOS : COARSE_SETTLE_NANOS;
+        return TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis()) - modified < settle;
+    }
+
+    private static long checksum(File[] files) {
+        CRC32C crc = new CRC32C();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        for (File file : files) {
+            try (InputStream in = Files.newInputStream(file.toPath())) {
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    crc.update(buffer, 0, read);
+                }
+            } catch (NoSuchFileException e) {
+                // Missing, like in the attributes
+            } catch (IOException e) {
+                // Unreadable right now, e.g. being replaced: never equal to a real checksum
+                return -2;
+            }
+        }
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,108 @@
+package com.toki.repository;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batches concurrent commits into one.
+ * <p>
+ * Each mutation registers a ticket (under the caller's own lock, so tickets
+ * follow the mutation order) and then waits for it with {@link #await}. The
+ * first waiter becomes the leader: it waits a short window for more writers,
+ * then runs the commit action once for every ticket registered so far. The
+ * action must persist the latest state, so a burst of N saves costs one fsync.
+ */
+public class GroupCommit {
+
+    /**
+     * Persists everything registered before it was started.
+     */
+    public interface Action {
+        void commit() throws IOException;
+    }
+
+    private final long windowNanos;
+
+    private long registered;
+    private long committed;
+    private boolean leaderActive;
+    private long failedUpTo;
+    private IOException failure;
+
+    /**
+     * Constructs a group commit.
+     *
+     * @param windowMillis How long a leader waits for further writers before committing.
+     */
+    public GroupCommit(long windowMillis) {
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+    }
+
+    /**
+     * Registers a mutation that needs to be committed.
+     *
+     * @return The ticket to pass to {@link #await}.
+     */
+    public synchronized long register() {
+        return ++registered;
+    }
+
+    /**
+     * Waits until the ticket is committed, running the commit if no other
+     * thread is doing so.
+     *
+     * @param ticket The ticket from {@link #register}.
+     * @param action The commit action.
+     * @throws IOException If the commit covering the ticket failed.
+     */
+    public void await(long ticket, Action action) throws IOException {
+        synchronized (this) {
+            while (true) {
+                if (committed >= ticket) {
+                    return;
+                }
+                if (failure != null && failedUpTo >= ticket) {
+                    throw failure;
+                }
+                if (!leaderActive) {
+                    leaderActive = true;
+                    break;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for commit", e);
+                }
+            }
+        }
+
+        long upTo = ticket;
+        try {
+            if (windowNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(windowNanos);
+            }
+            synchronized (this) {
+                upTo = registered;
+            }
+            action.commit();
+            synchronized (this) {
+                committed = Math.max(committed, upTo);
+            }
+        } catch (IOException e) {
+            synchronized (this) {
+                failure = e;
+                failedUpTo = upTo;
+            }
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while committing", e);
+        } finally {
+            synchronized (this) {
+                leaderActive = false;
+                notifyAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.toki.repository;
+
+import java.util.Arrays;
+
+/**
+ * Primitive int-to-int hash map used to look up agenda positions by ID.
+ * Open addressing with linear probing; no boxing of keys or values.
+ */
+public class IdIndex {
+
+    private static final int EMPTY = Integer.MIN_VALUE;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private int[] keys;
+    private int[] values;
+    private int size;
+
+    public IdIndex() {
+        this(16);
+    }
+
+    /**
+     * Constructs an index sized for the expected number of IDs.
+     *
+     * @param expectedSize Number of entries expected.
+     */
+    public IdIndex(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    /**
+     * Gets the value stored for an ID.
+     *
+     * @param id The agenda ID.
+     * @return The stored value, or -1 if the ID is not present.
+     */
+    public int get(int id) {
+        return getOrDefault(id, -1);
+    }
+
+    /**
+     * Gets the value stored for an ID, for indexes whose values may be negative.
+     *
+     * @param id           The agenda ID.
+     * @param defaultValue Value returned if the ID is not present.
+     * @return The stored value, or defaultValue.
+     */
+    public int getOrDefault(int id, int defaultValue) {
+        int mask = keys.length - 1;
+        for (int slot = mix(id) & mask; keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (keys[slot] == id) {
+                return values[slot];
+            }
+        }
+        return defaultValue;
+    }
+
+    public boolean contains(int id) {
+        int mask = keys.length - 1;
+        for (int slot = mix(id) & mask; keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (keys[slot] == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stores a value for an ID, replacing any previous one.
+     *
+     * @param id    The agenda ID (must not be Integer.MIN_VALUE).
+     * @param value The value, usually a list position.
+     */
+    public void put(int id, int value) {
+        if (id == EMPTY) {
+            throw new IllegalArgumentException("Unsupported ID: " + id);
+        }
+        if (size + 1 > keys.length * LOAD_FACTOR) {
+            rehash(keys.length << 1);
+        }
+        int mask = keys.length - 1;
+        int slot = mix(id) & mask;
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == id) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = id;
+        values[slot] = value;
+        size++;
+    }
+
+    /**
+     * Removes an ID from the index.
+     *
+     * @param id The agenda ID.
+     * @return The removed value, or -1 if the ID was not present.
+     */
+    public int remove(int id) {
+        int mask = keys.length - 1;
+        int slot = mix(id) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != id) {
+            slot = (slot + 1) & mask;
+        }
+        if (keys[slot] == EMPTY) {
+            return -1;
+        }
+        int removed = values[slot];
+        size--;
+
+        // Backward-shift the following entries so probing never needs tombstones
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (keys[next] != EMPTY) {
+            int home = mix(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = EMPTY;
+        return removed;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    private static int mix(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
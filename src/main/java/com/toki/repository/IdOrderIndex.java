@@ -0,0 +1,52 @@
+package com.toki.repository;
+
+import com.toki.model.AgendaAbstract;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Sorted index of agendas by ID, so a page after a cursor ID costs
+ * O(log N + K) instead of a scan and sort of all records.
+ *
+ * @param <T> The agenda type.
+ */
+public class IdOrderIndex<T extends AgendaAbstract> implements MemoryIndex<T> {
+
+    private final NavigableMap<Integer, T> byId = new TreeMap<>();
+
+    @Override
+    public void put(T agenda) {
+        byId.put(agenda.getID(), agenda);
+    }
+
+    @Override
+    public void remove(int ID) {
+        byId.remove(ID);
+    }
+
+    @Override
+    public void clear() {
+        byId.clear();
+    }
+
+    /**
+     * Gets the agendas following a cursor ID, in ascending ID order.
+     *
+     * @param afterId Only agendas with a greater ID are returned.
+     * @param limit   Maximum number of agendas.
+     * @return The agendas of the page.
+     */
+    public List<T> page(int afterId, int limit) {
+        List<T> page = new ArrayList<>(Math.max(0, Math.min(limit, byId.size())));
+        for (T agenda : byId.tailMap(afterId, false).values()) {
+            if (page.size() >= limit) {
+                break;
+            }
+            page.add(agenda);
+        }
+        return page;
+    }
+}
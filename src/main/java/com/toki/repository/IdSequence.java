@@ -0,0 +1,203 @@
+package com.toki.repository;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+
+/**
+ * Persistent allocator for agenda IDs.
+ * <p>
+ * The sequence file holds the first ID no process has reserved yet. A process
+ * reserves a block of IDs by advancing that value under a {@link ProcessFileLock},
+ * then hands the block out from an {@link AtomicInteger} without touching
+ * the disk. IDs are therefore unique across threads and processes, and
+ * allocation is O(1); IDs of a block that is not used up are skipped.
+ * <p>
+ * When a block runs low the next one is reserved on a virtual thread, so
+ * {@link #next()} (called on the UI thread when an agenda is created) only
+ * waits for the file lock and the fsync if the spare block is not ready yet.
+ */
+public class IdSequence implements AutoCloseable {
+
+    public static final int DEFAULT_BLOCK_SIZE = 64;
+
+    private final File file;
+    private final int blockSize;
+    private final IntSupplier seed;
+    private final ProcessFileLock fileLock;
+
+    private final AtomicInteger next = new AtomicInteger();
+    private volatile int limit;
+    private boolean seeded;
+    private boolean closed;
+
+    // The block reserved ahead of time, handed out once the current one is used up
+    private int spareStart;
+    private volatile int spareLimit;
+    private final AtomicBoolean prefetching = new AtomicBoolean();
+
+    /**
+     * Constructs a sequence.
+     *
+     * @param filePath  Path of the sequence file.
+     * @param blockSize Number of IDs reserved per disk access.
+     * @param seed      Lowest ID that is still free according to the data files
+     *                  (e.g. the maximum stored ID + 1). Asked once per process, so
+     *                  a missing, stale or copied sequence file cannot hand out used IDs.
+     */
+    public IdSequence(String filePath, int blockSize, IntSupplier seed) {
+        this.file = new File(filePath);
+        this.blockSize = blockSize;
+        this.seed = seed;
+        this.fileLock = new ProcessFileLock(new File(filePath + ".lock"));
+    }
+
+    public IdSequence(String filePath, IntSupplier seed) {
+        this(filePath, DEFAULT_BLOCK_SIZE, seed);
+    }
+
+    /**
+     * Allocates the next ID.
+     *
+     * @return A positive ID that has not been handed out before.
+     * @throws UncheckedIOException If a new block cannot be reserved.
+     */
+    public int next() {
+        while (true) {
+            int id = next.get();
+            int currentLimit = limit;
+            if (id < currentLimit) {
+                if (next.compareAndSet(id, id + 1)) {
+                    if (currentLimit - id <= blockSize / 4) {
+                        prefetch();
+                    }
+                    return id;
+                }
+            } else {
+                takeBlock(id);
+            }
+        }
+    }
+
+    /**
+     * Reserves the next block on a virtual thread, unless one is reserved or
+     * being reserved already. Called by {@link #next()} when the current block
+     * runs low; call it up front to have the first block ready before the
+     * first ID is needed.
+     */
+    public void prefetch() {
+        if (spareLimit != 0 || !prefetching.compareAndSet(false, true)) {
+            return;
+        }
+        Thread.ofVirtual().name("toki-id-prefetch-" + file.getName()).start(() -> {
+            try {
+                synchronized (this) {
+                    if (!closed && spareLimit == 0) {
+                        reserveSpare();
+                    }
+                }
+            } catch (UncheckedIOException e) {
+                System.err.println("❌ " + e.getMessage() + ", reserving when needed instead");
+            } finally {
+                prefetching.set(false);
+            }
+        });
+    }
+
+    /**
+     * Switches to the spare block, reserving it first if it is not ready.
+     */
+    private synchronized void takeBlock(int seen) {
+        if (next.get() != seen || seen < limit) {
+            return; // Another thread switched blocks in the meantime
+        }
+        if (spareLimit == 0) {
+            reserveSpare();
+        }
+        // Publish next before limit, so no thread sees the new limit with a stale next
+        next.set(spareStart);
+        limit = spareLimit;
+        spareLimit = 0;
+    }
+
+    /**
+     * Reserves the block after the current one as the spare. Callers hold this object's monitor.
+     */
+    private void reserveSpare() {
+        try {
+            ProcessFileLock.Handle handle = fileLock.acquire();
+            try (handle; FileChannel channel = openChannel()) {
+                int start = Math.max(Math.max(read(channel), limit), 1);
+                if (!seeded) {
+                    start = Math.max(start, seed.getAsInt());
+                    seeded = true;
+                }
+                write(channel, start + blockSize);
+                spareStart = start;
+                spareLimit = start + blockSize;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not reserve IDs in " + file.getPath(), e);
+        }
+    }
+
+    /**
+     * Gives the unused rest of the current block and the spare block back, if
+     * no other process has reserved a block since. Call it once no more IDs
+     * are needed.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        int reservedEnd = spareLimit != 0 ? spareLimit : limit;
+        int firstUnused = next.get() < limit ? next.get() : spareLimit != 0 ? spareStart : limit;
+        if (reservedEnd == 0 || firstUnused >= reservedEnd) {
+            return;
+        }
+        try {
+            ProcessFileLock.Handle handle = fileLock.acquire();
+            try (handle; FileChannel channel = openChannel()) {
+                if (read(channel) == reservedEnd) {
+                    write(channel, firstUnused);
+                    limit = Math.min(limit, next.get());
+                    spareLimit = 0;
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private FileChannel openChannel() throws IOException {
+        File parentDir = file.getAbsoluteFile().getParentFile();
+        if (parentDir != null && !parentDir.exists()) {
+            parentDir.mkdirs();
+        }
+        return FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private static int read(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        channel.read(buffer, 0);
+        String value = new String(buffer.array(), 0, buffer.position(), StandardCharsets.US_ASCII).trim();
+        try {
+            return value.isEmpty() ? 0 : Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            System.err.println("❌ Ignoring damaged ID sequence: " + value);
+            return 0;
+        }
+    }
+
+    private static void write(FileChannel channel, int value) throws IOException {
+        channel.truncate(0);
+        channel.write(ByteBuffer.wrap((value + "\n").getBytes(StandardCharsets.US_ASCII)), 0);
+        channel.force(false);
+    }
+}
@@ -0,0 +1,224 @@
+package com.toki.repository;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.toki.repository.json.GsonFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Verifies every file of a data directory without loading any agenda:
+ * the data files and journals record by record against their
+ * {@link RecordFrame} checksums, and the note stores blob by blob against
+ * their digests. Files are scanned in parallel, each streamed line by line
+ * so that no file is held in memory whole. Run with an optional data directory argument (default
+ * "data/database"); the exit status is 1 if anything is damaged.
+ */
+public class IntegrityScanner {
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final Pattern ID = Pattern.compile("\"ID\":(-?\\d+)");
+
+    /**
+     * Result of scanning one file.
+     *
+     * @param file    The file.
+     * @param records The number of intact records, or -1 for a note store.
+     * @param damaged One message per damaged record, blob or segment.
+     */
+    public record FileReport(Path file, long records, List<String> damaged) {
+        public boolean isIntact() {
+            return damaged.isEmpty();
+        }
+    }
+
+    public static void main(String[] args) {
+        Path directory = Path.of(args.length > 0 ? args[0] : "data/database");
+        List<FileReport> reports;
+        try {
+            reports = scan(directory);
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("❌ Could not scan " + directory + ": " + e.getMessage());
+            System.exit(2);
+            return;
+        }
+        long damaged = 0;
+        for (FileReport report : reports) {
+            String records = report.records() >= 0 ? report.records() + " intact records" : "notes";
+            if (report.isIntact()) {
+                System.out.println("✅ " + report.file() + ": " + records);
+            } else {
+                System.err.println("❌ " + report.file() + ": " + records + ", " + report.damaged().size() + " damaged");
+                report.damaged().forEach(message -> System.err.println("❌   " + message));
+                damaged += report.damaged().size();
+            }
+        }
+        System.out.println((damaged == 0 ? "✅ " : "❌ ") + reports.size() + " files scanned, " + damaged + " damaged");
+        if (damaged > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Scans the data files, journals and note stores of a directory and its
+     * shard directories.
+     *
+     * @param directory The data directory.
+     * @return One report per file, in path order.
+     * @throws IOException If the directory cannot be listed.
+     */
+    public static List<FileReport> scan(Path directory) throws IOException {
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(directory)) {
+            files = paths.filter(Files::isRegularFile).filter(IntegrityScanner::isScanned).sorted().toList();
+        }
+        return files.parallelStream().map(IntegrityScanner::scanFile).toList();
+    }
+
+    private static boolean isScanned(Path file) {
+        String name = file.getFileName().toString();
+        return name.endsWith(".json") || name.endsWith(".json.log") || name.endsWith(".json.log.compacting")
+                || name.endsWith(".notes");
+    }
+
+    /**
+     * Scans one file; the kind of file is told by its name.
+     *
+     * @param file The file.
+     * @return Its report.
+     */
+    public static FileReport scanFile(Path file) {
+        try {
+            String name = file.getFileName().toString();
+            if (name.endsWith(".notes")) {
+                return new FileReport(file, -1, NoteBlobStore.verify(file.toFile()));
+            }
+            return name.endsWith(".json") ? scanDataFile(file) : scanJournal(file);
+        } catch (IOException | UncheckedIOException e) {
+            return new FileReport(file, 0, List.of("cannot be read: " + e.getMessage()));
+        }
+    }
+
+    private static FileReport scanDataFile(Path file) throws IOException {
+        try (BufferedReader reader = openReader(file)) {
+            String header = reader.readLine();
+            if (header == null || AgendaRecordReader.headerVersion(header) < 0) {
+                return scanUnframed(file);
+            }
+            List<String> damaged = new ArrayList<>();
+            long records = 0;
+            int lineNumber = 1;
+            int lastLine = 1;
+            int footerLine = -1;
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                lineNumber++;
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (footerLine > 0) {
+                    // The closing line was not the last one after all
+                    damaged.add(describe(footerLine, AgendaRecordReader.FOOTER, "fails its checksum"));
+                    footerLine = -1;
+                }
+                lastLine = lineNumber;
+                if (line.equals(AgendaRecordReader.FOOTER)) {
+                    footerLine = lineNumber;
+                    continue;
+                }
+                String problem = checkFrame(lineNumber, line);
+                if (problem == null) {
+                    records++;
+                } else {
+                    damaged.add(problem);
+                }
+            }
+            if (footerLine < 0) {
+                damaged.add("file ends after line " + lastLine + " without the closing " + AgendaRecordReader.FOOTER);
+            }
+            return new FileReport(file, records, damaged);
+        }
+    }
+
+    /**
+     * Scans a data file written before records were framed. Without frames
+     * nothing after the first damaged record can be trusted.
+     */
+    private static FileReport scanUnframed(Path file) throws IOException {
+        try (AgendaRecordReader<JsonElement> reader = AgendaRecordReader.open(openReader(file),
+                GsonFactory.compact(), JsonElement.class)) {
+            long records = reader.skipAll();
+            return new FileReport(file, records, reader.damaged());
+        } catch (JsonParseException e) {
+            return new FileReport(file, 0, List.of("header cannot be read: " + e.getMessage()));
+        }
+    }
+
+    private static FileReport scanJournal(Path file) throws IOException {
+        List<String> damaged = new ArrayList<>();
+        long records = 0;
+        int lineNumber = 0;
+        try (BufferedReader reader = openReader(file)) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                String problem = checkJournalLine(lineNumber, line);
+                if (problem == null) {
+                    records++;
+                } else {
+                    damaged.add(problem);
+                }
+            }
+        }
+        return new FileReport(file, records, damaged);
+    }
+
+    private static String checkFrame(int lineNumber, String line) {
+        int length = line.endsWith(",") ? line.length() - 1 : line.length();
+        return RecordFrame.unframe(line, length) != null ? null : describe(lineNumber, line, "fails its checksum");
+    }
+
+    private static String checkJournalLine(int lineNumber, String line) {
+        if (RecordFrame.isFramed(line)) {
+            return RecordFrame.unframe(line) != null ? null : describe(lineNumber, line, "fails its checksum");
+        }
+        // Written before journal lines were framed, only the syntax can be checked
+        try {
+            JsonParser.parseString(line).getAsJsonObject();
+            return null;
+        } catch (JsonParseException | IllegalStateException e) {
+            return describe(lineNumber, line, "cannot be parsed");
+        }
+    }
+
+    /**
+     * Names a damaged line by its number and, if it can still be found in
+     * the damaged text, the ID of its agenda.
+     */
+    private static String describe(int lineNumber, String line, String problem) {
+        Matcher id = ID.matcher(line);
+        return "line " + lineNumber + (id.find() ? " (ID " + id.group(1) + ")" : "") + " " + problem;
+    }
+
+    private static BufferedReader openReader(Path file) throws IOException {
+        return new BufferedReader(new InputStreamReader(
+                StorageFormat.decode(Files.newInputStream(file), READ_BUFFER_SIZE), StandardCharsets.UTF_8),
+                READ_BUFFER_SIZE);
+    }
+
+    private IntegrityScanner() {
+    }
+}
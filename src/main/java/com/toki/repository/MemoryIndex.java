@@ -0,0 +1,16 @@
+package com.toki.repository;
+
+/**
+ * Secondary index over the in-memory records of a repository.
+ * The repository calls it under its own lock for every record that is
+ * loaded, saved or deleted, so the index is updated incrementally.
+ *
+ * @param <T> The agenda type.
+ */
+public interface MemoryIndex<T> {
+    void put(T agenda);
+
+    void remove(int ID);
+
+    void clear();
+}
@@ -0,0 +1,165 @@
+package com.toki.repository;
+
+import com.toki.model.AgendaAbstract;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Base class of the stores that hold their own in-memory form of the records
+ * of a JSON repository. Writes are persisted through the repository and then
+ * applied to the store; the store is rebuilt when the data file (or the
+ * journal of a journaled repository) is changed by someone else. The wrapped
+ * repository should run in direct mode, so the records are not held in memory twice.
+ * <p>
+ * Subclasses synchronize their queries on the store and call
+ * {@link #ensureLoaded()} first.
+ *
+ * @param <T> The agenda type stored in the repository.
+ */
+public abstract class MirroredAgendaStore<T extends AgendaAbstract> implements Agenda_RepositoryInterface<T> {
+
+    private final Agenda_RepositoryAbstract<T> source;
+
+    private boolean loaded;
+    private FileStamp stamp = FileStamp.NONE;
+
+    /**
+     * Wraps a repository. The records are read on the first query.
+     *
+     * @param source The repository that persists the agendas.
+     */
+    protected MirroredAgendaStore(Agenda_RepositoryAbstract<T> source) {
+        this.source = source;
+    }
+
+    /**
+     * Gets the repository the agendas are persisted in.
+     *
+     * @return The wrapped repository.
+     */
+    public Agenda_RepositoryAbstract<T> getSource() {
+        return source;
+    }
+
+    /**
+     * Removes all records from the store.
+     */
+    protected abstract void clearRecords();
+
+    /**
+     * Adds a record to the store or replaces the one with the same ID.
+     *
+     * @param agenda The agenda.
+     */
+    protected abstract void putRecord(T agenda);
+
+    /**
+     * Removes a record from the store. IDs that do not exist are ignored.
+     *
+     * @param ID The agenda ID.
+     */
+    protected abstract void removeRecord(int ID);
+
+    @Override
+    public synchronized void save(T agenda) {
+        bulk(writer -> writer.save(agenda));
+    }
+
+    @Override
+    public synchronized void deleteByID(int ID) {
+        bulk(writer -> writer.deleteByID(ID));
+    }
+
+    /**
+     * Persists the batch through the wrapped repository, then applies it to
+     * the store. The file lock is held throughout, so a write by another
+     * process cannot slip in between and be missed by the store.
+     */
+    @Override
+    public synchronized void bulk(Consumer<BulkWriter<T>> mutations) {
+        ProcessFileLock.Handle handle;
+        try {
+            handle = source.getFileLock().acquire();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to lock " + source.getFile().getPath(), e);
+        }
+        try (handle) {
+            boolean current = loaded && isStampCurrent();
+            List<Object> applied = new ArrayList<>();
+            source.bulk(writer -> mutations.accept(new BulkWriter<>() {
+                @Override
+                public void save(T item) {
+                    writer.save(item);
+                    applied.add(item);
+                }
+
+                @Override
+                public void deleteByID(int ID) {
+                    writer.deleteByID(ID);
+                    applied.add(ID);
+                }
+            }));
+            if (!current) {
+                loaded = false;
+                return;
+            }
+            for (Object mutation : applied) {
+                if (mutation instanceof Integer ID) {
+                    removeRecord(ID);
+                } else {
+                    @SuppressWarnings("unchecked")
+                    T agenda = (T) mutation;
+                    putRecord(agenda);
+                }
+            }
+            refreshStamp();
+        }
+    }
+
+    /**
+     * Reads the records from the data file unless the store still matches it.
+     */
+    protected synchronized void ensureLoaded() {
+        if (loaded && isStampCurrent()) {
+            return;
+        }
+        clearRecords();
+        // Stamped before reading: a write during the read makes the next query reload
+        refreshStamp();
+        try (Stream<T> agendas = source.stream()) {
+            agendas.forEach(this::putRecord);
+        }
+        loaded = true;
+    }
+
+    /**
+     * Attaches the notes of a record that were stored by reference, so they
+     * are loaded from the note store when first read.
+     *
+     * @param agenda   The materialized agenda.
+     * @param notesRef The reference, or null if the agenda holds its notes inline.
+     */
+    protected void attachNotes(AgendaAbstract agenda, String notesRef) {
+        if (notesRef != null) {
+            agenda.setNotesRef(notesRef, source.getNoteStore()::get);
+        }
+    }
+
+    private boolean isStampCurrent() {
+        FileStamp current = stamp.current(source.storedFiles());
+        if (!current.equals(stamp)) {
+            return false;
+        }
+        stamp = current.settled();
+        return true;
+    }
+
+    private void refreshStamp() {
+        stamp = FileStamp.of(source.storedFiles());
+    }
+}
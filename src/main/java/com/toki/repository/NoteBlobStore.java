@@ -0,0 +1,350 @@
+package com.toki.repository;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Content-addressed store for long agenda notes, kept next to a data file
+ * (e.g. {@code task.json.notes}). The data file only holds the SHA-256 of the
+ * notes as {@code "notesRef"}, so loading, caching and rewriting the agendas
+ * never touches the note text; it is read when an agenda's notes are first
+ * shown. Equal notes are stored once.
+ * <p>
+ * The file is a sequence of blobs: the 32-byte digest, the length in bytes
+ * and the UTF-8 text. Blobs are appended under a {@link ProcessFileLock} and
+ * located by scanning the headers once. Blobs no record refers to any more
+ * are dropped by {@link #sweep}.
+ */
+public class NoteBlobStore {
+
+    /**
+     * Notes up to this many characters stay inline; a reference is about as long.
+     */
+    public static final int DEFAULT_INLINE_LIMIT = 64;
+
+    private static final int DIGEST_SIZE = 32;
+    private static final int HEADER_SIZE = DIGEST_SIZE + Integer.BYTES;
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final File file;
+    private final int inlineLimit;
+    private final ProcessFileLock appendLock;
+
+    // Header offset of every blob by reference, filled by scanning the file
+    private final Map<String, Long> offsets = new HashMap<>();
+    private long indexedEnd;
+    private FileChannel channel;
+
+    /**
+     * Constructs the store. The file is only created when the first notes are stored.
+     *
+     * @param file        The blob file.
+     * @param inlineLimit Notes up to this many characters are not stored here.
+     */
+    public NoteBlobStore(File file, int inlineLimit) {
+        this.file = file;
+        this.inlineLimit = inlineLimit;
+        this.appendLock = new ProcessFileLock(new File(file.getPath() + ".lock"));
+    }
+
+    /**
+     * Checks whether notes are long enough to be moved out of the data file.
+     *
+     * @param notes The notes, may be null.
+     * @return true if they should be stored here.
+     */
+    public boolean shouldStore(String notes) {
+        return notes != null && notes.length() > inlineLimit;
+    }
+
+    /**
+     * Stores notes unless equal notes are stored already.
+     *
+     * @param notes The notes.
+     * @return The reference to load them with.
+     * @throws IOException If the blob cannot be written.
+     */
+    public synchronized String put(String notes) throws IOException {
+        byte[] text = notes.getBytes(StandardCharsets.UTF_8);
+        byte[] digest = digest(text);
+        String ref = HEX.formatHex(digest);
+        if (offsets.containsKey(ref)) {
+            return ref;
+        }
+        ProcessFileLock.Handle handle = appendLock.acquire();
+        try (handle) {
+            FileChannel blobs = current();
+            scan(blobs);
+            if (offsets.containsKey(ref)) {
+                return ref;
+            }
+            if (blobs.size() > indexedEnd) {
+                blobs.truncate(indexedEnd); // Blob torn by a crash while appending
+            }
+            ByteBuffer blob = blob(digest, text);
+            long offset = indexedEnd;
+            while (blob.hasRemaining()) {
+                blobs.write(blob, offset + blob.position());
+            }
+            // The blob must be durable before a data file refers to it
+            blobs.force(false);
+            offsets.put(ref, offset);
+            indexedEnd = offset + blob.limit();
+        }
+        return ref;
+    }
+
+    /**
+     * Drops the blobs none of the given references point to, once they take
+     * up at least half of the file. The other blobs are copied to a new file
+     * that replaces this one. It starts with a blob of random text, so other
+     * instances that still have the old file open notice the replacement.
+     * <p>
+     * A reference written meanwhile could point to a dropped blob, so callers
+     * hold the lock of the data file, under which the repository stores notes.
+     *
+     * @param live The references still in use.
+     * @return The number of blobs dropped.
+     * @throws IOException If the new file cannot be written or moved into place.
+     */
+    public synchronized int sweep(Set<String> live) throws IOException {
+        if (!file.exists()) {
+            return 0;
+        }
+        ProcessFileLock.Handle handle = appendLock.acquire();
+        try (handle) {
+            FileChannel blobs = current();
+            scan(blobs);
+            List<Long> kept = new ArrayList<>();
+            long keptSize = 0;
+            for (Map.Entry<String, Long> blob : offsets.entrySet()) {
+                if (live.contains(blob.getKey())) {
+                    kept.add(blob.getValue());
+                    keptSize += HEADER_SIZE + read(blobs, blob.getValue() + DIGEST_SIZE, Integer.BYTES).getInt();
+                }
+            }
+            int dropped = offsets.size() - kept.size();
+            if (dropped == 0 || keptSize * 2 > indexedEnd) {
+                return 0;
+            }
+            kept.sort(null);
+
+            File temp = File.createTempFile(file.getName() + ".", ".tmp", file.getAbsoluteFile().getParentFile());
+            try (FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE)) {
+                byte[] marker = UUID.randomUUID().toString().getBytes(StandardCharsets.US_ASCII);
+                ByteBuffer first = blob(digest(marker), marker);
+                while (first.hasRemaining()) {
+                    out.write(first);
+                }
+                for (long offset : kept) {
+                    long size = HEADER_SIZE + read(blobs, offset + DIGEST_SIZE, Integer.BYTES).getInt();
+                    for (long copied = 0; copied < size; ) {
+                        copied += blobs.transferTo(offset + copied, size - copied, out);
+                    }
+                }
+                out.force(false);
+            } catch (IOException | RuntimeException e) {
+                temp.delete();
+                throw e;
+            }
+            close(); // Windows cannot replace a file that is open
+            try {
+                AtomicFileWriter.replace(temp, file);
+            } catch (IOException e) {
+                temp.delete();
+                throw e;
+            }
+            AtomicFileWriter.syncDirectory(file);
+            return dropped;
+        }
+    }
+
+    /**
+     * Checks whether a reference can be loaded from this store.
+     *
+     * @param ref The reference.
+     * @return true if the blob exists.
+     */
+    public synchronized boolean contains(String ref) {
+        if (offsets.containsKey(ref)) {
+            return true;
+        }
+        try {
+            if (file.exists()) {
+                scan(current());
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return offsets.containsKey(ref);
+    }
+
+    /**
+     * Loads notes.
+     *
+     * @param ref The reference returned by {@link #put}.
+     * @return The notes, or null if the blob cannot be read.
+     */
+    public synchronized String get(String ref) {
+        if (!contains(ref)) {
+            System.err.println("❌ Notes " + ref + " missing in " + file.getPath());
+            return null;
+        }
+        try {
+            FileChannel blobs = channel();
+            long offset = offsets.get(ref);
+            ByteBuffer length = read(blobs, offset + DIGEST_SIZE, Integer.BYTES);
+            ByteBuffer text = read(blobs, offset + HEADER_SIZE, length.getInt());
+            return StandardCharsets.UTF_8.decode(text).toString();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Re-hashes every blob of a note file and compares it to its digest.
+     *
+     * @param file The blob file.
+     * @return One message per damaged blob, empty if all are intact.
+     * @throws IOException If the file cannot be read.
+     */
+    public static List<String> verify(File file) throws IOException {
+        List<String> damaged = new ArrayList<>();
+        try (FileChannel blobs = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = blobs.size();
+            long offset = 0;
+            while (offset + HEADER_SIZE <= size) {
+                ByteBuffer header = read(blobs, offset, HEADER_SIZE);
+                byte[] stored = new byte[DIGEST_SIZE];
+                header.get(stored);
+                int length = header.getInt();
+                if (length < 0 || offset + HEADER_SIZE + length > size) {
+                    break;
+                }
+                byte[] text = new byte[length];
+                read(blobs, offset + HEADER_SIZE, length).get(text);
+                if (!MessageDigest.isEqual(stored, digest(text))) {
+                    damaged.add("notes " + HEX.formatHex(stored) + " at byte " + offset + " fail their digest");
+                }
+                offset += HEADER_SIZE + length;
+            }
+            if (offset < size) {
+                damaged.add("file ends with an incomplete blob at byte " + offset);
+            }
+        }
+        return damaged;
+    }
+
+    /**
+     * Closes the file; it is reopened and scanned again when the store is used
+     * again, since a sweep may replace it meanwhile.
+     */
+    public synchronized void close() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        channel = null;
+        offsets.clear();
+        indexedEnd = 0;
+    }
+
+    /**
+     * Indexes the blobs appended since the last scan, by this or another
+     * process. Stops at a blob that is not complete yet.
+     */
+    private void scan(FileChannel blobs) throws IOException {
+        long size = blobs.size();
+        while (indexedEnd + HEADER_SIZE <= size) {
+            ByteBuffer header = read(blobs, indexedEnd, HEADER_SIZE);
+            byte[] digest = new byte[DIGEST_SIZE];
+            header.get(digest);
+            long end = indexedEnd + HEADER_SIZE + header.getInt();
+            if (end > size) {
+                break;
+            }
+            offsets.putIfAbsent(HEX.formatHex(digest), indexedEnd);
+            indexedEnd = end;
+        }
+    }
+
+    /**
+     * Gets the open file, reopened if a sweep replaced it since it was opened.
+     */
+    private FileChannel current() throws IOException {
+        if (channel != null && channel.isOpen() && isReplaced(channel)) {
+            close();
+        }
+        return channel();
+    }
+
+    private FileChannel channel() throws IOException {
+        if (channel == null || !channel.isOpen()) {
+            File parentDir = file.getAbsoluteFile().getParentFile();
+            if (parentDir != null && !parentDir.exists()) {
+                parentDir.mkdirs();
+            }
+            channel = FileChannel.open(file.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        return channel;
+    }
+
+    /**
+     * Compares the first blob header of an open file with the one on disk.
+     * A sweep starts the new file with a blob of random text, so the headers
+     * differ once the file was replaced.
+     */
+    private boolean isReplaced(FileChannel open) throws IOException {
+        try (FileChannel onDisk = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return !firstHeader(open).equals(firstHeader(onDisk));
+        } catch (NoSuchFileException e) {
+            return true;
+        }
+    }
+
+    private static ByteBuffer firstHeader(FileChannel blobs) throws IOException {
+        return read(blobs, 0, (int) Math.min(blobs.size(), HEADER_SIZE));
+    }
+
+    private static ByteBuffer blob(byte[] digest, byte[] text) {
+        return ByteBuffer.allocate(HEADER_SIZE + text.length).put(digest).putInt(text.length).put(text).flip();
+    }
+
+    private static ByteBuffer read(FileChannel blobs, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (blobs.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of note blob at " + position);
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static byte[] digest(byte[] text) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(text);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package com.toki.repository;
+
+import com.toki.model.AgendaAbstract;
+import com.toki.model.AgendaRegular;
+import com.toki.model.AgendaSpecial;
+import com.toki.model.AgendaTask;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Agenda store that keeps the records of a JSON repository outside the Java
+ * heap, so millions of agendas add nothing to the live set the garbage
+ * collector has to trace.
+ * <p>
+ * The records use the fixed-width layout of {@link AgendaBinaryRepository}
+ * in a direct {@link ByteBuffer}, their strings are appended to a second
+ * direct buffer. Only the ID index, the {@link EpochDayOrder} of the dated
+ * records and the most recently looked up agendas (an LRU of
+ * {@link #DEFAULT_HOT_CAPACITY} by default) live on the heap; every other
+ * query decodes the records it returns.
+ * <p>
+ * Writes go to the wrapped repository first and are then applied to the
+ * buffers, see {@link MirroredAgendaStore}. Strings of replaced records are
+ * dropped when the string buffer is full, by copying the live strings into a
+ * buffer at least twice their size. Direct memory is limited by
+ * {@code -XX:MaxDirectMemorySize} (the maximum heap size by default), and
+ * each buffer to 2 GB.
+ *
+ * @param <T> The agenda type stored in the repository.
+ */
+public class OffHeapAgendaStore<T extends AgendaAbstract> extends MirroredAgendaStore<T> {
+
+    public static final int DEFAULT_HOT_CAPACITY = 1024;
+
+    private static final int RECORD_SIZE = AgendaBinaryRepository.RECORD_SIZE;
+
+    // Common columns, as in AgendaBinaryRepository; the codec fills bytes 5 to 15
+    private static final int ID = 0;
+    private static final int FLAGS = 4;
+    private static final int TITLE = 16;
+    private static final int TYPE = 24;
+    private static final int GROUP = 32;
+    private static final int NOTES = 40;
+    private static final int[] STRING_COLUMNS = {TITLE, TYPE, GROUP, NOTES};
+
+    // The notes column holds a reference into the note store
+    private static final byte NOTES_REF = 1;
+    private static final int NO_STRING = -1;
+    private static final int INITIAL_RECORDS = 1024;
+    private static final int INITIAL_STRING_BYTES = 64 * 1024;
+    private static final int MAX_BUFFER_BYTES = Integer.MAX_VALUE - 8;
+
+    private final AgendaBinaryCodec<T> codec;
+    private final Map<Integer, T> hot;
+    private final IdIndex slots = new IdIndex();
+    private final EpochDayOrder dateOrder = new EpochDayOrder();
+
+    private ByteBuffer records = ByteBuffer.allocateDirect(INITIAL_RECORDS * RECORD_SIZE);
+    private ByteBuffer strings = ByteBuffer.allocateDirect(INITIAL_STRING_BYTES);
+    private int size;
+    private int stringEnd;
+    // Bytes of the string buffer no record refers to any more
+    private int garbage;
+
+    /**
+     * Wraps a repository, keeping up to {@link #DEFAULT_HOT_CAPACITY} agendas on the heap.
+     *
+     * @param source The repository that persists the agendas.
+     * @param codec  Codec of the stored agenda type.
+     */
+    public OffHeapAgendaStore(Agenda_RepositoryAbstract<T> source, AgendaBinaryCodec<T> codec) {
+        this(source, codec, DEFAULT_HOT_CAPACITY);
+    }
+
+    /**
+     * Wraps a repository. The records are copied off the heap on the first query.
+     *
+     * @param source      The repository that persists the agendas.
+     * @param codec       Codec of the stored agenda type.
+     * @param hotCapacity Number of agendas looked up by ID that are kept decoded.
+     */
+    public OffHeapAgendaStore(Agenda_RepositoryAbstract<T> source, AgendaBinaryCodec<T> codec, int hotCapacity) {
+        super(source);
+        this.codec = codec;
+        this.hot = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, T> eldest) {
+                return size() > hotCapacity;
+            }
+        };
+    }
+
+    public static OffHeapAgendaStore<AgendaRegular> forRegular(AgendaRegularRepository source) {
+        return new OffHeapAgendaStore<>(source, AgendaBinaryCodec.REGULAR);
+    }
+
+    public static OffHeapAgendaStore<AgendaSpecial> forSpecial(AgendaSpecialRepository source) {
+        return new OffHeapAgendaStore<>(source, AgendaBinaryCodec.SPECIAL);
+    }
+
+    public static OffHeapAgendaStore<AgendaTask> forTask(AgendaTaskRepository source) {
+        return new OffHeapAgendaStore<>(source, AgendaBinaryCodec.TASK);
+    }
+
+    /**
+     * Looks up an agenda, decoding it only if it is not among the hot agendas.
+     */
+    @Override
+    public synchronized T findByID(int ID) {
+        ensureLoaded();
+        T agenda = hot.get(ID);
+        if (agenda == null) {
+            int slot = slots.get(ID);
+            if (slot < 0) {
+                return null;
+            }
+            agenda = decode(slot);
+            hot.put(ID, agenda);
+        }
+        return agenda;
+    }
+
+    @Override
+    public synchronized List<T> findAll() {
+        ensureLoaded();
+        List<T> agendas = new ArrayList<>(size);
+        for (int slot = 0; slot < size; slot++) {
+            agendas.add(decode(slot));
+        }
+        return agendas;
+    }
+
+    /**
+     * Finds the range in the date order and decodes only the records in it.
+     */
+    @Override
+    public synchronized List<T> findBetween(LocalDate from, LocalDate to) {
+        ensureLoaded();
+        long toDay = to.toEpochDay();
+        List<T> agendas = new ArrayList<>();
+        for (int i = dateOrder.firstOnOrAfter(from.toEpochDay()); i < dateOrder.size() && dateOrder.epochDayAt(i) <= toDay; i++) {
+            agendas.add(decode(slots.get(dateOrder.idAt(i))));
+        }
+        return agendas;
+    }
+
+    @Override
+    public synchronized long count() {
+        ensureLoaded();
+        return size;
+    }
+
+    /**
+     * Scans the ID column off the heap and decodes only the records of the page.
+     */
+    @Override
+    public synchronized List<T> findPage(int afterId, int limit) {
+        ensureLoaded();
+        if (limit <= 0) {
+            return new ArrayList<>();
+        }
+        // Slots of the limit smallest IDs seen so far, largest ID on top
+        PriorityQueue<Integer> page = new PriorityQueue<>(Math.min(limit, 1024) + 1,
+                Comparator.comparingInt(this::idAt).reversed());
+        for (int slot = 0; slot < size; slot++) {
+            if (idAt(slot) > afterId) {
+                page.add(slot);
+                if (page.size() > limit) {
+                    page.poll();
+                }
+            }
+        }
+        List<Integer> sorted = new ArrayList<>(page);
+        sorted.sort(Comparator.comparingInt(this::idAt));
+        List<T> agendas = new ArrayList<>(sorted.size());
+        for (int slot : sorted) {
+            agendas.add(decode(slot));
+        }
+        return agendas;
+    }
+
+    @Override
+    protected void clearRecords() {
+        size = 0;
+        stringEnd = 0;
+        garbage = 0;
+        slots.clear();
+        dateOrder.clear();
+        hot.clear();
+    }
+
+    @Override
+    protected void putRecord(T agenda) {
+        hot.remove(agenda.getID());
+        int slot = slots.get(agenda.getID());
+        if (slot >= 0) {
+            releaseStrings(slot);
+            removeDate(slot);
+        } else {
+            if (size == records.capacity() / RECORD_SIZE) {
+                growRecords();
+            }
+            slot = size++;
+            slots.put(agenda.getID(), slot);
+        }
+        int offset = offsetOf(slot);
+        // Cleared first, so moving the strings never copies stale ones of this slot
+        for (int column : STRING_COLUMNS) {
+            records.putInt(offset + column, NO_STRING);
+        }
+        // The reference is kept as is, so the notes are not loaded here
+        String ref = agenda.getNotesRef();
+        records.putInt(offset + ID, agenda.getID());
+        records.put(offset + FLAGS, ref != null ? NOTES_REF : 0);
+        putString(offset + TITLE, agenda.getTitle());
+        putString(offset + TYPE, agenda.getType());
+        putString(offset + GROUP, agenda.getGroup());
+        putString(offset + NOTES, ref != null ? ref : agenda.getNotes());
+        codec.encode(agenda, records, offset);
+        int epochDay = records.getInt(offset + AgendaBinaryCodec.EPOCH_DAY);
+        if (epochDay != AgendaBinaryCodec.NO_DATE) {
+            dateOrder.add(epochDay, agenda.getID());
+        }
+    }
+
+    /**
+     * Removes a record by moving the last record into its slot.
+     */
+    @Override
+    protected void removeRecord(int ID) {
+        hot.remove(ID);
+        int slot = slots.remove(ID);
+        if (slot < 0) {
+            return;
+        }
+        releaseStrings(slot);
+        // The order holds IDs, so the record moved below keeps its place in it
+        removeDate(slot);
+        int last = --size;
+        if (slot != last) {
+            records.put(offsetOf(slot), records, offsetOf(last), RECORD_SIZE);
+            slots.put(idAt(slot), slot);
+        }
+    }
+
+    private void removeDate(int slot) {
+        int epochDay = records.getInt(offsetOf(slot) + AgendaBinaryCodec.EPOCH_DAY);
+        if (epochDay != AgendaBinaryCodec.NO_DATE) {
+            dateOrder.remove(epochDay, idAt(slot));
+        }
+    }
+
+    private static int offsetOf(int slot) {
+        return slot * RECORD_SIZE;
+    }
+
+    private int idAt(int slot) {
+        return records.getInt(offsetOf(slot) + ID);
+    }
+
+    private T decode(int slot) {
+        int offset = offsetOf(slot);
+        boolean notesRef = records.get(offset + FLAGS) == NOTES_REF;
+        String notes = getString(offset + NOTES);
+        T agenda = codec.decode(records.getInt(offset + ID),
+                getString(offset + TITLE), StringPool.canonical(getString(offset + TYPE)),
+                StringPool.canonical(getString(offset + GROUP)), notesRef ? null : notes,
+                records, offset);
+        attachNotes(agenda, notesRef ? notes : null);
+        return agenda;
+    }
+
+    private void growRecords() {
+        long capacity = Math.min((long) records.capacity() * 2, MAX_BUFFER_BYTES / RECORD_SIZE * RECORD_SIZE);
+        if (capacity <= records.capacity()) {
+            throw new IllegalStateException("Off-heap record buffer of " + getSource().getFile().getPath() + " is full");
+        }
+        ByteBuffer grown = ByteBuffer.allocateDirect((int) capacity);
+        grown.put(0, records, 0, size * RECORD_SIZE);
+        records = grown;
+    }
+
+    private void putString(int column, String value) {
+        if (value == null) {
+            records.putInt(column, NO_STRING);
+            records.putInt(column + 4, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        reserveStrings(bytes.length);
+        strings.put(stringEnd, bytes);
+        records.putInt(column, stringEnd);
+        records.putInt(column + 4, bytes.length);
+        stringEnd += bytes.length;
+    }
+
+    private String getString(int column) {
+        int offset = records.getInt(column);
+        if (offset == NO_STRING) {
+            return null;
+        }
+        byte[] bytes = new byte[records.getInt(column + 4)];
+        strings.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void releaseStrings(int slot) {
+        int offset = offsetOf(slot);
+        for (int column : STRING_COLUMNS) {
+            if (records.getInt(offset + column) != NO_STRING) {
+                garbage += records.getInt(offset + column + 4);
+            }
+        }
+    }
+
+    /**
+     * Makes room for a string, first by dropping the strings of replaced
+     * records if they take up at least half of the buffer, then by growing it.
+     */
+    private void reserveStrings(int length) {
+        if ((long) stringEnd + length <= strings.capacity()) {
+            return;
+        }
+        long needed = (long) stringEnd - garbage + length;
+        long capacity = strings.capacity();
+        while (capacity < needed * 2 && capacity < MAX_BUFFER_BYTES) {
+            capacity = Math.min(capacity * 2, MAX_BUFFER_BYTES);
+        }
+        if (needed > capacity) {
+            throw new IllegalStateException("Off-heap string buffer of " + getSource().getFile().getPath() + " is full");
+        }
+        ByteBuffer copy = ByteBuffer.allocateDirect((int) capacity);
+        int end = 0;
+        for (int slot = 0; slot < size; slot++) {
+            int offset = offsetOf(slot);
+            for (int column : STRING_COLUMNS) {
+                int start = records.getInt(offset + column);
+                if (start != NO_STRING) {
+                    int bytes = records.getInt(offset + column + 4);
+                    copy.put(end, strings, start, bytes);
+                    records.putInt(offset + column, end);
+                    end += bytes;
+                }
+            }
+        }
+        strings = copy;
+        stringEnd = end;
+        garbage = 0;
+    }
+}
@@ -0,0 +1,80 @@
+package com.toki.repository;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Exclusive lock shared by every thread and process that writes one data file.
+ * <p>
+ * The lock is a {@link FileChannel#lock()} on a small side file, since the data
+ * file itself is replaced by renames. File locks belong to the whole JVM, so
+ * threads of this JVM (including other repository instances on the same file)
+ * first serialize on a {@link ReentrantLock} kept per path.
+ */
+public final class ProcessFileLock {
+
+    /**
+     * A held lock; closing it releases the lock.
+     */
+    public interface Handle extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static final Map<Path, ReentrantLock> LOCAL_LOCKS = new ConcurrentHashMap<>();
+
+    private final Path path;
+    private final ReentrantLock localLock;
+
+    /**
+     * Constructs the lock on a side file.
+     *
+     * @param lockFile The file to lock; created when first needed.
+     */
+    public ProcessFileLock(File lockFile) {
+        this.path = lockFile.toPath().toAbsolutePath().normalize();
+        this.localLock = LOCAL_LOCKS.computeIfAbsent(path, p -> new ReentrantLock());
+    }
+
+    /**
+     * Waits until the lock is free and takes it. The lock is reentrant for the current thread.
+     *
+     * @return The handle to release the lock with.
+     * @throws IOException If the side file cannot be opened or locked.
+     */
+    public Handle acquire() throws IOException {
+        localLock.lock();
+        if (localLock.getHoldCount() > 1) {
+            return localLock::unlock; // The outer acquire holds the file lock already
+        }
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock fileLock = channel.lock();
+            FileChannel lockedChannel = channel;
+            return () -> {
+                try {
+                    fileLock.release();
+                    lockedChannel.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                } finally {
+                    localLock.unlock();
+                }
+            };
+        } catch (IOException | RuntimeException e) {
+            if (channel != null) {
+                channel.close();
+            }
+            localLock.unlock();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.toki.repository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+import java.util.zip.CRC32C;
+
+/**
+ * Checksummed frame around one JSON record on its own line:
+ * {@code {"crc":"1c2d3e4f","record":{...}}}, where crc is the CRC32C of the
+ * UTF-8 text of the record exactly as written. Used for the records of the
+ * data files and the journal lines, so damage is detected per record and a
+ * reader can skip to the next line.
+ * <p>
+ * A frame costs about 28 bytes per record (3 MB more per 100k tasks, and the
+ * hex checksums do not compress); verifying all of them takes about 15 ms of
+ * a 300 ms load. One checksum per block of records would save most of the
+ * bytes, but a single flipped byte would then cost every record of its block,
+ * and journal lines are appended one at a time, so they need their own
+ * checksum anyway.
+ */
+public final class RecordFrame {
+
+    private static final String PREFIX = "{\"crc\":\"";
+    private static final String SEPARATOR = "\",\"record\":";
+    private static final int CRC_LENGTH = 8;
+    private static final int RECORD_START = PREFIX.length() + CRC_LENGTH + SEPARATOR.length();
+    private static final HexFormat HEX = HexFormat.of();
+    private static final ThreadLocal<byte[]> ENCODED = ThreadLocal.withInitial(() -> new byte[1024]);
+
+    private RecordFrame() {
+    }
+
+    /**
+     * Wraps a record in a frame.
+     *
+     * @param record The compact JSON of the record, without line breaks.
+     * @return The framed line, without the line break.
+     */
+    public static String frame(String record) {
+        return PREFIX + HEX.toHexDigits(crc(record)) + SEPARATOR + record + "}";
+    }
+
+    /**
+     * Checks whether a line is framed at all, as opposed to a record written
+     * before frames were introduced.
+     *
+     * @param line The line.
+     * @return true if the line starts like a frame.
+     */
+    public static boolean isFramed(String line) {
+        return line.startsWith(PREFIX);
+    }
+
+    /**
+     * Extracts the record of a frame and verifies its checksum.
+     *
+     * @param line The framed line, without the line break.
+     * @return The JSON of the record, or null if the frame is damaged.
+     */
+    public static String unframe(String line) {
+        return unframe(line, line.length());
+    }
+
+    /**
+     * Extracts the record of a frame that ends before the end of the line,
+     * e.g. before the comma separating it from the next record.
+     *
+     * @param line   The line.
+     * @param length The length of the frame at the start of the line.
+     * @return The JSON of the record, or null if the frame is damaged.
+     */
+    static String unframe(String line, int length) {
+        int recordEnd = length - 1;
+        if (length <= RECORD_START || !line.startsWith(PREFIX)
+                || !line.startsWith(SEPARATOR, PREFIX.length() + CRC_LENGTH) || line.charAt(recordEnd) != '}') {
+            return null;
+        }
+        try {
+            int stored = HexFormat.fromHexDigits(line, PREFIX.length(), PREFIX.length() + CRC_LENGTH);
+            return stored == crc(line, RECORD_START, recordEnd) ? line.substring(RECORD_START, recordEnd) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Computes the CRC32C of the UTF-8 text of a record.
+     *
+     * @param record The JSON of the record.
+     * @return The checksum.
+     */
+    public static int crc(String record) {
+        return crc(record, 0, record.length());
+    }
+
+    /**
+     * Computes the CRC32C of the UTF-8 text of part of a string. ASCII text,
+     * the common case, is encoded into a per-thread buffer instead of a new
+     * array.
+     */
+    private static int crc(String text, int start, int end) {
+        CRC32C crc = new CRC32C();
+        byte[] bytes = ENCODED.get();
+        if (bytes.length < end - start) {
+            bytes = new byte[Math.max(end - start, bytes.length * 2)];
+            ENCODED.set(bytes);
+        }
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80) {
+                crc.update(text.substring(start, end).getBytes(StandardCharsets.UTF_8));
+                return (int) crc.getValue();
+            }
+            bytes[i - start] = (byte) c;
+        }
+        crc.update(bytes, 0, end - start);
+        return (int) crc.getValue();
+    }
+}
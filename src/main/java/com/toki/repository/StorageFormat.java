@@ -0,0 +1,57 @@
+package com.toki.repository;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * On-disk encoding of the JSON data files.
+ * Only the write side is configurable; reading detects the encoding from the
+ * first bytes, so files written in any format (including the original
+ * pretty-printed ones) keep loading.
+ */
+public enum StorageFormat {
+    /** JSON without whitespace within a record, one record per line. */
+    COMPACT,
+    /** Compact JSON, gzip-compressed. Smallest on disk, costs CPU to inflate. */
+    GZIP;
+
+    private static final int GZIP_MAGIC_1 = 0x1f;
+    private static final int GZIP_MAGIC_2 = 0x8b;
+
+    /**
+     * Wraps the raw output of a data file for this format.
+     *
+     * @param out        The file output.
+     * @param bufferSize Buffer size for compression.
+     * @return The stream the JSON text should be written to.
+     * @throws IOException If the encoder cannot be created.
+     */
+    public OutputStream encode(OutputStream out, int bufferSize) throws IOException {
+        return this == GZIP ? new GZIPOutputStream(out, bufferSize) : out;
+    }
+
+    /**
+     * Wraps the raw input of a data file, inflating it if it starts with the
+     * gzip magic bytes.
+     *
+     * @param in         The file input.
+     * @param bufferSize Buffer size for reading and inflating.
+     * @return The stream of JSON text.
+     * @throws IOException If the input cannot be read.
+     */
+    public static InputStream decode(InputStream in, int bufferSize) throws IOException {
+        InputStream buffered = new BufferedInputStream(in, bufferSize);
+        buffered.mark(2);
+        int first = buffered.read();
+        int second = buffered.read();
+        buffered.reset();
+        if (first == GZIP_MAGIC_1 && second == GZIP_MAGIC_2) {
+            return new GZIPInputStream(buffered, bufferSize);
+        }
+        return buffered;
+    }
+}
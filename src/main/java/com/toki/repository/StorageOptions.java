@@ -0,0 +1,258 @@
+package com.toki.repository;
+
+/**
+ * Storage settings for the JSON-backed Agenda repositories.
+ * The defaults keep the original behaviour (every read goes to disk), except
+ * that new writes use compact JSON instead of pretty-printed JSON.
+ */
+public class StorageOptions {
+
+    private boolean cached;
+    private boolean journaled;
+    private long compactionThreshold = 1024 * 1024;
+    private long groupCommitWindowMillis = 2;
+    private StorageFormat format = StorageFormat.COMPACT;
+    private boolean unified;
+    private boolean writeBehind;
+    private long writeBehindDelayMillis = 50;
+    private long flushTimeoutMillis = 5000;
+    private int notesInlineLimit = NoteBlobStore.DEFAULT_INLINE_LIMIT;
+    private boolean columnar;
+    private boolean offHeap;
+
+    /**
+     * Options for the original direct mode (no caching).
+     *
+     * @return A new StorageOptions with default values.
+     */
+    public static StorageOptions direct() {
+        return new StorageOptions();
+    }
+
+    /**
+     * Options for the cached mode: each file is parsed once and reads are
+     * served from memory until the file changes on disk.
+     *
+     * @return A new StorageOptions with caching enabled.
+     */
+    public static StorageOptions cached() {
+        StorageOptions options = new StorageOptions();
+        options.setCached(true);
+        return options;
+    }
+
+    /**
+     * Options for the journaled mode: state is kept in memory, mutations are
+     * appended to a log next to the data file and folded into a new snapshot
+     * in the background once the log grows past the compaction threshold.
+     *
+     * @return A new StorageOptions with journaling enabled.
+     */
+    public static StorageOptions journaled() {
+        StorageOptions options = new StorageOptions();
+        options.setJournaled(true);
+        return options;
+    }
+
+    /**
+     * Options for the write-behind mode: journaled, but save and delete only
+     * update memory and queue the mutation. A background thread coalesces the
+     * queue (last mutation per ID wins) and appends it to the journal, so the
+     * caller never waits for the disk.
+     *
+     * @return A new StorageOptions with journaling and write-behind enabled.
+     */
+    public static StorageOptions writeBehind() {
+        StorageOptions options = journaled();
+        options.setWriteBehind(true);
+        return options;
+    }
+
+    /**
+     * Options for the columnar mode: the files are read and written directly
+     * and the records are held in memory only as the primitive columns of a
+     * {@link ColumnarAgendaStore}.
+     *
+     * @return A new StorageOptions with the columnar store enabled.
+     */
+    public static StorageOptions columnar() {
+        StorageOptions options = new StorageOptions();
+        options.setColumnar(true);
+        return options;
+    }
+
+    /**
+     * Options for the off-heap mode: the files are read and written directly
+     * and the records are held outside the Java heap by an
+     * {@link OffHeapAgendaStore}.
+     *
+     * @return A new StorageOptions with the off-heap store enabled.
+     */
+    public static StorageOptions offHeap() {
+        StorageOptions options = new StorageOptions();
+        options.setOffHeap(true);
+        return options;
+    }
+
+    public boolean isCached() {
+        return cached;
+    }
+
+    public void setCached(boolean cached) {
+        rejectIf(cached && (columnar || offHeap));
+        this.cached = cached;
+    }
+
+    public boolean isJournaled() {
+        return journaled;
+    }
+
+    public void setJournaled(boolean journaled) {
+        rejectIf(journaled && (columnar || offHeap));
+        this.journaled = journaled;
+    }
+
+    /**
+     * Gets the log size after which the journal is compacted.
+     *
+     * @return The threshold in bytes.
+     */
+    public long getCompactionThreshold() {
+        return compactionThreshold;
+    }
+
+    public void setCompactionThreshold(long compactionThreshold) {
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    /**
+     * Gets how long a commit waits for concurrent writers to join it.
+     *
+     * @return The window in milliseconds.
+     */
+    public long getGroupCommitWindowMillis() {
+        return groupCommitWindowMillis;
+    }
+
+    public void setGroupCommitWindowMillis(long groupCommitWindowMillis) {
+        this.groupCommitWindowMillis = groupCommitWindowMillis;
+    }
+
+    /**
+     * Gets the format used when writing data files. Reading detects the
+     * format of each file by itself.
+     *
+     * @return The storage format.
+     */
+    public StorageFormat getFormat() {
+        return format;
+    }
+
+    public void setFormat(StorageFormat format) {
+        this.format = format;
+    }
+
+    /**
+     * Whether a shard keeps all agenda types in one store (agendas.json)
+     * instead of one file per type.
+     *
+     * @return true for the unified store.
+     */
+    public boolean isUnified() {
+        return unified;
+    }
+
+    public void setUnified(boolean unified) {
+        this.unified = unified;
+    }
+
+    public boolean isWriteBehind() {
+        return writeBehind;
+    }
+
+    public void setWriteBehind(boolean writeBehind) {
+        rejectIf(writeBehind && (columnar || offHeap));
+        this.writeBehind = writeBehind;
+    }
+
+    /**
+     * Gets how long the write-behind flusher waits for further mutations
+     * before persisting the queue.
+     *
+     * @return The delay in milliseconds.
+     */
+    public long getWriteBehindDelayMillis() {
+        return writeBehindDelayMillis;
+    }
+
+    public void setWriteBehindDelayMillis(long writeBehindDelayMillis) {
+        this.writeBehindDelayMillis = writeBehindDelayMillis;
+    }
+
+    /**
+     * Gets how long closing a write-behind repository waits for the queue to be flushed.
+     *
+     * @return The timeout in milliseconds.
+     */
+    public long getFlushTimeoutMillis() {
+        return flushTimeoutMillis;
+    }
+
+    public void setFlushTimeoutMillis(long flushTimeoutMillis) {
+        this.flushTimeoutMillis = flushTimeoutMillis;
+    }
+
+    /**
+     * Gets the length up to which notes stay in the data file. Longer notes
+     * are moved to the note store next to it and loaded on first access.
+     *
+     * @return The limit in characters; Integer.MAX_VALUE keeps all notes inline.
+     */
+    public int getNotesInlineLimit() {
+        return notesInlineLimit;
+    }
+
+    public void setNotesInlineLimit(int notesInlineLimit) {
+        this.notesInlineLimit = notesInlineLimit;
+    }
+
+    /**
+     * Checks whether the typed repositories of a shard are wrapped in a
+     * {@link ColumnarAgendaStore}. Only valid in direct mode: the store reads
+     * the data file itself, so it would miss journal appends and hold the
+     * records in memory twice. Ignored for a unified file.
+     *
+     * @return true if the columnar store is used.
+     */
+    public boolean isColumnar() {
+        return columnar;
+    }
+
+    public void setColumnar(boolean columnar) {
+        rejectIf(columnar && (cached || journaled || writeBehind || offHeap));
+        this.columnar = columnar;
+    }
+
+    /**
+     * Checks whether the typed repositories of a shard are wrapped in an
+     * {@link OffHeapAgendaStore}. Only valid in direct mode, like
+     * {@link #isColumnar()}. Ignored for a unified file.
+     *
+     * @return true if the off-heap store is used.
+     */
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    public void setOffHeap(boolean offHeap) {
+        rejectIf(offHeap && (cached || journaled || writeBehind || columnar));
+        this.offHeap = offHeap;
+    }
+
+    private static void rejectIf(boolean conflicting) {
+        if (conflicting) {
+            throw new IllegalStateException("The columnar and off-heap stores are only supported in direct mode,"
+                    + " and not together");
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.toki.repository;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Canonical instances of the few distinct strings that repeat across many
+ * agendas, such as type ("Task", "Special", "Regular") and group. Applied
+ * while records are read, so 100k agendas share a handful of strings instead
+ * of carrying 200k copies.
+ * <p>
+ * The pool stops growing at {@link #MAX_SIZE} entries, so a store with mostly
+ * unique values cannot turn it into a leak; later values are then kept as read.
+ */
+public final class StringPool {
+
+    public static final int MAX_SIZE = 4096;
+
+    private static final Map<String, String> POOL = new ConcurrentHashMap<>();
+
+    private StringPool() {
+    }
+
+    /**
+     * Gets the canonical instance of a string.
+     *
+     * @param value The string, may be null.
+     * @return An equal pooled string, or value itself if it is null or the pool is full.
+     */
+    public static String canonical(String value) {
+        if (value == null) {
+            return null;
+        }
+        String pooled = POOL.get(value);
+        if (pooled != null) {
+            return pooled;
+        }
+        if (POOL.size() >= MAX_SIZE) {
+            return value;
+        }
+        pooled = POOL.putIfAbsent(value, value);
+        return pooled != null ? pooled : value;
+    }
+}
@@ -0,0 +1,166 @@
+package com.toki.repository;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.toki.model.AgendaAbstract;
+import com.toki.model.AgendaRegular;
+import com.toki.model.AgendaSpecial;
+import com.toki.model.AgendaTask;
+import com.toki.repository.json.AgendaPolymorphicAdapter;
+import com.toki.repository.json.GsonFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Single store for Regular, Special and Task agendas. All records live in
+ * one file (and one journal) and carry a "kind" discriminator, so a view that
+ * combines the three types is loaded with one parse. The typed repositories
+ * are {@link UnifiedAgendaView} facades over this store.
+ * <p>
+ * Records are keyed by ID alone, so IDs must be unique across all types.
+ * New agendas get their ID from one {@link IdSequence} per shard, but the
+ * typed files number each type on its own; {@link #importTyped} therefore
+ * renumbers the agendas whose ID another type already uses.
+ */
+public class UnifiedAgendaRepository extends Agenda_RepositoryAbstract<AgendaAbstract> {
+
+    private static final String FILE_PATH = "data/database/agendas.json";
+
+    private final UnifiedAgendaView<AgendaRegular> regularView;
+    private final UnifiedAgendaView<AgendaSpecial> specialView;
+    private final UnifiedAgendaView<AgendaTask> taskView;
+
+    public UnifiedAgendaRepository(StorageOptions options) {
+        this(FILE_PATH, options);
+    }
+
+    /**
+     * Constructs the store on a specific data file.
+     *
+     * @param filePath Path of the JSON data file.
+     * @param options  Storage settings; cached or journaled mode lets the
+     *                 three views share a single parse.
+     */
+    public UnifiedAgendaRepository(String filePath, StorageOptions options) {
+        super(filePath, AgendaAbstract.class, options, GsonFactory::polymorphic);
+        this.regularView = new UnifiedAgendaView<>(this, AgendaRegular.class);
+        this.specialView = new UnifiedAgendaView<>(this, AgendaSpecial.class);
+        this.taskView = new UnifiedAgendaView<>(this, AgendaTask.class);
+    }
+
+    /**
+     * Creates the unified file from the three typed data files, unless it
+     * already exists. The typed files are left untouched.
+     * <p>
+     * Regular agendas keep their IDs, then special agendas and tasks keep
+     * theirs unless an earlier type already uses them; those get new IDs
+     * above all stored ones. Every such change is recorded in
+     * filePath + ".renumbered" as {@code {"kind":..,"from":..,"to":..}}.
+     *
+     * @param filePath  Path of the unified data file to create.
+     * @param directory Directory holding regular.json, special.json and task.json.
+     * @param format    Storage format of the new file.
+     * @return true if the file was created.
+     */
+    public static boolean importTyped(String filePath, String directory, StorageFormat format) {
+        File target = new File(filePath);
+        if (target.exists() && target.length() > 0) {
+            return false;
+        }
+        List<Agenda_RepositoryAbstract<? extends AgendaAbstract>> sources = List.of(
+                new AgendaRegularRepository(directory + "/regular.json", StorageOptions.direct()),
+                new AgendaSpecialRepository(directory + "/special.json", StorageOptions.direct()),
+                new AgendaTaskRepository(directory + "/task.json", StorageOptions.direct()));
+        List<AgendaAbstract> agendas = new ArrayList<>();
+        sources.forEach(source -> agendas.addAll(source.findAll()));
+
+        File parentDir = target.getAbsoluteFile().getParentFile();
+        if (parentDir != null && !parentDir.exists()) {
+            parentDir.mkdirs();
+        }
+        JsonArray renumbered = renumberCollisions(agendas);
+        if (!renumbered.isEmpty()) {
+            File remapFile = new File(filePath + ".renumbered");
+            try {
+                AtomicFileWriter.write(remapFile, writer -> writer.write(renumbered + "\n"));
+            } catch (IOException e) {
+                System.err.println("❌ Could not write " + remapFile.getPath() + ": " + e.getMessage());
+                sources.forEach(Agenda_RepositoryAbstract::close);
+                return false;
+            }
+            System.out.println("✅ Renumbered " + renumbered.size() + " agendas whose IDs another type uses, see "
+                    + remapFile.getPath());
+        }
+        // Long notes are copied from the typed stores to the note store of the new file
+        NoteBlobStore noteStore = new NoteBlobStore(new File(filePath + ".notes"), NoteBlobStore.DEFAULT_INLINE_LIMIT);
+        Gson gson = GsonFactory.polymorphic(noteStore);
+        try {
+            for (AgendaAbstract agenda : agendas) {
+                String notes = agenda.getNotes();
+                if (noteStore.shouldStore(notes)) {
+                    agenda.setNotesRef(noteStore.put(notes), noteStore::get);
+                }
+            }
+            AtomicFileWriter.write(target, format, writer -> AgendaSchema.writeAll(gson, agendas, AgendaAbstract.class, writer));
+        } catch (IOException e) {
+            System.err.println("❌ Could not create " + target.getPath() + ": " + e.getMessage());
+            return false;
+        } finally {
+            noteStore.close();
+            sources.forEach(Agenda_RepositoryAbstract::close);
+        }
+        System.out.println("✅ Imported " + agendas.size() + " agendas into " + target.getPath());
+        return true;
+    }
+
+    /**
+     * Gives every agenda whose ID an earlier agenda already uses the next
+     * ID above all stored ones.
+     *
+     * @param agendas The agendas in import order; changed in place.
+     * @return One {@code {"kind","from","to"}} object per renumbered agenda.
+     */
+    private static JsonArray renumberCollisions(List<AgendaAbstract> agendas) {
+        int nextId = agendas.stream().mapToInt(AgendaAbstract::getID).max().orElse(0) + 1;
+        Set<Integer> used = new HashSet<>();
+        JsonArray renumbered = new JsonArray();
+        for (AgendaAbstract agenda : agendas) {
+            if (used.add(agenda.getID())) {
+                continue;
+            }
+            JsonObject change = new JsonObject();
+            change.addProperty(AgendaPolymorphicAdapter.KIND, kindOf(agenda));
+            change.addProperty("from", agenda.getID());
+            change.addProperty("to", nextId);
+            renumbered.add(change);
+            agenda.setID(nextId);
+            used.add(nextId++);
+        }
+        return renumbered;
+    }
+
+    private static String kindOf(AgendaAbstract agenda) {
+        if (agenda instanceof AgendaRegular) {
+            return AgendaPolymorphicAdapter.REGULAR;
+        }
+        return agenda instanceof AgendaSpecial ? AgendaPolymorphicAdapter.SPECIAL : AgendaPolymorphicAdapter.TASK;
+    }
+
+    public Agenda_RepositoryInterface<AgendaRegular> getRegularView() {
+        return regularView;
+    }
+
+    public Agenda_RepositoryInterface<AgendaSpecial> getSpecialView() {
+        return specialView;
+    }
+
+    public Agenda_RepositoryInterface<AgendaTask> getTaskView() {
+        return taskView;
+    }
+}
@@ -0,0 +1,115 @@
+package com.toki.repository;
+
+import com.toki.model.AgendaAbstract;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Typed repository facade over a {@link UnifiedAgendaRepository}: it only
+ * sees, and only deletes, the agendas of its own type.
+ *
+ * @param <T> The agenda type of the view.
+ */
+public class UnifiedAgendaView<T extends AgendaAbstract> implements Agenda_RepositoryInterface<T> {
+
+    private final UnifiedAgendaRepository store;
+    private final Class<T> type;
+
+    /**
+     * Constructs a view.
+     *
+     * @param store The unified store.
+     * @param type  Class of the agendas this view exposes.
+     */
+    public UnifiedAgendaView(UnifiedAgendaRepository store, Class<T> type) {
+        this.store = store;
+        this.type = type;
+    }
+
+    @Override
+    public void save(T item) {
+        store.save(item);
+    }
+
+    @Override
+    public T findByID(int ID) {
+        AgendaAbstract agenda = store.findByID(ID);
+        return type.isInstance(agenda) ? type.cast(agenda) : null;
+    }
+
+    @Override
+    public List<T> findAll() {
+        return select(store.findAll());
+    }
+
+    @Override
+    public List<T> findBetween(LocalDate from, LocalDate to) {
+        return select(store.findBetween(from, to));
+    }
+
+    @Override
+    public Stream<T> stream() {
+        return store.stream()
+                .filter(type::isInstance)
+                .map(type::cast);
+    }
+
+    /**
+     * Pages through the store until the page is filled with agendas of this type.
+     */
+    @Override
+    public List<T> findPage(int afterId, int limit) {
+        List<T> page = new ArrayList<>();
+        int cursor = afterId;
+        while (page.size() < limit) {
+            List<AgendaAbstract> batch = store.findPage(cursor, limit);
+            if (batch.isEmpty()) {
+                break;
+            }
+            for (AgendaAbstract agenda : batch) {
+                if (type.isInstance(agenda) && page.size() < limit) {
+                    page.add(type.cast(agenda));
+                }
+            }
+            cursor = batch.get(batch.size() - 1).getID();
+        }
+        return page;
+    }
+
+    /**
+     * Deletes the agenda if it is of this view's type. The type is checked
+     * where the delete is applied, so an agenda of another type saved under
+     * the same ID meanwhile is never deleted.
+     */
+    @Override
+    public void deleteByID(int ID) {
+        store.deleteIf(ID, type::isInstance);
+    }
+
+    @Override
+    public void bulk(Consumer<BulkWriter<T>> mutations) {
+        store.bulk(writer -> mutations.accept(new BulkWriter<>() {
+            @Override
+            public void save(T item) {
+                writer.save(item);
+            }
+
+            @Override
+            public void deleteByID(int ID) {
+                writer.deleteByID(ID);
+            }
+        }), type::isInstance);
+    }
+
+    private List<T> select(List<AgendaAbstract> agendas) {
+        return agendas.stream()
+                .filter(type::isInstance)
+                .map(type::cast)
+                .collect(Collectors.toList());
+    }
+}
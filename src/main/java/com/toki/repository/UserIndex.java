@@ -0,0 +1,331 @@
+package com.toki.repository;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.function.LongPredicate;
+
+/**
+ * Persisted username index of a {@link UserRepository} in
+ * {@code users.json.idx}: a hash table from the 64-bit hash of a username to
+ * the byte offset of its line in users.json, and a {@link BloomFilter} of
+ * all usernames. Lookups and inserts read and write a constant number of
+ * buckets with positional {@link FileChannel} calls, so neither depends on
+ * the number of users; only growing the table rehashes it, from the stored
+ * hashes without reading users.json. The Bloom bits are kept on the heap and
+ * written back word by word.
+ * <p>
+ * The file is not memory-mapped: Windows refuses to truncate or replace a
+ * file while a mapping of it is live, and Java cannot release a mapping
+ * before the garbage collector does.
+ * <p>
+ * The header records the length and modification time of the users.json the
+ * index describes. If they do not match (first start, crash, edit by hand)
+ * the repository rebuilds the index.
+ * <p>
+ * Layout: a 40-byte header (magic, version, data length, data modification
+ * time, bucket count, size, Bloom words, Bloom hashes), the Bloom bits, then
+ * 16-byte buckets of (hash, offset). Offset 0 is the "[" of users.json, so a
+ * zero bucket is empty.
+ */
+class UserIndex implements AutoCloseable {
+
+    private static final int MAGIC = 0x544F4B55; // "TOKU"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 40;
+    private static final int DATA_LENGTH = 8;
+    private static final int DATA_MODIFIED = 16;
+    private static final int BUCKET_COUNT = 24;
+    private static final int SIZE = 28;
+    private static final int BLOOM_WORDS = 32;
+    private static final int BLOOM_HASHES = 36;
+
+    private static final int BUCKET_SIZE = 16;
+    private static final int INITIAL_BUCKETS = 1024;
+    private static final float LOAD_FACTOR = 0.5f;
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+    // Buckets read at once while growing the table
+    private static final int SCAN_BUCKETS = 4096;
+
+    private final FileChannel channel;
+    private final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    private final ByteBuffer bucket = ByteBuffer.allocate(BUCKET_SIZE);
+    private long[] bloomWords;
+    private BloomFilter bloom;
+    private int bucketCount;
+    private long bucketsStart;
+    private int size;
+
+    /**
+     * Opens (or creates) the index file. An existing file is read as is;
+     * call {@link #matches} before trusting it.
+     *
+     * @param file The index file.
+     * @throws IOException If the file cannot be opened or read.
+     */
+    UserIndex(File file) throws IOException {
+        this.channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        refresh();
+    }
+
+    /**
+     * Picks up changes another process made to the index file by reading the
+     * header again, and the Bloom bits if the header changed. Call it under
+     * the lock that every writer of the index holds.
+     */
+    void refresh() throws IOException {
+        ByteBuffer stored = ByteBuffer.allocate(HEADER_SIZE);
+        if (channel.size() < HEADER_SIZE || readFully(stored, 0) < HEADER_SIZE
+                || stored.getInt(0) != MAGIC || stored.getInt(4) != VERSION) {
+            reset(0);
+            return;
+        }
+        stored.flip();
+        if (bloom != null && stored.equals(header)) {
+            return;
+        }
+        header.put(stored).clear();
+        if (!attach()) {
+            reset(0);
+        }
+    }
+
+    /**
+     * Reads the table geometry from the header and the Bloom bits from the file.
+     *
+     * @return false if the header does not fit the file.
+     */
+    private boolean attach() throws IOException {
+        bucketCount = header.getInt(BUCKET_COUNT);
+        size = header.getInt(SIZE);
+        int words = header.getInt(BLOOM_WORDS);
+        bucketsStart = HEADER_SIZE + (long) words * Long.BYTES;
+        if (Integer.bitCount(bucketCount) != 1 || words <= 0
+                || bucketsStart + (long) bucketCount * BUCKET_SIZE != channel.size()) {
+            return false;
+        }
+        ByteBuffer bits = ByteBuffer.allocate(words * Long.BYTES);
+        readFully(bits, HEADER_SIZE);
+        bloomWords = new long[words];
+        bits.flip().asLongBuffer().get(bloomWords);
+        bloom = new BloomFilter(LongBuffer.wrap(bloomWords), header.getInt(BLOOM_HASHES));
+        return true;
+    }
+
+    /**
+     * Hashes a username for the table and the Bloom filter: FNV-1a over the
+     * characters, then the MurmurHash3 finalizer to spread the bits.
+     *
+     * @param username The username.
+     * @return The 64-bit hash.
+     */
+    static long hash(String username) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < username.length(); i++) {
+            h = (h ^ username.charAt(i)) * 0x100000001b3L;
+        }
+        h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+        h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+
+    /**
+     * Checks that the index describes the current users.json.
+     *
+     * @param dataLength   Length of users.json.
+     * @param dataModified Modification time of users.json.
+     * @return true if the index can be used.
+     */
+    boolean matches(long dataLength, long dataModified) {
+        return header.getLong(DATA_LENGTH) == dataLength && header.getLong(DATA_MODIFIED) == dataModified;
+    }
+
+    /**
+     * Records the users.json the index now describes.
+     */
+    void setStamp(long dataLength, long dataModified) throws IOException {
+        header.putLong(DATA_LENGTH, dataLength);
+        header.putLong(DATA_MODIFIED, dataModified);
+        writeHeader();
+    }
+
+    /**
+     * Empties the index and sizes it for a number of users. The stamp is
+     * cleared, so the index does not match any file until it is set.
+     *
+     * @param expectedSize Number of users expected.
+     */
+    void reset(int expectedSize) throws IOException {
+        int buckets = Math.max(INITIAL_BUCKETS,
+                Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1);
+        int users = (int) (buckets * LOAD_FACTOR);
+        int words = BloomFilter.wordsFor(users, FALSE_POSITIVE_RATE);
+
+        // Truncating and extending again leaves the Bloom bits and the buckets zero
+        long length = HEADER_SIZE + (long) words * Long.BYTES + (long) buckets * BUCKET_SIZE;
+        channel.truncate(0);
+        channel.write(ByteBuffer.allocate(1), length - 1);
+        header.clear();
+        header.put(new byte[HEADER_SIZE]).clear();
+        header.putInt(0, MAGIC);
+        header.putInt(4, VERSION);
+        header.putInt(BUCKET_COUNT, buckets);
+        header.putInt(SIZE, 0);
+        header.putInt(BLOOM_WORDS, words);
+        header.putInt(BLOOM_HASHES, BloomFilter.hashesFor(users, words));
+        header.putLong(DATA_LENGTH, -1);
+        header.putLong(DATA_MODIFIED, -1);
+        writeHeader();
+        attach();
+    }
+
+    /**
+     * Adds a username, growing the table first if it is half full.
+     *
+     * @param hash   The {@link #hash} of the username.
+     * @param offset Byte offset of the user's line in users.json.
+     */
+    void put(long hash, long offset) throws IOException {
+        if (size + 1 > bucketCount * LOAD_FACTOR) {
+            grow();
+        }
+        int mask = bucketCount - 1;
+        int slot = (int) hash & mask;
+        while (readBucket(slot) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        bucket.clear();
+        bucket.putLong(0, hash).putLong(Long.BYTES, offset);
+        writeFully(bucket, bucketOffset(slot));
+        ByteBuffer word = ByteBuffer.allocate(Long.BYTES);
+        for (int changed : bloom.add(hash)) {
+            word.clear();
+            word.putLong(0, bloomWords[changed]);
+            writeFully(word, HEADER_SIZE + (long) changed * Long.BYTES);
+        }
+        header.putInt(SIZE, ++size);
+        writeHeader();
+    }
+
+    /**
+     * Finds the line of a username. Usernames the Bloom filter has never
+     * seen are rejected without probing the table.
+     *
+     * @param hash    The {@link #hash} of the username.
+     * @param isMatch Checks whether the line at an offset holds the username,
+     *                since different usernames may share a hash.
+     * @return The offset of the line, or -1 if the username is not indexed.
+     */
+    long find(long hash, LongPredicate isMatch) throws IOException {
+        if (!bloom.mightContain(hash)) {
+            return -1;
+        }
+        int mask = bucketCount - 1;
+        for (int slot = (int) hash & mask; ; slot = (slot + 1) & mask) {
+            long offset = readBucket(slot);
+            if (offset == 0) {
+                return -1;
+            }
+            if (bucket.getLong(0) == hash && isMatch.test(offset)) {
+                return offset;
+            }
+        }
+    }
+
+    /**
+     * Checks the Bloom filter only.
+     *
+     * @param hash The {@link #hash} of the username.
+     * @return false if the username is certainly not indexed.
+     */
+    boolean mightContain(long hash) {
+        return bloom.mightContain(hash);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Writes the index to disk.
+     */
+    void force() throws IOException {
+        channel.force(false);
+    }
+
+    /**
+     * Doubles the table, rebuilding it and the Bloom filter from the stored hashes.
+     */
+    private void grow() throws IOException {
+        long[] hashes = new long[size];
+        long[] offsets = new long[size];
+        int count = 0;
+        ByteBuffer buckets = ByteBuffer.allocate(SCAN_BUCKETS * BUCKET_SIZE);
+        for (int first = 0; first < bucketCount; first += SCAN_BUCKETS) {
+            buckets.clear().limit(Math.min(SCAN_BUCKETS, bucketCount - first) * BUCKET_SIZE);
+            readFully(buckets, bucketOffset(first));
+            for (int i = 0; i < buckets.limit(); i += BUCKET_SIZE) {
+                long offset = buckets.getLong(i + Long.BYTES);
+                if (offset != 0 && count < size) {
+                    hashes[count] = buckets.getLong(i);
+                    offsets[count++] = offset;
+                }
+            }
+        }
+        long dataLength = header.getLong(DATA_LENGTH);
+        long dataModified = header.getLong(DATA_MODIFIED);
+        reset(bucketCount);
+        for (int i = 0; i < count; i++) {
+            put(hashes[i], offsets[i]);
+        }
+        setStamp(dataLength, dataModified);
+    }
+
+    /**
+     * Reads a bucket into {@link #bucket}.
+     *
+     * @return The offset it holds, 0 if it is empty.
+     */
+    private long readBucket(int slot) throws IOException {
+        bucket.clear();
+        readFully(bucket, bucketOffset(slot));
+        return bucket.getLong(Long.BYTES);
+    }
+
+    private long bucketOffset(int slot) {
+        return bucketsStart + (long) slot * BUCKET_SIZE;
+    }
+
+    private void writeHeader() throws IOException {
+        writeFully(header.clear(), 0);
+        header.clear();
+    }
+
+    private int readFully(ByteBuffer buffer, long position) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + total);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        long written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -1,28 +1,62 @@
 package com.toki.repository;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
 import com.google.gson.reflect.TypeToken;
 import com.toki.model.User;
+import com.toki.repository.json.GsonFactory;
 
 import java.io.*;
 import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Map;
 
+/**
+ * Users stored in users.json, a JSON array with one user per line.
+ * A persisted {@link UserIndex} next to it maps every username to the
+ * offset of its line, so a lookup reads a single line and registering a user
+ * appends a single line; a username that is not taken is usually rejected by
+ * the index's Bloom filter without touching users.json at all.
+ * <p>
+ * Saves and lookups hold a {@link ProcessFileLock} on users.json.lock, so two
+ * running instances never write users.json or its index at the same time.
+ */
 public class UserRepository implements UserRepositoryInterface {
 
-    private static final String FILE_PATH = "data/database/users.json"; 
+    private static final String FILE_PATH = "data/database/users.json";
+    // users.json without users, and the end every save leaves the file with
+    private static final String EMPTY_FILE = "[\n]\n";
+    private static final String FOOTER = "\n]\n";
+    private static final int LINE_READ_SIZE = 256;
+
+    private final File file;
     private final Gson gson;
     private final Type userListType;
+    private final UserIndex index;
+    private final ProcessFileLock fileLock;
 
     public UserRepository() {
-        this.gson = new GsonBuilder().setPrettyPrinting().create(); 
+        this(FILE_PATH);
+    }
+
+    /**
+     * Constructs the repository on a specific users file.
+     *
+     * @param filePath Path of the users file; the index is kept at filePath + ".idx".
+     */
+    public UserRepository(String filePath) {
+        this.file = new File(filePath);
+        this.gson = GsonFactory.compact();
         this.userListType = new TypeToken<List<User>>() {}.getType();
-        
-        File file = new File(FILE_PATH);
+        this.fileLock = new ProcessFileLock(new File(filePath + ".lock"));
+
         File parentDir = file.getParentFile();
         if (parentDir != null && !parentDir.exists()) {
             parentDir.mkdirs();
@@ -30,54 +64,218 @@ public class UserRepository implements UserRepositoryInterface {
         if (!file.exists()) {
             saveAll(new ArrayList<>());
         }
+        try {
+            this.index = new UserIndex(new File(filePath + ".idx"));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open user index of " + filePath, e);
+        }
     }
+
     public List<User> findAll() {
-        File file = new File(FILE_PATH);
         if (!file.exists() || file.length() == 0) {
             return new ArrayList<>();
         }
-        try (Reader reader = new FileReader(file)) {
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
             List<User> users = gson.fromJson(reader, userListType);
             return users != null ? users : new ArrayList<>();
         } catch (IOException e) {
             System.err.println("Error reading user data: " + e.getMessage());
             return new ArrayList<>();
+        } catch (JsonParseException e) {
+            return readLines();
         }
     }
 
-    private void saveAll(List<User> users) {
-        try (Writer writer = new FileWriter(FILE_PATH)) {
-            gson.toJson(users, writer);
+    /**
+     * Reads the users line by line, for a file whose last line was torn by
+     * a crash during a save. Lines that cannot be parsed are skipped.
+     */
+    private List<User> readLines() {
+        List<User> users = new ArrayList<>();
+        try {
+            for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+                if (!line.startsWith("{")) {
+                    continue;
+                }
+                try {
+                    users.add(gson.fromJson(stripComma(line), User.class));
+                } catch (JsonParseException e) {
+                    System.err.println("❌ Skipping damaged user record in " + file.getPath() + ": " + line);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading user data: " + e.getMessage());
+        }
+        return users;
+    }
+
+    /**
+     * Rewrites the users file, one user per line.
+     *
+     * @return The byte offset of every user's line.
+     */
+    private long[] saveAll(List<User> users) {
+        long[] offsets = new long[users.size()];
+        StringBuilder content = new StringBuilder("[\n");
+        long offset = 2;
+        for (int i = 0; i < users.size(); i++) {
+            String line = gson.toJson(users.get(i)) + (i < users.size() - 1 ? ",\n" : "\n");
+            content.append(line);
+            offsets[i] = offset;
+            offset += line.getBytes(StandardCharsets.UTF_8).length;
+        }
+        content.append("]\n");
+        try {
+            AtomicFileWriter.write(file, writer -> writer.write(content.toString()));
         } catch (IOException e) {
             System.err.println("Error writing user data: " + e.getMessage());
         }
+        return offsets;
     }
 
+    /**
+     * Saves a user. A new username is appended as one line and added to the
+     * index; replacing an existing user rewrites the file.
+     *
+     * @param newUser The user.
+     */
     @Override
-    public void save(User newUser) {
-        List<User> users = findAll();
-        
-        Optional<User> existingUser = users.stream()
-            .filter(u -> u.getUsername().equals(newUser.getUsername()))
-            .findFirst();
-        
-        if (existingUser.isPresent()) {
-            List<User> filteredUsers = users.stream()
-                .filter(u -> !u.getUsername().equals(newUser.getUsername()))
-                .collect(Collectors.toList());
-            filteredUsers.add(newUser);
-            saveAll(filteredUsers);
-        } else {
-            users.add(newUser);
-            saveAll(users);
+    public synchronized void save(User newUser) {
+        try {
+            ProcessFileLock.Handle handle = fileLock.acquire();
+            try (handle) {
+                ensureIndex();
+                long hash = UserIndex.hash(newUser.getUsername());
+                if (findOffset(newUser.getUsername(), hash) < 0 && append(newUser, hash)) {
+                    return;
+                }
+                Map<String, User> users = readUsers();
+                users.put(newUser.getUsername(), newUser);
+                rebuild(new ArrayList<>(users.values()));
+            }
+        } catch (IOException e) {
+            System.err.println("Error writing user data: " + e.getMessage());
         }
     }
 
     @Override
-    public User findByUsername(String username) {
-        return findAll().stream()
-            .filter(user -> user.getUsername().equals(username))
-            .findFirst()
-            .orElse(null);
+    public synchronized User findByUsername(String username) {
+        try {
+            ProcessFileLock.Handle handle = fileLock.acquire();
+            try (handle) {
+                ensureIndex();
+                long offset = findOffset(username, UserIndex.hash(username));
+                return offset >= 0 ? readUser(offset) : null;
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading user data: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Appends a user in place of the closing bracket and indexes its line.
+     *
+     * @return false if the file does not end the way saves leave it.
+     */
+    private boolean append(User user, long hash) throws IOException {
+        long offset;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long length = channel.size();
+            ByteBuffer end = ByteBuffer.allocate(FOOTER.length());
+            channel.read(end, length - FOOTER.length());
+            if (length < EMPTY_FILE.length() || !FOOTER.equals(new String(end.array(), StandardCharsets.UTF_8))) {
+                return false;
+            }
+            boolean empty = length == EMPTY_FILE.length();
+            String line = (empty ? "" : ",\n") + gson.toJson(user) + FOOTER;
+            long position = empty ? length - FOOTER.length() + 1 : length - FOOTER.length();
+            channel.write(ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8)), position);
+            channel.force(false);
+            offset = empty ? position : position + 2;
+        }
+        index.put(hash, offset);
+        index.setStamp(file.length(), file.lastModified());
+        index.force();
+        return true;
+    }
+
+    /**
+     * Rebuilds the index unless it describes the current users file.
+     * A file in another layout (e.g. pretty-printed by an older release)
+     * is rewritten one user per line first. Another instance may have
+     * grown or rebuilt the index, so its header is read again first.
+     */
+    private void ensureIndex() throws IOException {
+        index.refresh();
+        if (!index.matches(file.length(), file.lastModified())) {
+            rebuild(new ArrayList<>(readUsers().values()));
+        }
+    }
+
+    private void rebuild(List<User> users) {
+        long[] offsets = saveAll(users);
+        try {
+            index.reset(users.size());
+            for (int i = 0; i < users.size(); i++) {
+                index.put(UserIndex.hash(users.get(i).getUsername()), offsets[i]);
+            }
+            index.setStamp(file.length(), file.lastModified());
+            index.force();
+        } catch (IOException e) {
+            System.err.println("Error writing user index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads all users by username, keeping the first of any duplicates.
+     */
+    private Map<String, User> readUsers() {
+        Map<String, User> users = new LinkedHashMap<>();
+        for (User user : findAll()) {
+            if (user != null && user.getUsername() != null) {
+                users.putIfAbsent(user.getUsername(), user);
+            }
+        }
+        return users;
+    }
+
+    private long findOffset(String username, long hash) throws IOException {
+        return index.find(hash, offset -> {
+            User user = readUser(offset);
+            return user != null && username.equals(user.getUsername());
+        });
+    }
+
+    /**
+     * Reads the user on the line starting at an offset.
+     *
+     * @return The user, or null if the line cannot be read.
+     */
+    private User readUser(long offset) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(LINE_READ_SIZE);
+            while (true) {
+                int read = channel.read(buffer, offset + buffer.position());
+                for (int i = 0; i < buffer.position(); i++) {
+                    if (buffer.get(i) == '\n') {
+                        String line = new String(buffer.array(), 0, i, StandardCharsets.UTF_8);
+                        return gson.fromJson(stripComma(line), User.class);
+                    }
+                }
+                if (read < 0) {
+                    return null;
+                }
+                if (!buffer.hasRemaining()) {
+                    buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer.flip());
+                }
+            }
+        } catch (IOException | JsonParseException e) {
+            return null;
+        }
+    }
+
+    private static String stripComma(String line) {
+        return line.endsWith(",") ? line.substring(0, line.length() - 1) : line;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,142 @@
+package com.toki.repository;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Background flusher of a write-behind repository.
+ * <p>
+ * {@link #request()} only bumps a counter and never blocks on disk. A virtual
+ * thread, started on the first request, waits a short delay so a burst of
+ * mutations is coalesced, then runs the flush action once for all of them.
+ * A failed flush is retried after a back-off; the action is responsible for
+ * keeping the mutations it could not persist. The thread is a daemon, so an
+ * idle flusher never keeps the JVM alive; call {@link #flush} before exiting.
+ */
+public class WriteBehindFlusher {
+
+    /**
+     * Persists everything queued before it was started.
+     */
+    public interface Action {
+        void flush() throws IOException;
+    }
+
+    private static final long RETRY_DELAY_MILLIS = 1000;
+
+    private final String name;
+    private final long delayMillis;
+    private final Action action;
+
+    // j.u.c. locks instead of synchronized, so the waiting virtual thread does not pin its carrier
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private long requested;
+    private long completed;
+    private boolean urgent;
+    private Thread thread;
+
+    /**
+     * Constructs a flusher.
+     *
+     * @param name        Name of the flusher thread.
+     * @param delayMillis How long to wait for further mutations before flushing.
+     * @param action      The flush action.
+     */
+    public WriteBehindFlusher(String name, long delayMillis, Action action) {
+        this.name = name;
+        this.delayMillis = delayMillis;
+        this.action = action;
+    }
+
+    /**
+     * Schedules a flush for the mutations queued so far.
+     */
+    public void request() {
+        lock.lock();
+        try {
+            requested++;
+            if (thread == null) {
+                thread = Thread.ofVirtual().name(name).start(this::run);
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Flushes right away and waits until every mutation requested so far is persisted.
+     *
+     * @param timeoutMillis Maximum time to wait.
+     * @return true if everything was flushed in time.
+     */
+    public boolean flush(long timeoutMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        lock.lock();
+        try {
+            long target = requested;
+            urgent = true;
+            changed.signalAll();
+            while (completed < target) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0 || thread == null) {
+                    return completed >= target;
+                }
+                changed.awaitNanos(remaining);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            long target;
+            lock.lock();
+            try {
+                while (completed == requested) {
+                    urgent = false;
+                    changed.await();
+                }
+                // Coalescing window; a flush() request cuts it short
+                long windowEnd = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+                long remaining;
+                while (!urgent && (remaining = windowEnd - System.nanoTime()) > 0) {
+                    changed.awaitNanos(remaining);
+                }
+                target = requested;
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                action.flush();
+            } catch (IOException | RuntimeException e) {
+                System.err.println("❌ Write-behind flush failed (" + name + "), retrying: " + e.getMessage());
+                try {
+                    Thread.sleep(RETRY_DELAY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+                continue;
+            }
+
+            lock.lock();
+            try {
+                completed = Math.max(completed, target);
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
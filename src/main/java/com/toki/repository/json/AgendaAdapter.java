@@ -0,0 +1,170 @@
+package com.toki.repository.json;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.toki.model.AgendaAbstract;
+import com.toki.repository.NoteBlobStore;
+import com.toki.repository.StringPool;
+
+import java.io.IOException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * Streaming Gson adapter for an agenda type, written by hand so no
+ * reflection is involved. Field names and order match what Gson's reflective
+ * binding produced, so existing data files read and write unchanged.
+ * <p>
+ * With a {@link NoteBlobStore}, notes the repository has put into the store
+ * are written as their reference, {@code "notesRef"}; reading such a record
+ * leaves the notes unloaded until they are first accessed.
+ *
+ * @param <T> The agenda type.
+ */
+abstract class AgendaAdapter<T extends AgendaAbstract> extends TypeAdapter<T> {
+
+    /**
+     * Values read from one JSON object before the agenda is constructed.
+     */
+    static class Fields {
+        int ID;
+        String title;
+        String type;
+        String group;
+        String notes;
+        String notesRef;
+        LocalDate date;
+        LocalTime time;
+        DayOfWeek day;
+        char priority;
+    }
+
+    private final NoteBlobStore noteStore;
+
+    AgendaAdapter(NoteBlobStore noteStore) {
+        this.noteStore = noteStore;
+    }
+
+    /**
+     * Writes the fields of the subclass, which Gson put before the common ones.
+     */
+    abstract void writeSpecific(JsonWriter out, T agenda) throws IOException;
+
+    /**
+     * Reads one field of the subclass.
+     *
+     * @return false if the name is not a field of this type.
+     */
+    abstract boolean readSpecific(String name, JsonReader in, Fields fields) throws IOException;
+
+    abstract T create(Fields fields);
+
+    @Override
+    public void write(JsonWriter out, T agenda) throws IOException {
+        if (agenda == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        writeFields(out, agenda);
+        out.endObject();
+    }
+
+    /**
+     * Writes all fields of an agenda into an object that is already open.
+     */
+    void writeFields(JsonWriter out, T agenda) throws IOException {
+        writeSpecific(out, agenda);
+        out.name("ID").value(agenda.getID());
+        writeString(out, "title", agenda.getTitle());
+        writeString(out, "type", agenda.getType());
+        writeString(out, "group", agenda.getGroup());
+        writeNotes(out, agenda);
+    }
+
+    /**
+     * Writes the notes as a reference if they are in the note store, without
+     * loading them, and inline otherwise (e.g. notes of an agenda copied from
+     * another file). Nothing is written to the store here; the repository
+     * stores long notes before it persists an agenda.
+     */
+    private void writeNotes(JsonWriter out, T agenda) throws IOException {
+        String ref = agenda.getNotesRef();
+        if (noteStore != null && ref != null && noteStore.contains(ref)) {
+            out.name("notesRef").value(ref);
+        } else {
+            writeString(out, "notes", agenda.getNotes());
+        }
+    }
+
+    @Override
+    public T read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        Fields fields = new Fields();
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (!readCommon(name, in, fields) && !readSpecific(name, in, fields)) {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return build(fields);
+    }
+
+    /**
+     * Creates the agenda and attaches its stored notes, if any.
+     */
+    T build(Fields fields) {
+        T agenda = create(fields);
+        if (fields.notesRef != null) {
+            if (noteStore != null) {
+                agenda.setNotesRef(fields.notesRef, noteStore::get);
+            } else {
+                System.err.println("❌ No note store to load notes of agenda " + fields.ID);
+            }
+        }
+        return agenda;
+    }
+
+    /**
+     * Reads one field shared by all agenda types.
+     *
+     * @return false if the name is not a common field.
+     */
+    static boolean readCommon(String name, JsonReader in, Fields fields) throws IOException {
+        switch (name) {
+            case "ID" -> fields.ID = in.nextInt();
+            case "title" -> fields.title = readString(in);
+            // Few distinct values, shared by all agendas instead of one copy each
+            case "type" -> fields.type = StringPool.canonical(readString(in));
+            case "group" -> fields.group = StringPool.canonical(readString(in));
+            case "notes" -> fields.notes = readString(in);
+            case "notesRef" -> fields.notesRef = readString(in);
+            default -> {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static String readString(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+
+    static void writeString(JsonWriter out, String name, String value) throws IOException {
+        if (value != null) {
+            out.name(name).value(value);
+        }
+    }
+}
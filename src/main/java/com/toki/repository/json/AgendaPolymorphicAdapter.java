@@ -0,0 +1,103 @@
+package com.toki.repository.json;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.toki.model.AgendaAbstract;
+import com.toki.model.AgendaRegular;
+import com.toki.model.AgendaSpecial;
+import com.toki.model.AgendaTask;
+import com.toki.repository.NoteBlobStore;
+
+import java.io.IOException;
+
+/**
+ * Gson adapter for agendas of any type. Each object starts with a
+ * {@code "kind"} discriminator ("regular", "special" or "task") followed by
+ * the same fields the typed adapters write; reading accepts the discriminator
+ * at any position.
+ */
+public class AgendaPolymorphicAdapter extends TypeAdapter<AgendaAbstract> {
+
+    public static final String KIND = "kind";
+    public static final String REGULAR = "regular";
+    public static final String SPECIAL = "special";
+    public static final String TASK = "task";
+
+    private final AgendaRegularAdapter regularAdapter;
+    private final AgendaSpecialAdapter specialAdapter;
+    private final AgendaTaskAdapter taskAdapter;
+
+    public AgendaPolymorphicAdapter() {
+        this(null);
+    }
+
+    /**
+     * Constructs the adapter with a store for long notes.
+     *
+     * @param noteStore Store the notes are moved to, or null to keep them inline.
+     */
+    public AgendaPolymorphicAdapter(NoteBlobStore noteStore) {
+        this.regularAdapter = new AgendaRegularAdapter(noteStore);
+        this.specialAdapter = new AgendaSpecialAdapter(noteStore);
+        this.taskAdapter = new AgendaTaskAdapter(noteStore);
+    }
+
+    @Override
+    public void write(JsonWriter out, AgendaAbstract agenda) throws IOException {
+        if (agenda == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        switch (agenda) {
+            case AgendaRegular regular -> {
+                out.name(KIND).value(REGULAR);
+                regularAdapter.writeFields(out, regular);
+            }
+            case AgendaSpecial special -> {
+                out.name(KIND).value(SPECIAL);
+                specialAdapter.writeFields(out, special);
+            }
+            case AgendaTask task -> {
+                out.name(KIND).value(TASK);
+                taskAdapter.writeFields(out, task);
+            }
+            default -> throw new IllegalArgumentException("Unsupported agenda type: " + agenda.getClass().getName());
+        }
+        out.endObject();
+    }
+
+    @Override
+    public AgendaAbstract read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        AgendaAdapter.Fields fields = new AgendaAdapter.Fields();
+        String kind = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (KIND.equals(name)) {
+                kind = AgendaAdapter.readString(in);
+            } else if (!AgendaAdapter.readCommon(name, in, fields)
+                    && !taskAdapter.readSpecific(name, in, fields)
+                    && !specialAdapter.readSpecific(name, in, fields)
+                    && !regularAdapter.readSpecific(name, in, fields)) {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        if (REGULAR.equals(kind)) {
+            return regularAdapter.build(fields);
+        } else if (SPECIAL.equals(kind)) {
+            return specialAdapter.build(fields);
+        } else if (TASK.equals(kind)) {
+            return taskAdapter.build(fields);
+        }
+        throw new JsonParseException("Unknown agenda kind: " + kind);
+    }
+}
@@ -0,0 +1,70 @@
+package com.toki.repository.json;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.toki.model.AgendaRegular;
+import com.toki.repository.NoteBlobStore;
+
+import java.io.IOException;
+import java.time.DayOfWeek;
+
+/**
+ * Gson adapter for AgendaRegular.
+ */
+public class AgendaRegularAdapter extends AgendaAdapter<AgendaRegular> {
+
+    private static final DayOfWeek[] DAYS = DayOfWeek.values();
+
+    public AgendaRegularAdapter() {
+        this(null);
+    }
+
+    /**
+     * Constructs the adapter with a store for long notes.
+     *
+     * @param noteStore Store the notes are moved to, or null to keep them inline.
+     */
+    public AgendaRegularAdapter(NoteBlobStore noteStore) {
+        super(noteStore);
+    }
+
+    @Override
+    void writeSpecific(JsonWriter out, AgendaRegular regular) throws IOException {
+        if (regular.getDay() != null) {
+            out.name("day").value(regular.getDay().name());
+        }
+        if (regular.getTime() != null) {
+            out.name("time");
+            JsonTimes.writeTime(out, regular.getTime());
+        }
+    }
+
+    @Override
+    boolean readSpecific(String name, JsonReader in, Fields fields) throws IOException {
+        switch (name) {
+            case "day" -> fields.day = readDay(readString(in));
+            case "time" -> fields.time = JsonTimes.readTime(in);
+            default -> {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    AgendaRegular create(Fields f) {
+        return new AgendaRegular(f.ID, f.title, f.type, f.group, f.day, f.time, f.notes);
+    }
+
+    private static DayOfWeek readDay(String name) {
+        if (name == null) {
+            return null;
+        }
+        for (DayOfWeek day : DAYS) {
+            if (day.name().equals(name)) {
+                return day;
+            }
+        }
+        return null;
+    }
+}
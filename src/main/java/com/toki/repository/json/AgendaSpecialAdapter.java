@@ -0,0 +1,56 @@
+package com.toki.repository.json;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.toki.model.AgendaSpecial;
+import com.toki.repository.NoteBlobStore;
+
+import java.io.IOException;
+
+/**
+ * Gson adapter for AgendaSpecial.
+ */
+public class AgendaSpecialAdapter extends AgendaAdapter<AgendaSpecial> {
+
+    public AgendaSpecialAdapter() {
+        this(null);
+    }
+
+    /**
+     * Constructs the adapter with a store for long notes.
+     *
+     * @param noteStore Store the notes are moved to, or null to keep them inline.
+     */
+    public AgendaSpecialAdapter(NoteBlobStore noteStore) {
+        super(noteStore);
+    }
+
+    @Override
+    void writeSpecific(JsonWriter out, AgendaSpecial special) throws IOException {
+        if (special.getDate() != null) {
+            out.name("date");
+            JsonTimes.writeDate(out, special.getDate());
+        }
+        if (special.getTime() != null) {
+            out.name("time");
+            JsonTimes.writeTime(out, special.getTime());
+        }
+    }
+
+    @Override
+    boolean readSpecific(String name, JsonReader in, Fields fields) throws IOException {
+        switch (name) {
+            case "date" -> fields.date = JsonTimes.readDate(in);
+            case "time" -> fields.time = JsonTimes.readTime(in);
+            default -> {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    AgendaSpecial create(Fields f) {
+        return new AgendaSpecial(f.ID, f.title, f.type, f.group, f.date, f.time, f.notes);
+    }
+}
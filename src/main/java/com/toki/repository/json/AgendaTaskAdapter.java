@@ -0,0 +1,56 @@
+package com.toki.repository.json;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.toki.model.AgendaTask;
+import com.toki.repository.NoteBlobStore;
+
+import java.io.IOException;
+
+/**
+ * Gson adapter for AgendaTask.
+ */
+public class AgendaTaskAdapter extends AgendaAdapter<AgendaTask> {
+
+    public AgendaTaskAdapter() {
+        this(null);
+    }
+
+    /**
+     * Constructs the adapter with a store for long notes.
+     *
+     * @param noteStore Store the notes are moved to, or null to keep them inline.
+     */
+    public AgendaTaskAdapter(NoteBlobStore noteStore) {
+        super(noteStore);
+    }
+
+    @Override
+    void writeSpecific(JsonWriter out, AgendaTask task) throws IOException {
+        if (task.getDue() != null) {
+            out.name("due");
+            JsonTimes.writeDate(out, task.getDue());
+        }
+        out.name("priority").value(String.valueOf(task.getPriority()));
+    }
+
+    @Override
+    boolean readSpecific(String name, JsonReader in, Fields fields) throws IOException {
+        switch (name) {
+            case "due" -> fields.date = JsonTimes.readDate(in);
+            case "priority" -> {
+                String priority = readString(in);
+                fields.priority = priority != null && !priority.isEmpty() ? priority.charAt(0) : '\0';
+            }
+            default -> {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    AgendaTask create(Fields f) {
+        return new AgendaTask(f.ID, f.title, f.type, f.group, f.date, f.priority, f.notes);
+    }
+}
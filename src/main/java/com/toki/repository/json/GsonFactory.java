@@ -0,0 +1,71 @@
+package com.toki.repository.json;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.toki.model.AgendaAbstract;
+import com.toki.model.AgendaRegular;
+import com.toki.model.AgendaSpecial;
+import com.toki.model.AgendaTask;
+import com.toki.model.User;
+import com.toki.repository.NoteBlobStore;
+
+/**
+ * Shared Gson instances with the hand-written adapters of all model classes.
+ * Gson is thread-safe, so every repository reuses these instances instead
+ * of building its own; only a repository with its own note store gets its own.
+ */
+public final class GsonFactory {
+
+    private static final Gson COMPACT = builder(null).create();
+
+    private GsonFactory() {
+    }
+
+    /**
+     * Gets the Gson instance that writes JSON without whitespace.
+     *
+     * @return The shared compact Gson.
+     */
+    public static Gson compact() {
+        return COMPACT;
+    }
+
+    /**
+     * Gets a compact Gson that writes agenda notes held in a note store as
+     * their reference and resolves such references when reading.
+     *
+     * @param noteStore The note store of the data file.
+     * @return A new Gson bound to the store.
+     */
+    public static Gson compact(NoteBlobStore noteStore) {
+        return builder(noteStore).create();
+    }
+
+    /**
+     * Gets a Gson that reads and writes any agenda type with a "kind"
+     * discriminator, for stores that hold all types together, with agenda
+     * notes referenced in a note store like {@link #compact(NoteBlobStore)}.
+     *
+     * @param noteStore The note store of the data file.
+     * @return A new Gson bound to the store.
+     */
+    public static Gson polymorphic(NoteBlobStore noteStore) {
+        return polymorphicBuilder(noteStore).create();
+    }
+
+    private static GsonBuilder polymorphicBuilder(NoteBlobStore noteStore) {
+        // Hierarchy adapter, so a list element is written with the discriminator whatever its runtime type
+        return new GsonBuilder()
+                .disableHtmlEscaping()
+                .registerTypeHierarchyAdapter(AgendaAbstract.class, new AgendaPolymorphicAdapter(noteStore));
+    }
+
+    private static GsonBuilder builder(NoteBlobStore noteStore) {
+        return new GsonBuilder()
+                .disableHtmlEscaping()
+                .registerTypeAdapter(AgendaRegular.class, new AgendaRegularAdapter(noteStore))
+                .registerTypeAdapter(AgendaSpecial.class, new AgendaSpecialAdapter(noteStore))
+                .registerTypeAdapter(AgendaTask.class, new AgendaTaskAdapter(noteStore))
+                .registerTypeAdapter(User.class, new UserAdapter());
+    }
+}
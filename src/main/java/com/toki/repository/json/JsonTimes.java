@@ -0,0 +1,104 @@
+package com.toki.repository.json;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Reads and writes dates as "yyyy-MM-dd" and times as "HH:mm:ss".
+ * The common layouts are parsed and formatted digit by digit; anything else
+ * falls back to the cached ISO formatters.
+ */
+final class JsonTimes {
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE;
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ISO_LOCAL_TIME;
+
+    private JsonTimes() {
+    }
+
+    static LocalDate readDate(JsonReader in) throws IOException {
+        String value = AgendaAdapter.readString(in);
+        if (value == null) {
+            return null;
+        }
+        if (value.length() == 10 && value.charAt(4) == '-' && value.charAt(7) == '-') {
+            int year = digits(value, 0, 4);
+            int month = digits(value, 5, 2);
+            int day = digits(value, 8, 2);
+            if (year >= 0 && month >= 0 && day >= 0) {
+                return LocalDate.of(year, month, day);
+            }
+        }
+        return LocalDate.parse(value, DATE_FORMATTER);
+    }
+
+    static LocalTime readTime(JsonReader in) throws IOException {
+        String value = AgendaAdapter.readString(in);
+        if (value == null) {
+            return null;
+        }
+        if (value.length() == 8 && value.charAt(2) == ':' && value.charAt(5) == ':') {
+            int hour = digits(value, 0, 2);
+            int minute = digits(value, 3, 2);
+            int second = digits(value, 6, 2);
+            if (hour >= 0 && minute >= 0 && second >= 0) {
+                return LocalTime.of(hour, minute, second);
+            }
+        }
+        return LocalTime.parse(value, TIME_FORMATTER);
+    }
+
+    static void writeDate(JsonWriter out, LocalDate date) throws IOException {
+        int year = date.getYear();
+        if (year < 0 || year > 9999) {
+            out.value(date.format(DATE_FORMATTER));
+            return;
+        }
+        char[] chars = new char[10];
+        put(chars, 0, year, 4);
+        chars[4] = '-';
+        put(chars, 5, date.getMonthValue(), 2);
+        chars[7] = '-';
+        put(chars, 8, date.getDayOfMonth(), 2);
+        out.value(new String(chars));
+    }
+
+    static void writeTime(JsonWriter out, LocalTime time) throws IOException {
+        char[] chars = new char[8];
+        put(chars, 0, time.getHour(), 2);
+        chars[2] = ':';
+        put(chars, 3, time.getMinute(), 2);
+        chars[5] = ':';
+        put(chars, 6, time.getSecond(), 2);
+        out.value(new String(chars));
+    }
+
+    /**
+     * Parses a fixed number of decimal digits.
+     *
+     * @return The value, or -1 if a character is not a digit.
+     */
+    private static int digits(String value, int start, int count) {
+        int result = 0;
+        for (int i = start; i < start + count; i++) {
+            int digit = value.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            result = result * 10 + digit;
+        }
+        return result;
+    }
+
+    private static void put(char[] chars, int start, int value, int count) {
+        for (int i = start + count - 1; i >= start; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.toki.repository.json;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.toki.model.User;
+
+import java.io.IOException;
+
+/**
+ * Gson adapter for User.
+ */
+public class UserAdapter extends TypeAdapter<User> {
+
+    @Override
+    public void write(JsonWriter out, User user) throws IOException {
+        if (user == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        AgendaAdapter.writeString(out, "username", user.getUsername());
+        AgendaAdapter.writeString(out, "password", user.getPassword());
+        out.endObject();
+    }
+
+    @Override
+    public User read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        String username = null;
+        String password = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "username" -> username = AgendaAdapter.readString(in);
+                case "password" -> password = AgendaAdapter.readString(in);
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        return new User(username, password);
+    }
+}
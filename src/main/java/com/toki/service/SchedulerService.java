@@ -1,7 +1,10 @@
 package com.toki.service;
 
 import com.toki.model.*;
+import com.toki.repository.AgendaRegularRepository;
+import com.toki.repository.ColumnarAgendaStore;
 import com.toki.repository.Agenda_RepositoryInterface;
+import com.toki.repository.IdSequence;
 import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.LocalTime;
@@ -18,6 +21,7 @@ public class SchedulerService {
     private final Agenda_RepositoryInterface<AgendaRegular> regularRepo;
     private final Agenda_RepositoryInterface<AgendaSpecial> specialRepo;
     private final Agenda_RepositoryInterface<AgendaTask> taskRepo;
+    private final IdSequence idSequence;
 
     /**
      * Constructs the SchedulerService with necessary repositories.
@@ -30,9 +34,26 @@ public class SchedulerService {
             Agenda_RepositoryInterface<AgendaRegular> regularRepo,
             Agenda_RepositoryInterface<AgendaSpecial> specialRepo,
             Agenda_RepositoryInterface<AgendaTask> taskRepo) {
+        this(regularRepo, specialRepo, taskRepo, null);
+    }
+
+    /**
+     * Constructs the SchedulerService with a persistent ID allocator.
+     * 
+     * @param regularRepo Repository for Regular Agendas.
+     * @param specialRepo Repository for Special Agendas.
+     * @param taskRepo    Repository for Task Agendas.
+     * @param idSequence  Allocator for new Agenda IDs, or null to derive them from the stored maximum.
+     */
+    public SchedulerService(
+            Agenda_RepositoryInterface<AgendaRegular> regularRepo,
+            Agenda_RepositoryInterface<AgendaSpecial> specialRepo,
+            Agenda_RepositoryInterface<AgendaTask> taskRepo,
+            IdSequence idSequence) {
         this.regularRepo = regularRepo;
         this.specialRepo = specialRepo;
         this.taskRepo = taskRepo;
+        this.idSequence = idSequence;
     }
 
     public Agenda_RepositoryInterface<AgendaRegular> getRegularRepo() {
@@ -59,9 +80,17 @@ public class SchedulerService {
 
         Map<DayOfWeek, List<AgendaAbstract>> scheduleMap = initializeWeeklyMap();
 
-        addRegularAgendasToMap(scheduleMap, regularRepo.findAll());
-        addOneTimeItemsToMap(scheduleMap, specialRepo.findAll(), startOfWeek, endOfWeek);
-        addOneTimeItemsToMap(scheduleMap, taskRepo.findAll(), startOfWeek, endOfWeek);
+        if (regularRepo instanceof AgendaRegularRepository regulars) {
+            // Already partitioned by day and sorted by time
+            regulars.findWeek().forEach((day, agendas) -> scheduleMap.get(day).addAll(agendas));
+        } else if (regularRepo instanceof ColumnarAgendaStore<AgendaRegular> columns) {
+            // Filtered and sorted on the columns, only the week's agendas are created
+            columns.findWeek().forEach((day, agendas) -> scheduleMap.get(day).addAll(agendas));
+        } else {
+            addRegularAgendasToMap(scheduleMap, regularRepo.findAll());
+        }
+        addOneTimeItemsToMap(scheduleMap, specialRepo.findBetween(startOfWeek, endOfWeek));
+        addOneTimeItemsToMap(scheduleMap, taskRepo.findBetween(startOfWeek, endOfWeek));
 
         for (DayOfWeek day : DayOfWeek.values()) {
             List<AgendaAbstract> items = scheduleMap.get(day);
@@ -81,15 +110,7 @@ public class SchedulerService {
     public List<AgendaTask> getUpcomingTasks(LocalDate today, int daysAhead) {
         LocalDate deadline = today.plusDays(daysAhead);
 
-        List<AgendaTask> allTasks = taskRepo.findAll();
-
-        List<AgendaTask> upcomingTasks = allTasks.stream()
-                .filter(task -> {
-                    LocalDate dueDate = task.getDue();
-                    if (dueDate == null)
-                        return false;
-                    return !dueDate.isBefore(today) && !dueDate.isAfter(deadline);
-                })
+        List<AgendaTask> upcomingTasks = taskRepo.findBetween(today, deadline).stream()
                 .sorted(Comparator
                         .comparing(AgendaTask::getDue)
                         .thenComparingInt(task -> getPriorityValue(task.getPriority())))
@@ -108,17 +129,18 @@ public class SchedulerService {
         DayOfWeek dayOfWeek = date.getDayOfWeek();
         List<AgendaAbstract> todayAgendas = new ArrayList<>();
 
-        regularRepo.findAll().stream()
-                .filter(regular -> regular.getDay() == dayOfWeek)
-                .forEach(todayAgendas::add);
-
-        specialRepo.findAll().stream()
-                .filter(special -> date.equals(special.getDate()))
-                .forEach(todayAgendas::add);
+        if (regularRepo instanceof AgendaRegularRepository regulars) {
+            todayAgendas.addAll(regulars.findByDay(dayOfWeek));
+        } else if (regularRepo instanceof ColumnarAgendaStore<AgendaRegular> columns) {
+            todayAgendas.addAll(columns.findByDay(dayOfWeek));
+        } else {
+            regularRepo.findAll().stream()
+                    .filter(regular -> regular.getDay() == dayOfWeek)
+                    .forEach(todayAgendas::add);
+        }
 
-        taskRepo.findAll().stream()
-                .filter(task -> date.equals(task.getDue()))
-                .forEach(todayAgendas::add);
+        todayAgendas.addAll(specialRepo.findBetween(date, date));
+        todayAgendas.addAll(taskRepo.findBetween(date, date));
 
         todayAgendas.sort(getAgendaComparator());
 
@@ -132,11 +154,11 @@ public class SchedulerService {
      */
     public Map<String, Long> getAgendaCounts() {
         Map<String, Long> counts = new HashMap<>();
-        long taskCount = taskRepo.findAll().size();
+        long taskCount = taskRepo.count();
         counts.put("Task", taskCount);
-        long specialCount = specialRepo.findAll().size();
+        long specialCount = specialRepo.count();
         counts.put("Special", specialCount);
-        long regularCount = regularRepo.findAll().size();
+        long regularCount = regularRepo.count();
         counts.put("Regular", regularCount);
 
         return counts;
@@ -209,30 +231,25 @@ public class SchedulerService {
 
     private <T extends AgendaAbstract> void addOneTimeItemsToMap(
             Map<DayOfWeek, List<AgendaAbstract>> scheduleMap,
-            List<T> items,
-            LocalDate startOfWeek,
-            LocalDate endOfWeek) {
-        List<T> filteredItems = items.stream()
-                .filter(item -> {
-                    LocalDate itemDate = item.getRelevantDate();
-                    if (itemDate == null)
-                        return false;
-                    return !itemDate.isBefore(startOfWeek) && !itemDate.isAfter(endOfWeek);
-                })
-                .collect(Collectors.toList());
-
-        for (T item : filteredItems) {
+            List<T> items) {
+        for (T item : items) {
             DayOfWeek day = item.getRelevantDate().getDayOfWeek();
             scheduleMap.get(day).add(item);
         }
     }
 
     /**
-     * Determines the next available Agenda ID.
+     * Determines the next available Agenda ID. With an IdSequence the ID is
+     * allocated in O(1) and never handed out twice; otherwise all repositories
+     * are scanned for the current maximum.
      * 
      * @return The next ID.
      */
     public int getNextAgendaId() {
+        if (idSequence != null) {
+            return idSequence.next();
+        }
+
         int maxId = 0;
         maxId = Math.max(maxId, regularRepo.findAll().stream()
                 .mapToInt(AgendaAbstract::getID)
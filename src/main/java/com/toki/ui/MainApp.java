@@ -9,12 +9,14 @@ import com.toki.ui.view.DashboardView;
 import com.toki.ui.util.CssManager;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 
 public class MainApp extends Application {
 
     private static SchedulerService schedulerService;
+    private static AgendaShards agendaShards;
     private static UserRepositoryInterface userRepository;
     private static Stage primaryStage;
     private static User currentUser;
@@ -24,18 +26,28 @@ public class MainApp extends Application {
     public void start(Stage stage) {
         primaryStage = stage;
 
-        // Repository Initialization
-        Agenda_RepositoryInterface regularRepo = new AgendaRegularRepository();
-        Agenda_RepositoryInterface specialRepo = new AgendaSpecialRepository();
-        Agenda_RepositoryInterface taskRepo = new AgendaTaskRepository();
-        userRepository = new UserRepository();
-
-        schedulerService = new SchedulerService(regularRepo, specialRepo, taskRepo);
+        // Repository Initialization (journaled with write-behind: parsed once, saves are queued in memory
+        // and appended to a log by a background thread, so the UI thread never waits for the disk).
+        // Agenda data is sharded per user; a shard is opened when its user logs in.
+        agendaShards = new AgendaShards("data/database", StorageOptions.writeBehind());
+        UserRepository users = new UserRepository();
+        userRepository = users;
+        // Users registered before the data was sharded keep the agendas they saw; runs once
+        agendaShards.migrate(() -> users.findAll().stream().map(User::getUsername).toList());
 
         showLoginScreen();
 
     }
 
+    /**
+     * Flushes the queued writes of every open shard before exiting. Each
+     * repository waits at most its flush timeout.
+     */
+    @Override
+    public void stop() {
+        agendaShards.close();
+    }
+
     /**
      * Shows the Login Screen.
      */
@@ -104,7 +116,28 @@ public class MainApp extends Application {
         return currentUser;
     }
 
+    /**
+     * Sets the logged-in user and scopes the SchedulerService to their shard.
+     *
+     * @param user The user who logged in.
+     */
     public static void setCurrentUser(User user) {
+        if (currentUser != null && (user == null || !currentUser.getUsername().equals(user.getUsername()))) {
+            agendaShards.release(currentUser.getUsername());
+        }
         currentUser = user;
+        if (user == null) {
+            schedulerService = null;
+            return;
+        }
+        AgendaShard shard = agendaShards.open(user.getUsername());
+        // Changes made by other processes or tools reach the dashboard without polling
+        shard.watch(() -> Platform.runLater(() -> {
+            if (dashboardView != null) {
+                dashboardView.refresh();
+            }
+        }));
+        schedulerService = new SchedulerService(shard.getRegularRepo(), shard.getSpecialRepo(), shard.getTaskRepo(),
+                shard.getIdSequence());
     }
 }
@@ -0,0 +1,132 @@
+package com.toki.repository;
+
+import com.toki.model.AgendaRegular;
+import com.toki.model.AgendaTask;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Round trips, updates and conversion runs of the binary store.
+ */
+public class AgendaBinaryRepositoryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void agendasRoundTripThroughReopening() throws IOException {
+        String base = new File(folder.newFolder(), "task").getPath();
+        AgendaBinaryRepository<AgendaTask> store = AgendaBinaryRepository.forTask(base);
+        store.save(new AgendaTask(1, "Ujian", "Task", "Kuliah", LocalDate.of(2026, 3, 1), 'H', "Bab 1–3"));
+        store.save(new AgendaTask(2, "Other", "Task", null, null, 'Ж', null));
+        store.close();
+
+        AgendaBinaryRepository<AgendaTask> reopened = AgendaBinaryRepository.forTask(base);
+        AgendaTask first = reopened.findByID(1);
+        assertEquals("Ujian", first.getTitle());
+        assertEquals("Kuliah", first.getGroup());
+        assertEquals(LocalDate.of(2026, 3, 1), first.getDue());
+        assertEquals("Bab 1–3", first.getNotes());
+        AgendaTask second = reopened.findByID(2);
+        assertEquals('Ж', second.getPriority());
+        assertNull(second.getGroup());
+        assertNull(second.getDue());
+        assertEquals(2, reopened.count());
+        reopened.close();
+
+        String regularBase = new File(folder.newFolder(), "regular").getPath();
+        AgendaBinaryRepository<AgendaRegular> regulars = AgendaBinaryRepository.forRegular(regularBase);
+        regulars.save(new AgendaRegular(3, "Kelas", "Regular", null, DayOfWeek.FRIDAY, LocalTime.of(8, 30, 15), null));
+        AgendaRegular regular = regulars.findByID(3);
+        assertEquals(DayOfWeek.FRIDAY, regular.getDay());
+        assertEquals(LocalTime.of(8, 30, 15), regular.getTime());
+        regulars.close();
+    }
+
+    @Test
+    public void updatesDoNotGrowTheHeapWithoutBound() throws IOException {
+        String base = new File(folder.newFolder(), "task").getPath();
+        AgendaBinaryRepository<AgendaTask> store = AgendaBinaryRepository.forTask(base);
+        AgendaTask task = new AgendaTask(1, "Title", "Task", "Group", LocalDate.of(2026, 1, 1), 'M', "Notes");
+        store.save(task);
+        long size = store.heapSize();
+        for (int i = 0; i < 100; i++) {
+            store.save(task);
+        }
+        assertEquals(size, store.heapSize());
+
+        // Changed strings are appended, but the garbage is compacted away
+        String notes = "x".repeat(1000);
+        for (int i = 0; i < 1000; i++) {
+            store.save(new AgendaTask(1, "Title", "Task", "Group", LocalDate.of(2026, 1, 1), 'M', notes + i));
+        }
+        assertTrue(store.heapSize() < 200_000);
+        store.deleteByID(1);
+        store.save(new AgendaTask(2, "Second", "Task", null, null, 'L', null));
+        store.close();
+
+        AgendaBinaryRepository<AgendaTask> reopened = AgendaBinaryRepository.forTask(base);
+        assertNull(reopened.findByID(1));
+        assertEquals("Second", reopened.findByID(2).getTitle());
+        assertEquals(1, reopened.count());
+        reopened.close();
+    }
+
+    @Test
+    public void convertingAgainLeavesTheStoreUnchanged() throws IOException {
+        File json = new File(folder.newFolder(), "task.json");
+        BenchmarkData.writeTasks(json, BenchmarkData.tasks(200));
+        String base = json.getPath().replace(".json", "");
+
+        AgendaTaskRepository source = new AgendaTaskRepository(json.getPath(), StorageOptions.direct());
+        AgendaBinaryConverter.convert(source, AgendaBinaryRepository.forTask(base));
+        long heapSize = new File(base + ".heap").length();
+        source.deleteByID(7);
+        AgendaBinaryConverter.convert(source, AgendaBinaryRepository.forTask(base));
+
+        assertEquals(heapSize, new File(base + ".heap").length());
+        AgendaBinaryRepository<AgendaTask> store = AgendaBinaryRepository.forTask(base);
+        assertEquals(199, store.count());
+        assertNull(store.findByID(7));
+        assertEquals("Task 8", store.findByID(8).getTitle());
+        store.close();
+    }
+
+    @Test
+    public void compactionMovesToTheNextGenerationAndDeletesTheOldOne() throws IOException {
+        String base = new File(folder.newFolder(), "task").getPath();
+        File directory = new File(base).getParentFile();
+        AgendaBinaryRepository<AgendaTask> store = AgendaBinaryRepository.forTask(base);
+        store.save(new AgendaTask(1, "Kept", "Task", null, LocalDate.of(2026, 1, 1), 'M', "x".repeat(1000)));
+        store.compact();
+        store.deleteByID(1);
+        store.save(new AgendaTask(2, "Second", "Task", null, null, 'L', null));
+        store.compact();
+        assertEquals(List.of("task.2.bin", "task.2.heap"), sortedNames(directory));
+        store.close();
+
+        // Leftovers of a compaction that crashed before its record file appeared
+        Files.writeString(new File(base + ".3.heap").toPath(), "partial");
+        AgendaBinaryRepository<AgendaTask> reopened = AgendaBinaryRepository.forTask(base);
+        assertEquals(List.of("task.2.bin", "task.2.heap"), sortedNames(directory));
+        assertNull(reopened.findByID(1));
+        assertEquals("Second", reopened.findByID(2).getTitle());
+        reopened.close();
+    }
+
+    private static List<String> sortedNames(File directory) {
+        return Stream.of(directory.list()).sorted().toList();
+    }
+}
@@ -0,0 +1,64 @@
+package com.toki.repository;
+
+import com.toki.model.AgendaTask;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Reading version 1 files and journals, and writing the current version.
+ */
+public class AgendaSchemaTest {
+
+    private static final String LEGACY_FILE = "[{\"due\":\"2025-12-13\",\"priority\":\"h\",\"ID\":1,"
+            + "\"title\":\"A\",\"type\":\"Task\",\"group\":\"College\"}]";
+    private static final String LEGACY_JOURNAL = "{\"op\":\"put\",\"agenda\":{\"due\":\"2025-12-14\","
+            + "\"priority\":\"l\",\"ID\":2,\"title\":\"B\",\"type\":\"Task\"}}\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void legacyRecordsAreReadAsTheyAreAndWrappedOnSave() throws IOException {
+        File file = new File(folder.newFolder(), "task.json");
+        Files.writeString(file.toPath(), LEGACY_FILE);
+
+        AgendaTaskRepository repository = new AgendaTaskRepository(file.getPath(), StorageOptions.cached());
+        assertEquals('h', repository.findByID(1).getPriority());
+        // Not rewritten until the next save
+        assertEquals(LEGACY_FILE, Files.readString(file.toPath()));
+
+        repository.save(new AgendaTask(3, "C", "Task", null, LocalDate.of(2026, 1, 1), 'M', null));
+        String stored = Files.readString(file.toPath());
+        assertTrue(stored.startsWith("{\"schemaVersion\":" + AgendaSchema.CURRENT_VERSION + ",\"records\":["));
+        assertTrue(stored.contains("\"priority\":\"h\""));
+        assertEquals(2, new AgendaTaskRepository(file.getPath(), StorageOptions.direct()).count());
+    }
+
+    @Test
+    public void legacyJournalRecordsAreReplayedUnchanged() throws IOException {
+        File file = new File(folder.newFolder(), "task.json");
+        Files.writeString(file.toPath(), LEGACY_FILE);
+        Files.writeString(new File(file.getPath() + ".log").toPath(), LEGACY_JOURNAL);
+
+        AgendaTaskRepository repository = new AgendaTaskRepository(file.getPath(), StorageOptions.journaled());
+        List<Character> priorities = repository.findAll().stream().map(AgendaTask::getPriority).toList();
+        assertEquals(List.of('h', 'l'), priorities);
+        repository.close();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void newerVersionIsRejected() throws IOException {
+        File file = new File(folder.newFolder(), "task.json");
+        Files.writeString(file.toPath(), "{\"schemaVersion\":" + (AgendaSchema.CURRENT_VERSION + 1) + ",\"records\":[]}");
+        new AgendaTaskRepository(file.getPath(), StorageOptions.direct());
+    }
+}
@@ -0,0 +1,74 @@
+package com.toki.repository;
+
+import com.toki.model.AgendaTask;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Seeding the shards of users that existed before the data was partitioned.
+ */
+public class AgendaShardsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void onlyUsersExistingAtMigrationGetTheSharedAgendas() throws IOException {
+        File base = new File(folder.newFolder(), "database");
+        base.mkdirs();
+        BenchmarkData.writeTasks(new File(base, "task.json"), BenchmarkData.tasks(2));
+
+        AgendaShards shards = new AgendaShards(base.getPath(), StorageOptions.direct());
+        assertTrue(shards.migrate(() -> List.of("alice")));
+        assertFalse(shards.migrate(() -> List.of("bob")));
+
+        List<AgendaTask> aliceTasks = shards.open("alice").getTaskRepo().findAll();
+        assertEquals(2, aliceTasks.size());
+        assertTrue(shards.open("bob").getTaskRepo().findAll().isEmpty());
+        assertTrue(shards.open("bob").getRegularRepo().findAll().isEmpty());
+        shards.close();
+
+        // A user registered after the upgrade still starts empty on a later run
+        AgendaShards restarted = new AgendaShards(base.getPath(), StorageOptions.direct());
+        assertFalse(restarted.migrate(() -> List.of("alice", "carol")));
+        assertTrue(restarted.open("carol").getTaskRepo().findAll().isEmpty());
+        assertEquals(2, restarted.open("alice").getTaskRepo().findAll().size());
+        restarted.close();
+    }
+
+    @Test
+    public void usernamesDifferingInCaseGetSeparateShards() throws IOException {
+        File base = new File(folder.newFolder(), "database");
+        AgendaShards shards = new AgendaShards(base.getPath(), StorageOptions.direct());
+        String upper = shards.directoryOf("Bob").getName();
+        String lower = shards.directoryOf("bob").getName();
+        assertFalse(upper.equalsIgnoreCase(lower));
+
+        shards.open("Bob").getTaskRepo().save(new AgendaTask(1, "Bob's", "Task", null, null, 'M', null));
+        assertTrue(shards.open("bob").getTaskRepo().findAll().isEmpty());
+        assertEquals("Bob's", shards.open("Bob").getTaskRepo().findByID(1).getTitle());
+        shards.close();
+    }
+
+    @Test
+    public void shardsNamedByEarlierReleasesAreTakenOver() throws IOException {
+        File base = new File(folder.newFolder(), "database");
+        File legacy = new File(base, "users/Alice");
+        legacy.mkdirs();
+        BenchmarkData.writeTasks(new File(legacy, "task.json"), BenchmarkData.tasks(3));
+
+        AgendaShards shards = new AgendaShards(base.getPath(), StorageOptions.direct());
+        assertEquals(3, shards.open("Alice").getTaskRepo().findAll().size());
+        assertFalse(legacy.exists());
+        assertTrue(shards.directoryOf("Alice").isDirectory());
+        assertTrue(shards.open("alice").getTaskRepo().findAll().isEmpty());
+        shards.close();
+    }
+}
@@ -0,0 +1,59 @@
+package com.toki.repository;
+
+import com.toki.model.AgendaTask;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test data shared by the repository benchmarks.
+ */
+final class BenchmarkData {
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Generates tasks with IDs 1..count spread over a few years and 20 groups.
+     */
+    static List<AgendaTask> tasks(int count) {
+        List<AgendaTask> tasks = new ArrayList<>(count);
+        LocalDate start = LocalDate.of(2020, 1, 1);
+        for (int id = 1; id <= count; id++) {
+            tasks.add(new AgendaTask(id, "Task " + id, "Task", "Group " + (id % 20),
+                    start.plusDays(id % 2000), "HML".charAt(id % 3), "Notes " + id));
+        }
+        return tasks;
+    }
+
+    /**
+     * Writes tasks as a compact JSON array in the layout of task.json,
+     * without going through a repository.
+     */
+    static void writeTasks(File file, List<AgendaTask> tasks) throws IOException {
+        StringBuilder json = new StringBuilder("[");
+        for (AgendaTask t : tasks) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append("{\"due\":\"").append(t.getDue())
+                    .append("\",\"priority\":\"").append(t.getPriority())
+                    .append("\",\"ID\":").append(t.getID())
+                    .append(",\"title\":\"").append(t.getTitle())
+                    .append("\",\"type\":\"").append(t.getType())
+                    .append("\",\"group\":\"").append(t.getGroup())
+                    .append("\",\"notes\":\"").append(t.getNotes()).append("\"}");
+        }
+        Files.writeString(file.toPath(), json.append(']'));
+    }
+
+    static File tempFile(String name) throws IOException {
+        File file = new File(Files.createTempDirectory("toki-bench").toFile(), name);
+        file.deleteOnExit();
+        return file;
+    }
+}
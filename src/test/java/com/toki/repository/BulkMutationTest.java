@@ -0,0 +1,47 @@
+package com.toki.repository;
+
+import com.toki.model.AgendaAbstract;
+import com.toki.model.AgendaTask;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Batches of saves and deletes, applied in order in every storage mode.
+ */
+public class BulkMutationTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void batchesAreAppliedInOrderAndPersisted() throws IOException {
+        for (StorageOptions options : List.of(StorageOptions.direct(), StorageOptions.cached(), StorageOptions.journaled())) {
+            File file = new File(folder.newFolder(), "task.json");
+            AgendaTaskRepository repository = new AgendaTaskRepository(file.getPath(), options);
+            repository.saveAll(BenchmarkData.tasks(50));
+            repository.bulk(writer -> {
+                writer.save(new AgendaTask(51, "New", "Task", null, LocalDate.of(2026, 1, 1), 'L', null));
+                writer.deleteByID(51);
+                writer.deleteByID(3);
+                writer.save(new AgendaTask(3, "Again", "Task", null, null, 'H', null));
+                writer.deleteByID(1000);
+            });
+            repository.deleteAllByID(10, 20, 30);
+            repository.close();
+
+            List<AgendaTask> stored = new AgendaTaskRepository(file.getPath(), StorageOptions.direct()).findAll();
+            List<Integer> expected = IntStream.rangeClosed(1, 50).filter(id -> id != 10 && id != 20 && id != 30).boxed().toList();
+            assertEquals(expected, stored.stream().map(AgendaAbstract::getID).sorted().toList());
+            assertEquals("Again", stored.stream().filter(task -> task.getID() == 3).findFirst().orElseThrow().getTitle());
+        }
+    }
+}
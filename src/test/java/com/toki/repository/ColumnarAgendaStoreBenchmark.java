@@ -0,0 +1,76 @@
+package com.toki.repository;
+
+import com.toki.model.AgendaTask;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares 100k tasks held as model objects by a cached repository with the
+ * same tasks held as columns: retained heap, and the time of a one-week
+ * range query. Not part of the default test run; start it with
+ * {@code mvn test -Dtest=ColumnarAgendaStoreBenchmark}.
+ */
+public class ColumnarAgendaStoreBenchmark {
+
+    private static final int RECORDS = 100_000;
+    private static final int QUERIES = 2000;
+
+    @Test
+    public void heapAndRangeQueries() throws IOException {
+        File file = BenchmarkData.tempFile("task.json");
+        BenchmarkData.writeTasks(file, BenchmarkData.tasks(RECORDS));
+        LocalDate from = LocalDate.of(2021, 3, 1);
+        LocalDate to = from.plusDays(6);
+
+        long baseline = usedHeap();
+        AgendaTaskRepository cached = new AgendaTaskRepository(file.getPath(), StorageOptions.cached());
+        List<AgendaTask> expected = cached.findBetween(from, to);
+        long cachedBytes = usedHeap() - baseline;
+        long cachedNanos = timeQueries(cached, from, to);
+        cached.close();
+        cached = null;
+
+        baseline = usedHeap();
+        ColumnarAgendaStore<AgendaTask> columns = new ColumnarAgendaStore<>(
+                new AgendaTaskRepository(file.getPath(), StorageOptions.direct()));
+        List<AgendaTask> actual = columns.findBetween(from, to);
+        long columnarBytes = usedHeap() - baseline;
+        long columnarNanos = timeQueries(columns, from, to);
+
+        System.out.printf("objects: %,12d bytes retained, %,8d ns per week query%n", cachedBytes, cachedNanos);
+        System.out.printf("columns: %,12d bytes retained, %,8d ns per week query%n", columnarBytes, columnarNanos);
+        assertEquals(RECORDS, columns.count());
+        assertEquals(expected.size(), actual.size());
+        assertTrue(actual.stream().allMatch(task -> !task.getDue().isBefore(from) && !task.getDue().isAfter(to)));
+    }
+
+    private static long timeQueries(Agenda_RepositoryInterface<AgendaTask> repository, LocalDate from, LocalDate to) {
+        int found = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < QUERIES; i++) {
+            found += repository.findBetween(from, to).size();
+        }
+        long nanos = (System.nanoTime() - start) / QUERIES;
+        assertTrue(found > 0);
+        return nanos;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
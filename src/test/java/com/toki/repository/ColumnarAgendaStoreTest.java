@@ -0,0 +1,136 @@
+package com.toki.repository;
+
+import com.toki.model.AgendaRegular;
+import com.toki.model.AgendaTask;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static com.toki.repository.TestAgendas.ids;
+import static com.toki.repository.TestAgendas.sortedIds;
+import static org.junit.Assert.*;
+
+/**
+ * The columnar store answers like a cached repository holding the same agendas.
+ */
+public class ColumnarAgendaStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void queriesMatchTheCachedRepositoryAfterPutsAndDeletes() throws IOException {
+        AgendaTaskRepository cached = new AgendaTaskRepository(new File(folder.newFolder(), "task.json").getPath(),
+                StorageOptions.cached());
+        ColumnarAgendaStore<AgendaTask> columns = new ColumnarAgendaStore<>(
+                new AgendaTaskRepository(new File(folder.newFolder(), "task.json").getPath(), StorageOptions.direct()));
+        List<AgendaTask> tasks = BenchmarkData.tasks(300);
+        cached.saveAll(tasks);
+        columns.saveAll(tasks);
+        assertSameAnswers(cached, columns);
+
+        Random random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            int id = 1 + random.nextInt(350);
+            if (random.nextInt(3) == 0) {
+                // Deleting moves the last row into the freed one
+                cached.deleteByID(id);
+                columns.deleteByID(id);
+            } else {
+                LocalDate due = random.nextInt(10) == 0 ? null : LocalDate.of(2020, 1, 1).plusDays(random.nextInt(60));
+                AgendaTask task = new AgendaTask(id, "Task " + id + "." + i, "Task", null, due, "HML".charAt(i % 3), null);
+                cached.save(task);
+                columns.save(task);
+            }
+            if (i % 20 == 0) {
+                assertSameAnswers(cached, columns);
+            }
+        }
+        assertSameAnswers(cached, columns);
+        cached.close();
+    }
+
+    @Test
+    public void weekHoldsEveryDaySortedByTime() throws IOException {
+        ColumnarAgendaStore<AgendaRegular> columns = new ColumnarAgendaStore<>(
+                new AgendaRegularRepository(new File(folder.newFolder(), "regular.json").getPath(), StorageOptions.direct()));
+        for (int id = 1; id <= 50; id++) {
+            LocalTime time = id % 7 == 0 ? null : LocalTime.of(8 + id % 10, 0);
+            columns.save(new AgendaRegular(id, "Kelas " + id, "Regular", null, DayOfWeek.of(1 + id % 7), time, null));
+        }
+        columns.deleteByID(8);
+
+        Map<DayOfWeek, List<AgendaRegular>> week = columns.findWeek();
+        assertEquals(49, week.values().stream().mapToInt(List::size).sum());
+        for (DayOfWeek day : DayOfWeek.values()) {
+            assertEquals(ids(columns.findByDay(day)), ids(week.get(day)));
+            List<AgendaRegular> agendas = week.get(day);
+            for (int i = 1; i < agendas.size(); i++) {
+                LocalTime previous = agendas.get(i - 1).getTime();
+                LocalTime current = agendas.get(i).getTime();
+                assertTrue(previous != null && (current == null || !previous.isAfter(current)) || current == null);
+                assertEquals(day, agendas.get(i).getDay());
+            }
+        }
+    }
+
+    @Test
+    public void journalAppendsOfAnotherWriterAreNoticed() throws IOException {
+        String path = new File(folder.newFolder(), "task.json").getPath();
+        AgendaTaskRepository journaled = new AgendaTaskRepository(path, StorageOptions.journaled());
+        ColumnarAgendaStore<AgendaTask> columns = new ColumnarAgendaStore<>(journaled);
+        columns.saveAll(BenchmarkData.tasks(5));
+        assertEquals(5, columns.count());
+
+        // Only the journal changes; the snapshot is not compacted yet
+        AgendaTaskRepository other = new AgendaTaskRepository(path, StorageOptions.journaled());
+        other.deleteByID(1);
+        other.save(new AgendaTask(6, "Task 6", "Task", null, null, 'H', null));
+
+        assertNull(columns.findByID(1));
+        assertEquals("Task 6", columns.findByID(6).getTitle());
+        other.close();
+        journaled.close();
+    }
+
+    @Test
+    public void columnarAndOffHeapAreOnlyAcceptedInDirectMode() {
+        assertThrows(IllegalStateException.class, () -> StorageOptions.columnar().setJournaled(true));
+        assertThrows(IllegalStateException.class, () -> StorageOptions.columnar().setOffHeap(true));
+        assertThrows(IllegalStateException.class, () -> StorageOptions.cached().setColumnar(true));
+        assertThrows(IllegalStateException.class, () -> StorageOptions.writeBehind().setOffHeap(true));
+        assertThrows(IllegalStateException.class, () -> StorageOptions.offHeap().setCached(true));
+        StorageOptions.columnar().setCached(false);
+    }
+
+    private static void assertSameAnswers(Agenda_RepositoryInterface<AgendaTask> expected,
+                                          Agenda_RepositoryInterface<AgendaTask> actual) {
+        assertEquals(expected.count(), actual.count());
+        assertEquals(sortedIds(expected.findAll()), sortedIds(actual.findAll()));
+        for (int day = -5; day < 70; day += 7) {
+            LocalDate from = LocalDate.of(2020, 1, 1).plusDays(day);
+            assertEquals(sortedIds(expected.findBetween(from, from.plusDays(6))),
+                    sortedIds(actual.findBetween(from, from.plusDays(6))));
+        }
+        assertEquals(ids(expected.findPage(100, 25)), ids(actual.findPage(100, 25)));
+        for (int id = 1; id <= 350; id += 17) {
+            AgendaTask task = expected.findByID(id);
+            AgendaTask other = actual.findByID(id);
+            assertEquals(task == null, other == null);
+            if (task != null) {
+                assertEquals(task.getTitle(), other.getTitle());
+                assertEquals(task.getDue(), other.getDue());
+                assertEquals(task.getPriority(), other.getPriority());
+            }
+        }
+    }
+}
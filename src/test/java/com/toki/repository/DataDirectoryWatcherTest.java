@@ -0,0 +1,55 @@
+package com.toki.repository;
+
+import com.toki.model.AgendaTask;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * External changes reload a watched repository; its own saves do not.
+ */
+public class DataDirectoryWatcherTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void externalWritesAreReloadedAndOwnSavesAreNot() throws IOException, InterruptedException {
+        File file = new File(folder.newFolder(), "task.json");
+        AgendaTaskRepository watched = new AgendaTaskRepository(file.getPath(), StorageOptions.cached());
+        watched.saveAll(BenchmarkData.tasks(10));
+        assertEquals(10, watched.count());
+
+        Semaphore changes = new Semaphore(0);
+        DataDirectoryWatcher watcher = new DataDirectoryWatcher(file.getParentFile().toPath(), changes::release);
+        watcher.register(watched);
+        watcher.start();
+        try {
+            watched.save(new AgendaTask(11, "Own", "Task", null, LocalDate.of(2026, 1, 1), 'M', null));
+            assertFalse(changes.tryAcquire(1, TimeUnit.SECONDS));
+
+            AgendaTaskRepository other = new AgendaTaskRepository(file.getPath(), StorageOptions.direct());
+            other.save(new AgendaTask(12, "External", "Task", null, LocalDate.of(2026, 1, 2), 'H', null));
+            assertTrue(changes.tryAcquire(10, TimeUnit.SECONDS));
+            assertEquals("External", watched.findByID(12).getTitle());
+            assertEquals("Own", watched.findByID(11).getTitle());
+            assertEquals(12, watched.count());
+        } finally {
+            watcher.close();
+        }
+
+        // Unwatched again, so reads check the file stamp themselves
+        new AgendaTaskRepository(file.getPath(), StorageOptions.direct()).deleteByID(1);
+        assertNull(watched.findByID(1));
+        assertEquals(11, watched.count());
+        watched.close();
+    }
+}
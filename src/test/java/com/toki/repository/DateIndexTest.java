@@ -0,0 +1,83 @@
+package com.toki.repository;
+
+import com.toki.model.AgendaAbstract;
+import com.toki.model.AgendaRegular;
+import com.toki.model.AgendaSpecial;
+import com.toki.model.AgendaTask;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+
+import static com.toki.repository.TestAgendas.ids;
+import static com.toki.repository.TestAgendas.sortedIds;
+import static org.junit.Assert.*;
+
+/**
+ * Range bounds of the date index and of findBetween in every storage mode.
+ */
+public class DateIndexTest {
+
+    private static final LocalDate DAY = LocalDate.of(2026, 3, 10);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void rangesIncludeBothBoundsAndFollowChanges() {
+        DateIndex<AgendaAbstract> index = new DateIndex<>();
+        index.put(task(1, DAY.minusDays(1)));
+        index.put(task(2, DAY));
+        index.put(task(3, DAY.plusDays(2)));
+        index.put(task(4, DAY.plusDays(3)));
+        index.put(task(5, null));
+        index.put(new AgendaRegular(6, "Kelas", "Regular", null, DayOfWeek.MONDAY, LocalTime.NOON, null));
+
+        assertEquals(List.of(2, 3), ids(index.between(DAY, DAY.plusDays(2))));
+        assertEquals(List.of(2), ids(index.between(DAY, DAY)));
+        assertEquals(List.of(), ids(index.between(DAY.plusDays(2), DAY)));
+        assertEquals(List.of(1, 2, 3, 4), ids(index.between(DAY.minusYears(1), DAY.plusYears(1))));
+
+        // Ordered by date, then ID; a moved agenda leaves its old day
+        index.put(task(4, DAY));
+        index.put(task(2, DAY.plusDays(5)));
+        index.remove(1);
+        assertEquals(List.of(4, 3), ids(index.between(DAY.minusDays(1), DAY.plusDays(3))));
+        assertEquals(List.of(2), ids(index.between(DAY.plusDays(5), DAY.plusDays(5))));
+        index.clear();
+        assertEquals(List.of(), ids(index.between(DAY.minusYears(1), DAY.plusYears(1))));
+    }
+
+    @Test
+    public void findBetweenAgreesInEveryStorageMode() throws IOException {
+        List<StorageOptions> modes = List.of(StorageOptions.direct(), StorageOptions.cached(),
+                StorageOptions.journaled(), StorageOptions.writeBehind());
+        for (int i = 0; i < modes.size(); i++) {
+            StorageOptions options = modes.get(i);
+            AgendaSpecialRepository specials = new AgendaSpecialRepository(
+                    new File(folder.newFolder(), "special.json").getPath(), options);
+            specials.save(new AgendaSpecial(1, "Before", "Special", null, DAY.minusDays(1), null, null));
+            specials.save(new AgendaSpecial(2, "First", "Special", null, DAY, LocalTime.NOON, null));
+            specials.save(new AgendaSpecial(3, "Last", "Special", null, DAY.plusDays(6), null, null));
+            specials.save(new AgendaSpecial(4, "After", "Special", null, DAY.plusDays(7), null, null));
+            specials.save(new AgendaSpecial(5, "Undated", "Special", null, null, null, null));
+
+            String mode = "storage mode " + i;
+            assertEquals(mode, List.of(2, 3), sortedIds(specials.findBetween(DAY, DAY.plusDays(6))));
+            assertEquals(mode, List.of(), sortedIds(specials.findBetween(DAY.plusDays(6), DAY)));
+            specials.deleteByID(2);
+            assertEquals(mode, List.of(3), sortedIds(specials.findBetween(DAY, DAY.plusDays(6))));
+            specials.close();
+        }
+    }
+
+    private static AgendaTask task(int id, LocalDate due) {
+        return new AgendaTask(id, "Task " + id, "Task", null, due, 'M', null);
+    }
+}
@@ -0,0 +1,87 @@
+package com.toki.repository;
+
+import com.toki.model.AgendaRegular;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+
+import static com.toki.repository.TestAgendas.ids;
+import static org.junit.Assert.*;
+
+/**
+ * Days of the week kept sorted by time through saves, moves and deletes.
+ */
+public class DayOfWeekIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void daysStaySortedByTimeThenId() {
+        DayOfWeekIndex index = new DayOfWeekIndex();
+        index.put(regular(1, DayOfWeek.MONDAY, LocalTime.of(10, 0)));
+        index.put(regular(2, DayOfWeek.MONDAY, null));
+        index.put(regular(3, DayOfWeek.MONDAY, LocalTime.of(8, 0)));
+        index.put(regular(4, DayOfWeek.MONDAY, LocalTime.of(10, 0)));
+        index.put(regular(5, DayOfWeek.FRIDAY, LocalTime.of(9, 0)));
+        index.put(regular(6, null, LocalTime.of(9, 0)));
+
+        assertEquals(List.of(3, 1, 4, 2), ids(index.get(DayOfWeek.MONDAY)));
+        assertEquals(List.of(5), ids(index.get(DayOfWeek.FRIDAY)));
+
+        // Moving to another day and time leaves the old position
+        index.put(regular(1, DayOfWeek.FRIDAY, LocalTime.of(7, 0)));
+        index.put(regular(4, DayOfWeek.MONDAY, LocalTime.of(6, 0)));
+        index.remove(3);
+        index.remove(99);
+        Map<DayOfWeek, List<AgendaRegular>> week = index.week();
+        assertEquals(List.of(4, 2), ids(week.get(DayOfWeek.MONDAY)));
+        assertEquals(List.of(1, 5), ids(week.get(DayOfWeek.FRIDAY)));
+        assertEquals(List.of(), ids(week.get(DayOfWeek.SUNDAY)));
+        assertEquals(DayOfWeek.MONDAY, week.keySet().iterator().next());
+
+        // Copies, not views
+        week.get(DayOfWeek.MONDAY).clear();
+        index.get(DayOfWeek.FRIDAY).clear();
+        assertEquals(2, index.get(DayOfWeek.FRIDAY).size());
+        assertEquals(2, index.week().get(DayOfWeek.MONDAY).size());
+    }
+
+    @Test
+    public void repositoryAnswersMatchInCachedAndDirectMode() throws IOException {
+        AgendaRegularRepository cached = new AgendaRegularRepository(
+                new File(folder.newFolder(), "regular.json").getPath(), StorageOptions.cached());
+        AgendaRegularRepository direct = new AgendaRegularRepository(
+                new File(folder.newFolder(), "regular.json").getPath(), StorageOptions.direct());
+        for (int id = 1; id <= 40; id++) {
+            AgendaRegular regular = regular(id, DayOfWeek.of(1 + id * 3 % 7), id % 5 == 0 ? null : LocalTime.of(7 + id % 9, 0));
+            cached.save(regular);
+            direct.save(regular);
+        }
+        cached.deleteByID(9);
+        direct.deleteByID(9);
+        cached.save(regular(10, DayOfWeek.SUNDAY, LocalTime.of(6, 0)));
+        direct.save(regular(10, DayOfWeek.SUNDAY, LocalTime.of(6, 0)));
+
+        Map<DayOfWeek, List<AgendaRegular>> week = cached.findWeek();
+        for (DayOfWeek day : DayOfWeek.values()) {
+            List<AgendaRegular> expected = direct.findByDay(day);
+            assertEquals(ids(expected), ids(cached.findByDay(day)));
+            assertEquals(ids(expected), ids(week.get(day)));
+            assertEquals(ids(expected), ids(direct.findWeek().get(day)));
+        }
+        assertEquals(10, cached.findByDay(DayOfWeek.SUNDAY).get(0).getID());
+        cached.close();
+    }
+
+    private static AgendaRegular regular(int id, DayOfWeek day, LocalTime time) {
+        return new AgendaRegular(id, "Kelas " + id, "Regular", null, day, time, null);
+    }
+}
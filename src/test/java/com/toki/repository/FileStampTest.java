@@ -0,0 +1,53 @@
+package com.toki.repository;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+
+import static org.junit.Assert.*;
+
+/**
+ * Change detection without help from the file key.
+ */
+public class FileStampTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void sameSizeRewriteInPlaceWithinOneTickIsNoticed() throws IOException {
+        File file = new File(folder.newFolder(), "task.json");
+        Files.writeString(file.toPath(), "Draft 1");
+        FileStamp stamp = FileStamp.of(file);
+        assertNotEquals(FileStamp.NO_CHECKSUM, stamp.checksum());
+
+        // Written in place, so the file key stays the same, and the clock has not moved on
+        FileTime modified = Files.getLastModifiedTime(file.toPath());
+        Files.writeString(file.toPath(), "Final 1", StandardOpenOption.TRUNCATE_EXISTING);
+        Files.setLastModifiedTime(file.toPath(), modified);
+        assertNotEquals(stamp, stamp.current(file));
+        assertEquals(FileStamp.of(file), FileStamp.of(file).current(file));
+    }
+
+    @Test
+    public void settledFilesAreComparedWithoutReadingThem() throws IOException {
+        File file = new File(folder.newFolder(), "task.json");
+        Files.writeString(file.toPath(), "Final 1");
+        Files.setLastModifiedTime(file.toPath(), FileTime.from(Instant.now().minusSeconds(60)));
+
+        FileStamp stamp = FileStamp.of(file);
+        assertEquals(FileStamp.NO_CHECKSUM, stamp.checksum());
+        assertEquals(stamp, stamp.current(file));
+        assertEquals(stamp, new FileStamp(stamp.modified(), stamp.length(), stamp.fileKeys(), 42).settled());
+
+        Files.writeString(file.toPath(), "Final 22");
+        assertNotEquals(stamp, stamp.current(file));
+    }
+}
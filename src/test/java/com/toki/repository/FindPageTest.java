@@ -0,0 +1,99 @@
+package com.toki.repository;
+
+import com.toki.model.AgendaAbstract;
+import com.toki.model.AgendaRegular;
+import com.toki.model.AgendaSpecial;
+import com.toki.model.AgendaTask;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static com.toki.repository.TestAgendas.ids;
+import static org.junit.Assert.*;
+
+/**
+ * Pages come in ascending ID order after the cursor in every storage mode.
+ */
+public class FindPageTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void pagesWalkEveryIdInOrderInEveryStorageMode() throws IOException {
+        // Every third ID, saved in random order
+        List<Integer> ids = new ArrayList<>(IntStream.rangeClosed(1, 100).map(i -> i * 3).boxed().toList());
+        Collections.shuffle(ids, new Random(3));
+        List<StorageOptions> modes = List.of(StorageOptions.direct(), StorageOptions.cached(),
+                StorageOptions.journaled(), StorageOptions.writeBehind());
+        for (int i = 0; i < modes.size(); i++) {
+            String mode = "storage mode " + i;
+            AgendaTaskRepository tasks = new AgendaTaskRepository(
+                    new File(folder.newFolder(), "task.json").getPath(), modes.get(i));
+            for (int id : ids) {
+                tasks.save(task(id));
+            }
+            tasks.deleteByID(30);
+            tasks.save(task(31));
+
+            List<Integer> expected = new ArrayList<>(ids);
+            expected.remove(Integer.valueOf(30));
+            expected.add(31);
+            Collections.sort(expected);
+            assertEquals(mode, expected, walk(tasks, 7));
+
+            // The cursor need not be a stored ID
+            assertEquals(mode, List.of(31, 33, 36), ids(tasks.findPage(29, 3)));
+            assertEquals(mode, List.of(3, 6), ids(tasks.findPage(-5, 2)));
+            assertEquals(mode, List.of(), ids(tasks.findPage(300, 10)));
+            assertEquals(mode, List.of(), ids(tasks.findPage(0, 0)));
+            tasks.close();
+        }
+    }
+
+    @Test
+    public void unifiedViewsPageOnlyTheirOwnType() throws IOException {
+        UnifiedAgendaRepository store = new UnifiedAgendaRepository(
+                new File(folder.newFolder(), "agendas.json").getPath(), StorageOptions.cached());
+        for (int id = 1; id <= 60; id++) {
+            switch (id % 3) {
+                case 0 -> store.save(task(id));
+                case 1 -> store.save(new AgendaRegular(id, "Kelas", "Regular", null, DayOfWeek.MONDAY, LocalTime.NOON, null));
+                default -> store.save(new AgendaSpecial(id, "Acara", "Special", null, LocalDate.of(2026, 1, 1), null, null));
+            }
+        }
+        UnifiedAgendaView<AgendaTask> tasks = new UnifiedAgendaView<>(store, AgendaTask.class);
+
+        assertEquals(List.of(3, 6, 9, 12), ids(tasks.findPage(0, 4)));
+        assertEquals(List.of(15, 18, 21, 24), ids(tasks.findPage(12, 4)));
+        assertEquals(List.of(57, 60), ids(tasks.findPage(55, 4)));
+        assertEquals(IntStream.rangeClosed(1, 20).map(i -> i * 3).boxed().toList(), walk(tasks, 6));
+        assertEquals(IntStream.rangeClosed(1, 60).boxed().toList(), walk(store, 7));
+    }
+
+    private static List<Integer> walk(Agenda_RepositoryInterface<? extends AgendaAbstract> repository, int limit) {
+        List<Integer> seen = new ArrayList<>();
+        List<? extends AgendaAbstract> page = repository.findPage(0, limit);
+        while (!page.isEmpty()) {
+            assertTrue(page.size() <= limit);
+            seen.addAll(ids(page));
+            page = repository.findPage(page.get(page.size() - 1).getID(), limit);
+        }
+        return seen;
+    }
+
+    private static AgendaTask task(int id) {
+        return new AgendaTask(id, "Task " + id, "Task", null, LocalDate.of(2026, 1, 1).plusDays(id), 'M', null);
+    }
+}
@@ -0,0 +1,127 @@
+package com.toki.repository;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.toki.model.AgendaTask;
+import com.toki.repository.json.GsonFactory;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares ID lookups and upserts through the ID index with the path they
+ * took before it, parsing the whole file per call, at 100k records.
+ * Not part of the default test run; start it with
+ * {@code mvn test -Dtest=IdIndexBenchmark}.
+ */
+public class IdIndexBenchmark {
+
+    private static final int RECORDS = 100_000;
+    private static final int LOOKUPS = 1_000;
+    // Each call of the old path parses 100k records, so it runs fewer times
+    private static final int FULL_PARSES = 5;
+    private static final Type TASK_LIST = new TypeToken<List<AgendaTask>>() {}.getType();
+
+    private File dataFile;
+    private File legacyFile;
+    private List<AgendaTask> tasks;
+
+    @Before
+    public void setUp() throws IOException {
+        dataFile = BenchmarkData.tempFile("task.json");
+        legacyFile = BenchmarkData.tempFile("task.json");
+        tasks = BenchmarkData.tasks(RECORDS);
+        BenchmarkData.writeTasks(dataFile, tasks);
+        BenchmarkData.writeTasks(legacyFile, tasks);
+    }
+
+    @Test
+    public void lookupByID() throws IOException {
+        int[] ids = new Random(42).ints(LOOKUPS, 1, RECORDS + 1).toArray();
+        Gson gson = GsonFactory.compact();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < FULL_PARSES; i++) {
+            int id = ids[i];
+            AgendaTask parsed = readAll(gson).stream().filter(t -> t.getID() == id).findFirst().orElse(null);
+            assertNotNull(parsed);
+        }
+        long parseNanos = System.nanoTime() - start;
+
+        AgendaTaskRepository cached = new AgendaTaskRepository(dataFile.getPath(), StorageOptions.cached());
+        cached.findAll(); // load once
+        start = System.nanoTime();
+        for (int id : ids) {
+            assertEquals(id, cached.findByID(id).getID());
+        }
+        long indexedNanos = System.nanoTime() - start;
+
+        System.out.printf("findByID over %d records: full parse %.1f us/op (x%d), ID index %.3f us/op (x%d)%n",
+                RECORDS, parseNanos / 1000.0 / FULL_PARSES, FULL_PARSES, indexedNanos / 1000.0 / LOOKUPS, LOOKUPS);
+        assertTrue(indexedNanos / LOOKUPS < parseNanos / FULL_PARSES);
+    }
+
+    @Test
+    public void upsert() throws IOException {
+        int[] ids = new Random(7).ints(LOOKUPS, 1, RECORDS + 1).toArray();
+        Gson gson = GsonFactory.compact();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < FULL_PARSES; i++) {
+            int id = ids[i];
+            List<AgendaTask> list = readAll(gson);
+            list.removeIf(t -> t.getID() == id);
+            list.add(new AgendaTask(id, "Updated", "Task", null, LocalDate.now(), 'H', null));
+            try (Writer writer = Files.newBufferedWriter(legacyFile.toPath(), StandardCharsets.UTF_8)) {
+                gson.toJson(list, writer);
+            }
+        }
+        long parseNanos = System.nanoTime() - start;
+
+        AgendaTaskRepository cached = new AgendaTaskRepository(dataFile.getPath(), StorageOptions.cached());
+        cached.findAll(); // load once
+        start = System.nanoTime();
+        for (int i = 0; i < FULL_PARSES; i++) {
+            cached.save(new AgendaTask(ids[i], "Updated", "Task", null, LocalDate.now(), 'H', null));
+        }
+        long indexedNanos = System.nanoTime() - start;
+        cached.close();
+
+        System.out.printf("save over %d records: full parse and rewrite %.1f us/op, ID index and rewrite %.1f us/op%n",
+                RECORDS, parseNanos / 1000.0 / FULL_PARSES, indexedNanos / 1000.0 / FULL_PARSES);
+        assertTrue(indexedNanos < parseNanos);
+    }
+
+    /**
+     * Reads every task of the legacy file, as findByID and save did before the index.
+     */
+    private List<AgendaTask> readAll(Gson gson) throws IOException {
+        try (Reader reader = Files.newBufferedReader(legacyFile.toPath(), StandardCharsets.UTF_8)) {
+            return gson.fromJson(reader, TASK_LIST);
+        }
+    }
+
+    @Test
+    public void indexSurvivesDeletes() {
+        AgendaTaskRepository cached = new AgendaTaskRepository(dataFile.getPath(), StorageOptions.cached());
+        for (int id = 1; id <= RECORDS; id += 10_000) {
+            cached.deleteByID(id);
+        }
+        assertNull(cached.findByID(1));
+        assertEquals(2, cached.findByID(2).getID());
+        assertEquals(RECORDS, cached.findByID(RECORDS).getID());
+        assertEquals(RECORDS - RECORDS / 10_000, cached.findAll().size());
+    }
+}
@@ -0,0 +1,50 @@
+package com.toki.repository;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Block reservation, prefetching and giving back unused IDs.
+ */
+public class IdSequenceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void idsAreConsecutiveAcrossPrefetchedBlocks() throws IOException {
+        File file = new File(folder.newFolder(), "agenda.seq");
+        IdSequence sequence = new IdSequence(file.getPath(), 8, () -> 5);
+        assertArrayEquals(IntStream.range(5, 29).toArray(), IntStream.range(0, 24).map(i -> sequence.next()).toArray());
+        sequence.close();
+        assertEquals("29", Files.readString(file.toPath()).trim());
+
+        IdSequence reopened = new IdSequence(file.getPath(), 8, () -> 1);
+        assertEquals(29, reopened.next());
+        reopened.close();
+    }
+
+    @Test
+    public void prefetchReservesTheFirstBlockInTheBackground() throws Exception {
+        File file = new File(folder.newFolder(), "agenda.seq");
+        IdSequence sequence = new IdSequence(file.getPath(), 8, () -> 1);
+        sequence.prefetch();
+        for (int i = 0; i < 500 && file.length() == 0; i++) {
+            Thread.sleep(10);
+        }
+        // Another process reserving meanwhile gets the IDs after the prefetched block
+        IdSequence other = new IdSequence(file.getPath(), 8, () -> 1);
+        assertEquals(9, other.next());
+        assertEquals(1, sequence.next());
+        other.close();
+        sequence.close();
+    }
+}
@@ -0,0 +1,57 @@
+package com.toki.repository;
+
+import com.toki.model.AgendaTask;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * A record damaged on disk is skipped on its own and found by the scan.
+ */
+public class IntegrityScannerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void damagedRecordIsSkippedAndReported() throws IOException {
+        File file = new File(folder.newFolder(), "task.json");
+        AgendaTaskRepository repository = new AgendaTaskRepository(file.getPath(), StorageOptions.direct());
+        BenchmarkData.tasks(5).forEach(repository::save);
+
+        String stored = Files.readString(file.toPath());
+        Files.writeString(file.toPath(), stored.replace("\"title\":\"Task 3\"", "\"title\":\"Tusk 3\""));
+
+        List<Integer> ids = new AgendaTaskRepository(file.getPath(), StorageOptions.direct()).findAll().stream()
+                .map(AgendaTask::getID).toList();
+        assertEquals(List.of(1, 2, 4, 5), ids);
+
+        List<IntegrityScanner.FileReport> reports = IntegrityScanner.scan(file.getParentFile().toPath());
+        IntegrityScanner.FileReport report = reports.stream()
+                .filter(r -> r.file().getFileName().toString().equals("task.json")).findFirst().orElseThrow();
+        assertEquals(4, report.records());
+        assertEquals(1, report.damaged().size());
+        assertTrue(report.damaged().get(0).contains("(ID 3)"));
+    }
+
+    @Test
+    public void truncatedFileIsReported() throws IOException {
+        File file = new File(folder.newFolder(), "task.json");
+        AgendaTaskRepository repository = new AgendaTaskRepository(file.getPath(), StorageOptions.direct());
+        BenchmarkData.tasks(3).forEach(repository::save);
+        List<String> lines = Files.readAllLines(file.toPath());
+        Files.write(file.toPath(), lines.subList(0, lines.size() - 1));
+
+        IntegrityScanner.FileReport report = IntegrityScanner.scanFile(file.toPath());
+        assertEquals(3, report.records());
+        assertEquals(List.of("file ends after line 4 without the closing " + AgendaRecordReader.FOOTER),
+                report.damaged());
+    }
+}
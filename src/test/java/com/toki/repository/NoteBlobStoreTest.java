@@ -0,0 +1,117 @@
+package com.toki.repository;
+
+import com.google.gson.Gson;
+import com.toki.model.AgendaTask;
+import com.toki.repository.json.GsonFactory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+
+import static org.junit.Assert.*;
+
+/**
+ * Long notes kept out of the data file in the note store.
+ */
+public class NoteBlobStoreTest {
+
+    private static final String LONG_NOTES = "Bab 1–3, ".repeat(20);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void notesRoundTripAndEqualNotesAreStoredOnce() throws IOException {
+        File file = new File(folder.newFolder(), "task.json.notes");
+        NoteBlobStore store = new NoteBlobStore(file, NoteBlobStore.DEFAULT_INLINE_LIMIT);
+        assertFalse(store.shouldStore("short"));
+        assertTrue(store.shouldStore(LONG_NOTES));
+
+        String ref = store.put(LONG_NOTES);
+        long size = file.length();
+        assertEquals(ref, store.put(LONG_NOTES));
+        assertEquals(size, file.length());
+        assertNotEquals(ref, store.put(LONG_NOTES + "!"));
+        store.close();
+
+        NoteBlobStore reopened = new NoteBlobStore(file, NoteBlobStore.DEFAULT_INLINE_LIMIT);
+        assertEquals(LONG_NOTES, reopened.get(ref));
+        assertFalse(reopened.contains("00" + ref.substring(2)));
+        assertTrue(NoteBlobStore.verify(file).isEmpty());
+        reopened.close();
+    }
+
+    @Test
+    public void serializingNeverWritesToTheStore() throws IOException {
+        File file = new File(folder.newFolder(), "task.json.notes");
+        NoteBlobStore store = new NoteBlobStore(file, NoteBlobStore.DEFAULT_INLINE_LIMIT);
+        Gson gson = GsonFactory.compact(store);
+        AgendaTask task = new AgendaTask(1, "Ujian", "Task", null, LocalDate.of(2026, 3, 1), 'H', LONG_NOTES);
+
+        String json = gson.toJson(task);
+        assertTrue(json.contains("\"notes\":"));
+        assertFalse(file.exists());
+        assertNull(task.getNotesRef());
+
+        task.setNotesRef(store.put(LONG_NOTES), store::get);
+        json = gson.toJson(task);
+        assertTrue(json.contains("\"notesRef\":\"" + task.getNotesRef() + "\""));
+        assertEquals(LONG_NOTES, gson.fromJson(json, AgendaTask.class).getNotes());
+        store.close();
+    }
+
+    @Test
+    public void repositoryStoresLongNotesOnSave() throws IOException {
+        File file = new File(folder.newFolder(), "task.json");
+        AgendaTaskRepository repository = new AgendaTaskRepository(file.getPath(), StorageOptions.cached());
+        AgendaTask task = new AgendaTask(1, "Ujian", "Task", null, LocalDate.of(2026, 3, 1), 'H', LONG_NOTES);
+        repository.save(task);
+        repository.save(new AgendaTask(2, "Copy", "Task", null, null, 'L', LONG_NOTES));
+        repository.close();
+
+        assertNotNull(task.getNotesRef());
+        assertEquals(LONG_NOTES, task.getNotes());
+        assertFalse(Files.readString(file.toPath()).contains("Bab"));
+        AgendaTaskRepository reopened = new AgendaTaskRepository(file.getPath(), StorageOptions.direct());
+        assertEquals(LONG_NOTES, reopened.findByID(2).getNotes());
+        assertEquals(reopened.findByID(1).getNotesRef(), reopened.findByID(2).getNotesRef());
+    }
+
+    @Test
+    public void compactionSweepsNotesNoRecordRefersTo() throws IOException, InterruptedException {
+        File file = new File(folder.newFolder(), "task.json");
+        File notesFile = new File(file.getPath() + ".notes");
+        StorageOptions options = StorageOptions.journaled();
+        AgendaTaskRepository repository = new AgendaTaskRepository(file.getPath(), options);
+        for (int id = 1; id <= 3; id++) {
+            repository.save(new AgendaTask(id, "Ujian " + id, "Task", null, null, 'H', LONG_NOTES + id));
+        }
+        // Has read the file that the sweep replaces, like another process would
+        NoteBlobStore other = new NoteBlobStore(notesFile, NoteBlobStore.DEFAULT_INLINE_LIMIT);
+        assertTrue(other.contains(repository.findByID(3).getNotesRef()));
+        long size = notesFile.length();
+
+        repository.deleteByID(2);
+        options.setCompactionThreshold(0);
+        repository.deleteByID(3);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (notesFile.length() >= size && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(notesFile.length() < size);
+        assertEquals(LONG_NOTES + 1, repository.findByID(1).getNotes());
+
+        String ref = other.put(LONG_NOTES + 4);
+        other.close();
+        NoteBlobStore reopened = new NoteBlobStore(notesFile, NoteBlobStore.DEFAULT_INLINE_LIMIT);
+        assertEquals(LONG_NOTES + 4, reopened.get(ref));
+        assertEquals(LONG_NOTES + 1, reopened.get(repository.findByID(1).getNotesRef()));
+        assertTrue(NoteBlobStore.verify(notesFile).isEmpty());
+        reopened.close();
+        repository.close();
+    }
+}
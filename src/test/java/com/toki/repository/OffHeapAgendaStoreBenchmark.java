@@ -0,0 +1,101 @@
+package com.toki.repository;
+
+import com.toki.model.AgendaTask;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Measures the GC impact of 500k tasks held on the heap by a cached
+ * repository and held off the heap by an {@link OffHeapAgendaStore}: the
+ * retained heap, the duration of a full collection, and the collection time
+ * spent during a workload of range queries and lookups by ID.
+ * Not part of the default test run; start it with
+ * {@code mvn test -Dtest=OffHeapAgendaStoreBenchmark}.
+ */
+public class OffHeapAgendaStoreBenchmark {
+
+    private static final int RECORDS = 500_000;
+    private static final int QUERIES = 500;
+    private static final int LOOKUPS = 50_000;
+
+    @Test
+    public void gcImpact() throws IOException {
+        File file = BenchmarkData.tempFile("task.json");
+        BenchmarkData.writeTasks(file, BenchmarkData.tasks(RECORDS));
+
+        AgendaTaskRepository cached = new AgendaTaskRepository(file.getPath(), StorageOptions.cached());
+        measure("on-heap ", cached);
+        cached.close();
+        cached = null;
+
+        measure("off-heap", OffHeapAgendaStore.forTask(new AgendaTaskRepository(file.getPath(), StorageOptions.direct())));
+    }
+
+    private static void measure(String name, Agenda_RepositoryInterface<AgendaTask> repository) {
+        long baseline = usedHeap();
+        assertEquals(RECORDS, repository.count());
+        long retained = usedHeap() - baseline;
+
+        long fullGcMillis = gcMillis();
+        System.gc();
+        fullGcMillis = gcMillis() - fullGcMillis;
+
+        long workloadGcMillis = gcMillis();
+        long workloadGcCount = gcCount();
+        long start = System.nanoTime();
+        Random random = new Random(42);
+        LocalDate first = LocalDate.of(2020, 1, 1);
+        int found = 0;
+        for (int i = 0; i < QUERIES; i++) {
+            LocalDate from = first.plusDays(random.nextInt(2000));
+            found += repository.findBetween(from, from.plusDays(6)).size();
+        }
+        for (int i = 0; i < LOOKUPS; i++) {
+            found += repository.findByID(1 + random.nextInt(RECORDS)) != null ? 1 : 0;
+        }
+        long workloadMillis = (System.nanoTime() - start) / 1_000_000;
+        workloadGcMillis = gcMillis() - workloadGcMillis;
+        workloadGcCount = gcCount() - workloadGcCount;
+
+        System.out.printf("%s: %,12d bytes retained, full GC %4d ms, workload %5d ms with %3d GCs taking %4d ms%n",
+                name, retained, fullGcMillis, workloadMillis, workloadGcCount, workloadGcMillis);
+        assertTrue(found > LOOKUPS);
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, collector.getCollectionTime());
+        }
+        return millis;
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
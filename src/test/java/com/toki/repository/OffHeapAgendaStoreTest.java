@@ -0,0 +1,101 @@
+package com.toki.repository;
+
+import com.toki.model.AgendaTask;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+
+import static com.toki.repository.TestAgendas.ids;
+import static com.toki.repository.TestAgendas.sortedIds;
+import static org.junit.Assert.*;
+
+/**
+ * The off-heap store answers like a cached repository holding the same agendas.
+ */
+public class OffHeapAgendaStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void queriesMatchTheCachedRepositoryAfterPutsAndDeletes() throws IOException {
+        AgendaTaskRepository cached = new AgendaTaskRepository(new File(folder.newFolder(), "task.json").getPath(),
+                StorageOptions.cached());
+        // No hot agendas, so every lookup decodes its record
+        OffHeapAgendaStore<AgendaTask> offHeap = new OffHeapAgendaStore<>(
+                new AgendaTaskRepository(new File(folder.newFolder(), "task.json").getPath(), StorageOptions.direct()),
+                AgendaBinaryCodec.TASK, 0);
+        List<AgendaTask> tasks = BenchmarkData.tasks(300);
+        cached.saveAll(tasks);
+        offHeap.saveAll(tasks);
+        assertSameAnswers(cached, offHeap);
+
+        Random random = new Random(7);
+        for (int i = 0; i < 200; i++) {
+            int id = 1 + random.nextInt(350);
+            if (random.nextInt(3) == 0) {
+                // Deleting moves the last record into the freed slot
+                cached.deleteByID(id);
+                offHeap.deleteByID(id);
+            } else {
+                LocalDate due = random.nextInt(10) == 0 ? null : LocalDate.of(2020, 1, 1).plusDays(random.nextInt(60));
+                AgendaTask task = new AgendaTask(id, "Task " + id + "." + i, "Task", "Group " + i % 4, due,
+                        "HML".charAt(i % 3), "Notes " + i);
+                cached.save(task);
+                offHeap.save(task);
+            }
+            if (i % 20 == 0) {
+                assertSameAnswers(cached, offHeap);
+            }
+        }
+        assertSameAnswers(cached, offHeap);
+        cached.close();
+    }
+
+    @Test
+    public void rangeBoundsAreInclusive() throws IOException {
+        OffHeapAgendaStore<AgendaTask> offHeap = OffHeapAgendaStore.forTask(
+                new AgendaTaskRepository(new File(folder.newFolder(), "task.json").getPath(), StorageOptions.direct()));
+        LocalDate day = LocalDate.of(2026, 3, 10);
+        offHeap.save(new AgendaTask(1, "Before", "Task", null, day.minusDays(1), 'L', null));
+        offHeap.save(new AgendaTask(2, "First", "Task", null, day, 'L', null));
+        offHeap.save(new AgendaTask(3, "Last", "Task", null, day.plusDays(2), 'L', null));
+        offHeap.save(new AgendaTask(4, "After", "Task", null, day.plusDays(3), 'L', null));
+        offHeap.save(new AgendaTask(5, "Undated", "Task", null, null, 'L', null));
+
+        assertEquals(List.of(2, 3), ids(offHeap.findBetween(day, day.plusDays(2))));
+        assertEquals(List.of(2), ids(offHeap.findBetween(day, day)));
+        assertEquals(List.of(), ids(offHeap.findBetween(day.plusDays(2), day)));
+        assertEquals(List.of(), ids(offHeap.findBetween(LocalDate.MIN, day.minusDays(2))));
+    }
+
+    private static void assertSameAnswers(Agenda_RepositoryInterface<AgendaTask> expected,
+                                          Agenda_RepositoryInterface<AgendaTask> actual) {
+        assertEquals(expected.count(), actual.count());
+        assertEquals(sortedIds(expected.findAll()), sortedIds(actual.findAll()));
+        for (int day = -5; day < 70; day += 7) {
+            LocalDate from = LocalDate.of(2020, 1, 1).plusDays(day);
+            assertEquals(sortedIds(expected.findBetween(from, from.plusDays(6))),
+                    sortedIds(actual.findBetween(from, from.plusDays(6))));
+        }
+        assertEquals(ids(expected.findPage(100, 25)), ids(actual.findPage(100, 25)));
+        for (int id = 1; id <= 350; id += 13) {
+            AgendaTask task = expected.findByID(id);
+            AgendaTask other = actual.findByID(id);
+            assertEquals(task == null, other == null);
+            if (task != null) {
+                assertEquals(task.getTitle(), other.getTitle());
+                assertEquals(task.getGroup(), other.getGroup());
+                assertEquals(task.getDue(), other.getDue());
+                assertEquals(task.getPriority(), other.getPriority());
+                assertEquals(task.getNotes(), other.getNotes());
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.toki.repository;
+
+import com.toki.model.AgendaTask;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Hammers one data file from several threads through two repository
+ * instances (standing in for two processes) in every storage mode, while
+ * readers query concurrently, and checks that no update is lost.
+ */
+public class RepositoryConcurrencyStressTest {
+
+    private static final int WRITERS_PER_REPOSITORY = 4;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void directModeLosesNoUpdates() throws Exception {
+        stress(StorageOptions.direct(), 15);
+    }
+
+    @Test
+    public void cachedModeLosesNoUpdates() throws Exception {
+        stress(StorageOptions.cached(), 60);
+    }
+
+    @Test
+    public void journaledModeLosesNoUpdates() throws Exception {
+        StorageOptions options = StorageOptions.journaled();
+        options.setCompactionThreshold(4 * 1024); // Compact repeatedly while writers are busy
+        stress(options, 100);
+    }
+
+    @Test
+    public void writeBehindModeLosesNoUpdates() throws Exception {
+        stress(StorageOptions.writeBehind(), 500);
+    }
+
+    @Test
+    public void sameSizeRewritesWithinOneClockTickAreNoticed() throws IOException {
+        File file = new File(folder.newFolder(), "task.json");
+        AgendaTaskRepository first = new AgendaTaskRepository(file.getPath(), StorageOptions.cached());
+        AgendaTaskRepository second = new AgendaTaskRepository(file.getPath(), StorageOptions.cached());
+        first.save(task(1, "Draft 1"));
+        assertEquals("Draft 1", second.findByID(1).getTitle());
+
+        // Same length, and the clock has not moved on since the last write
+        FileTime modified = Files.getLastModifiedTime(file.toPath());
+        first.save(task(1, "Final 1"));
+        Files.setLastModifiedTime(file.toPath(), modified);
+        assertEquals("Final 1", second.findByID(1).getTitle());
+        first.close();
+        second.close();
+    }
+
+    /**
+     * Every writer owns a range of IDs: it saves each one, updates it, and
+     * deletes every third one again. The expected end state is therefore known
+     * exactly, whatever the interleaving.
+     */
+    private void stress(StorageOptions options, int idsPerWriter) throws Exception {
+        File file = new File(folder.newFolder(), "task.json");
+        List<AgendaTaskRepository> repositories = List.of(
+                new AgendaTaskRepository(file.getPath(), options),
+                new AgendaTaskRepository(file.getPath(), options));
+
+        int writers = repositories.size() * WRITERS_PER_REPOSITORY;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        List<Thread> threads = new ArrayList<>();
+
+        for (int w = 0; w < writers; w++) {
+            AgendaTaskRepository repository = repositories.get(w % repositories.size());
+            int firstId = 1 + w * idsPerWriter;
+            threads.add(Thread.ofPlatform().start(() -> run(failures, start, () -> {
+                for (int id = firstId; id < firstId + idsPerWriter; id++) {
+                    repository.save(task(id, "Draft " + id));
+                    repository.save(task(id, "Final " + id));
+                    if (id % 3 == 0) {
+                        repository.deleteByID(id);
+                    }
+                }
+            })));
+        }
+        for (AgendaTaskRepository repository : repositories) {
+            threads.add(Thread.ofPlatform().start(() -> run(failures, start, () -> {
+                while (writing.get()) {
+                    for (AgendaTask task : repository.findAll()) {
+                        assertNotNull(task.getTitle());
+                    }
+                    repository.findBetween(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 12, 31));
+                }
+            })));
+        }
+
+        start.countDown();
+        for (Thread thread : threads.subList(0, writers)) {
+            thread.join();
+        }
+        writing.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (!failures.isEmpty()) {
+            throw new AssertionError("Worker failed", failures.peek());
+        }
+        repositories.forEach(Agenda_RepositoryAbstract::close);
+
+        // A fresh direct-mode instance folds any journal and reads only what reached the disk
+        Map<Integer, AgendaTask> stored = new AgendaTaskRepository(file.getPath(), StorageOptions.direct())
+                .findAll().stream()
+                .collect(Collectors.toMap(AgendaTask::getID, Function.identity()));
+        int lastId = writers * idsPerWriter;
+        for (int id = 1; id <= lastId; id++) {
+            if (id % 3 == 0) {
+                assertFalse("Deleted ID " + id + " is back", stored.containsKey(id));
+            } else {
+                assertTrue("Lost ID " + id, stored.containsKey(id));
+                assertEquals("Final " + id, stored.get(id).getTitle());
+            }
+        }
+        assertEquals(lastId - lastId / 3, stored.size());
+    }
+
+    private interface Work {
+        void run() throws IOException;
+    }
+
+    private static void run(ConcurrentLinkedQueue<Throwable> failures, CountDownLatch start, Work work) {
+        try {
+            start.await();
+            work.run();
+        } catch (Throwable e) {
+            failures.add(e);
+        }
+    }
+
+    private static AgendaTask task(int id, String title) {
+        return new AgendaTask(id, title, "Task", "Stress", LocalDate.of(2024, 1, 1).plusDays(id % 366), 'M', null);
+    }
+}
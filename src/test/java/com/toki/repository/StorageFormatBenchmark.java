@@ -0,0 +1,50 @@
+package com.toki.repository;
+
+import com.toki.model.AgendaTask;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Measures file size and full load time of 100k tasks in every StorageFormat.
+ * Not part of the default test run; start it with
+ * {@code mvn test -Dtest=StorageFormatBenchmark}.
+ */
+public class StorageFormatBenchmark {
+
+    private static final int RECORDS = 100_000;
+    private static final int LOADS = 5;
+
+    @Test
+    public void sizeAndLoadTime() throws IOException {
+        List<AgendaTask> tasks = BenchmarkData.tasks(RECORDS);
+
+        for (StorageFormat format : StorageFormat.values()) {
+            File file = BenchmarkData.tempFile("task-" + format + ".json");
+            BenchmarkData.writeTasks(file, tasks);
+
+            // One save in cached mode rewrites the whole file in the requested format
+            StorageOptions options = StorageOptions.cached();
+            options.setFormat(format);
+            new AgendaTaskRepository(file.getPath(), options)
+                    .save(new AgendaTask(RECORDS, "Last", "Task", null, LocalDate.now(), 'L', null));
+
+            AgendaTaskRepository reader = new AgendaTaskRepository(file.getPath(), StorageOptions.direct());
+            assertEquals(RECORDS, reader.findAll().size()); // warm-up
+
+            long start = System.nanoTime();
+            for (int i = 0; i < LOADS; i++) {
+                assertEquals(RECORDS, reader.findAll().size());
+            }
+            long loadMillis = (System.nanoTime() - start) / 1_000_000 / LOADS;
+
+            System.out.printf("%-8s %,12d bytes  %5d ms per load of %d tasks%n",
+                    format, file.length(), loadMillis, RECORDS);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.toki.repository;
+
+import com.toki.model.AgendaTask;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Measures the heap retained by 100k loaded tasks with pooled type and group
+ * strings, and with a private copy of both per task as before the pool.
+ * Not part of the default test run; start it with
+ * {@code mvn test -Dtest=StringPoolBenchmark}.
+ */
+public class StringPoolBenchmark {
+
+    private static final int RECORDS = 100_000;
+
+    @Test
+    public void retainedHeap() throws IOException {
+        File file = BenchmarkData.tempFile("task.json");
+        BenchmarkData.writeTasks(file, BenchmarkData.tasks(RECORDS));
+        AgendaTaskRepository repository = new AgendaTaskRepository(file.getPath(), StorageOptions.direct());
+        repository.findAll(); // warm-up, fills the pool
+
+        long baseline = usedHeap();
+        List<AgendaTask> pooled = repository.findAll();
+        long pooledBytes = usedHeap() - baseline;
+        assertSame(pooled.get(0).getType(), pooled.get(1).getType());
+
+        // Reproduces what reading retained before: every task owns its strings
+        for (AgendaTask task : pooled) {
+            task.setType(new String(task.getType()));
+            task.setGroup(new String(task.getGroup()));
+        }
+        long copiedBytes = usedHeap() - baseline;
+        assertNotSame(pooled.get(0).getType(), pooled.get(1).getType());
+
+        System.out.printf("copies: %,12d bytes retained per %d tasks%n", copiedBytes, RECORDS);
+        System.out.printf("pooled: %,12d bytes retained per %d tasks (%,d bytes saved)%n",
+                pooledBytes, RECORDS, copiedBytes - pooledBytes);
+        assertEquals(RECORDS, pooled.size());
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
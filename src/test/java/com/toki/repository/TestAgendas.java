@@ -0,0 +1,28 @@
+package com.toki.repository;
+
+import com.toki.model.AgendaAbstract;
+
+import java.util.List;
+
+/**
+ * Helpers shared by the repository tests.
+ */
+final class TestAgendas {
+
+    private TestAgendas() {
+    }
+
+    /**
+     * Gets the IDs of agendas in their order.
+     */
+    static List<Integer> ids(List<? extends AgendaAbstract> agendas) {
+        return agendas.stream().map(AgendaAbstract::getID).toList();
+    }
+
+    /**
+     * Gets the IDs of agendas in ascending order.
+     */
+    static List<Integer> sortedIds(List<? extends AgendaAbstract> agendas) {
+        return agendas.stream().map(AgendaAbstract::getID).sorted().toList();
+    }
+}
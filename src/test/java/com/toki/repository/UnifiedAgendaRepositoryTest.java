@@ -0,0 +1,122 @@
+package com.toki.repository;
+
+import com.toki.model.AgendaAbstract;
+import com.toki.model.AgendaRegular;
+import com.toki.model.AgendaSpecial;
+import com.toki.model.AgendaTask;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.HashSet;
+import java.util.List;
+
+import static com.toki.repository.TestAgendas.sortedIds;
+import static org.junit.Assert.*;
+
+/**
+ * The unified store holding all three agenda types in one file.
+ */
+public class UnifiedAgendaRepositoryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void importedAgendasWithOverlappingIdsSurviveSavesAndDeletes() throws IOException {
+        for (StorageOptions options : List.of(StorageOptions.direct(), StorageOptions.cached())) {
+            File directory = new File(folder.newFolder(), "shard");
+            directory.mkdirs();
+            writeTypedFiles(directory.getPath());
+            String unifiedPath = directory + "/agendas.json";
+            assertTrue(UnifiedAgendaRepository.importTyped(unifiedPath, directory.getPath(), options.getFormat()));
+            assertTrue(new File(unifiedPath + ".renumbered").exists());
+
+            UnifiedAgendaRepository store = new UnifiedAgendaRepository(unifiedPath, options);
+            assertEquals(9, store.findAll().size());
+            assertEquals(9, new HashSet<>(store.findAll().stream().map(AgendaAbstract::getID).toList()).size());
+            assertEquals(3, store.getRegularView().findAll().size());
+            assertEquals(2, store.getSpecialView().findAll().size());
+            assertEquals(4, store.getTaskView().findAll().size());
+
+            int lastTaskId = store.getTaskView().findAll().stream()
+                    .filter(task -> task.getTitle().equals("Task 4")).findFirst().orElseThrow().getID();
+            store.getTaskView().deleteByID(lastTaskId);
+            store.save(new AgendaTask(100, "New", "Task", null, null, 'L', null));
+            store.close();
+
+            UnifiedAgendaRepository reopened = new UnifiedAgendaRepository(unifiedPath, StorageOptions.direct());
+            assertEquals(9, reopened.findAll().size());
+            assertEquals(3, reopened.getRegularView().findAll().size());
+            assertEquals(2, reopened.getSpecialView().findAll().size());
+            assertEquals(List.of("Task 1", "Task 2", "Task 3", "New"),
+                    reopened.getTaskView().findAll().stream().map(AgendaAbstract::getTitle).toList());
+            reopened.close();
+        }
+    }
+
+    @Test
+    public void viewsOnlyDeleteTheirOwnType() throws IOException {
+        File file = new File(folder.newFolder(), "agendas.json");
+        UnifiedAgendaRepository store = new UnifiedAgendaRepository(file.getPath(), StorageOptions.cached());
+        store.save(new AgendaRegular(1, "Kelas", "Regular", null, DayOfWeek.MONDAY, LocalTime.of(8, 0), null));
+        store.save(new AgendaTask(2, "Tugas", "Task", null, LocalDate.of(2026, 1, 1), 'H', null));
+
+        store.getTaskView().deleteByID(1);
+        store.getRegularView().deleteByID(2);
+        assertEquals(2, store.findAll().size());
+        assertNull(store.getTaskView().findByID(1));
+        assertEquals("Tugas", store.getTaskView().findByID(2).getTitle());
+        store.close();
+    }
+
+    @Test
+    public void typedDeleteChecksTheAgendaItIsAppliedTo() throws IOException {
+        String path = new File(folder.newFolder(), "agendas.json").getPath();
+        StorageOptions options = StorageOptions.writeBehind();
+        options.setWriteBehindDelayMillis(60_000);
+        UnifiedAgendaRepository queued = new UnifiedAgendaRepository(path, options);
+        queued.save(new AgendaTask(3, "Tugas", "Task", null, null, 'H', null));
+        queued.close();
+
+        // Another writer puts a regular agenda under the ID while the task delete waits in the queue
+        UnifiedAgendaRepository other = new UnifiedAgendaRepository(path, StorageOptions.direct());
+        other.save(new AgendaRegular(3, "Kelas", "Regular", null, DayOfWeek.MONDAY, LocalTime.of(8, 0), null));
+        other.close();
+        queued.getTaskView().deleteByID(3);
+        queued.close();
+        UnifiedAgendaRepository reopened = new UnifiedAgendaRepository(path, StorageOptions.direct());
+        assertEquals("Kelas", reopened.findByID(3).getTitle());
+
+        reopened.getTaskView().bulk(writer -> {
+            writer.deleteByID(3);
+            writer.save(new AgendaTask(4, "Tugas", "Task", null, null, 'L', null));
+        });
+        reopened.getRegularView().deleteByID(4);
+        assertEquals(List.of(3, 4), sortedIds(reopened.findAll()));
+        reopened.close();
+    }
+
+    private static void writeTypedFiles(String directory) throws IOException {
+        AgendaRegularRepository regular = new AgendaRegularRepository(directory + "/regular.json", StorageOptions.direct());
+        for (int id = 1; id <= 3; id++) {
+            regular.save(new AgendaRegular(id, "Regular " + id, "Regular", null, DayOfWeek.of(id), LocalTime.of(8, 0), null));
+        }
+        AgendaSpecialRepository special = new AgendaSpecialRepository(directory + "/special.json", StorageOptions.direct());
+        for (int id = 1; id <= 2; id++) {
+            special.save(new AgendaSpecial(id, "Special " + id, "Special", null, LocalDate.of(2026, 2, id), LocalTime.NOON, null));
+        }
+        AgendaTaskRepository task = new AgendaTaskRepository(directory + "/task.json", StorageOptions.direct());
+        for (int id = 1; id <= 4; id++) {
+            task.save(new AgendaTask(id, "Task " + id, "Task", null, LocalDate.of(2026, 3, id), 'M', null));
+        }
+        List.of(regular, special, task).forEach(Agenda_RepositoryAbstract::close);
+        assertTrue(Files.exists(new File(directory, "task.json").toPath()));
+    }
+}
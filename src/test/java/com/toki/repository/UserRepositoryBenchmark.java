@@ -0,0 +1,60 @@
+package com.toki.repository;
+
+import com.toki.model.User;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Measures login and registration as the number of users grows, the way
+ * LoginController does them: a lookup, plus a save when registering.
+ * Not part of the default test run; start it with
+ * {@code mvn test -Dtest=UserRepositoryBenchmark}.
+ */
+public class UserRepositoryBenchmark {
+
+    private static final int[] USER_COUNTS = { 1_000, 10_000, 100_000 };
+    private static final int LOGINS = 10_000;
+    private static final int REGISTRATIONS = 500;
+
+    @Test
+    public void loginAndRegistration() throws IOException {
+        for (int users : USER_COUNTS) {
+            File file = BenchmarkData.tempFile("users.json");
+            StringBuilder json = new StringBuilder("[");
+            for (int i = 0; i < users; i++) {
+                json.append(i > 0 ? "," : "").append("{\"username\":\"user").append(i)
+                        .append("\",\"password\":\"p").append(i).append("\"}");
+            }
+            Files.writeString(file.toPath(), json.append(']'));
+
+            long start = System.nanoTime();
+            UserRepository repository = new UserRepository(file.getPath());
+            assertNotNull(repository.findByUsername("user0")); // builds the index
+            long indexMillis = (System.nanoTime() - start) / 1_000_000;
+
+            Random random = new Random(42);
+            start = System.nanoTime();
+            for (int i = 0; i < LOGINS; i++) {
+                assertNotNull(repository.findByUsername("user" + random.nextInt(users)));
+            }
+            long loginMicros = (System.nanoTime() - start) / 1_000 / LOGINS;
+
+            start = System.nanoTime();
+            for (int i = 0; i < REGISTRATIONS; i++) {
+                String username = "new" + i;
+                assertNull(repository.findByUsername(username));
+                repository.save(new User(username, "secret"));
+            }
+            long registerMicros = (System.nanoTime() - start) / 1_000 / REGISTRATIONS;
+
+            System.out.printf("%,8d users: index built in %5d ms, login %4d us, registration %5d us%n",
+                    users, indexMillis, loginMicros, registerMicros);
+        }
+    }
+}
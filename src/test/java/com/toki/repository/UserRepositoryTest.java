@@ -0,0 +1,75 @@
+package com.toki.repository;
+
+import com.toki.model.User;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * Username lookups through the persisted index.
+ */
+public class UserRepositoryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void prettyFileIsIndexedAndRewrittenOneUserPerLine() throws IOException {
+        File file = new File(folder.newFolder(), "users.json");
+        Files.writeString(file.toPath(), "[\n  {\n    \"username\": \"alice\",\n    \"password\": \"a\"\n  }\n]");
+
+        UserRepository repository = new UserRepository(file.getPath());
+        assertEquals("a", repository.findByUsername("alice").getPassword());
+        assertNull(repository.findByUsername("bob"));
+        assertEquals("[\n{\"username\":\"alice\",\"password\":\"a\"}\n]\n", Files.readString(file.toPath()));
+    }
+
+    @Test
+    public void usersSurviveIndexGrowthAndReopening() throws IOException {
+        File file = new File(folder.newFolder(), "users.json");
+        UserRepository repository = new UserRepository(file.getPath());
+        for (int i = 0; i < 2000; i++) {
+            repository.save(new User("user" + i, "p" + i));
+        }
+        repository.save(new User("user7", "changed"));
+
+        UserRepository reopened = new UserRepository(file.getPath());
+        assertEquals(2000, reopened.findAll().size());
+        for (int i = 0; i < 2000; i++) {
+            assertNotNull(reopened.findByUsername("user" + i));
+        }
+        assertEquals("changed", reopened.findByUsername("user7").getPassword());
+        assertNull(reopened.findByUsername("user2000"));
+
+        // An index that no longer matches the file is rebuilt
+        Files.writeString(file.toPath(), "[{\"username\":\"zed\",\"password\":\"z\"}]");
+        assertEquals("z", reopened.findByUsername("zed").getPassword());
+        assertNull(reopened.findByUsername("user1"));
+    }
+
+    @Test
+    public void instancesOnTheSameFileSeeEachOthersUsers() throws IOException {
+        File file = new File(folder.newFolder(), "users.json");
+        UserRepository first = new UserRepository(file.getPath());
+        UserRepository second = new UserRepository(file.getPath());
+        first.save(new User("alice", "a"));
+        // The second instance's index grows and is rebuilt under the first one
+        for (int i = 0; i < 1000; i++) {
+            second.save(new User("user" + i, "p" + i));
+        }
+        first.save(new User("bob", "b"));
+
+        assertEquals("a", second.findByUsername("alice").getPassword());
+        assertEquals("b", second.findByUsername("bob").getPassword());
+        for (int i = 0; i < 1000; i += 97) {
+            assertEquals("p" + i, first.findByUsername("user" + i).getPassword());
+        }
+        assertEquals(1002, new UserRepository(file.getPath()).findAll().size());
+    }
+}
@@ -0,0 +1,64 @@
+package com.toki.repository;
+
+import com.toki.model.AgendaTask;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+
+import static com.toki.repository.TestAgendas.sortedIds;
+import static org.junit.Assert.*;
+
+/**
+ * Write-behind saves: queued in memory, persisted by the flusher or on close.
+ */
+public class WriteBehindTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void queuedSavesAreFlushedOnClose() throws IOException {
+        File file = new File(folder.newFolder(), "task.json");
+        AgendaTaskRepository repository = new AgendaTaskRepository(file.getPath(), slowFlushing());
+        repository.saveAll(BenchmarkData.tasks(3));
+        repository.deleteByID(2);
+
+        assertEquals(List.of(1, 3), sortedIds(repository.findAll()));
+        assertTrue(new AgendaTaskRepository(file.getPath(), StorageOptions.direct()).findAll().isEmpty());
+        repository.close();
+
+        assertEquals(List.of(1, 3), sortedIds(new AgendaTaskRepository(file.getPath(), StorageOptions.direct()).findAll()));
+    }
+
+    @Test
+    public void savesAgainstStaleRecordsKeepWhatOthersWrote() throws IOException {
+        File file = new File(folder.newFolder(), "task.json");
+        AgendaTaskRepository repository = new AgendaTaskRepository(file.getPath(), slowFlushing());
+        assertTrue(repository.findAll().isEmpty());
+
+        AgendaTaskRepository other = new AgendaTaskRepository(file.getPath(), StorageOptions.direct());
+        other.save(task(1));
+        other.save(task(3));
+        repository.save(task(2));
+        repository.deleteByID(3); // Only the other repository has seen it
+
+        assertEquals(List.of(1, 2), sortedIds(repository.findAll()));
+        repository.close();
+        assertEquals(List.of(1, 2), sortedIds(new AgendaTaskRepository(file.getPath(), StorageOptions.direct()).findAll()));
+    }
+
+    private static StorageOptions slowFlushing() {
+        StorageOptions options = StorageOptions.writeBehind();
+        options.setWriteBehindDelayMillis(60_000); // Nothing is flushed before close
+        return options;
+    }
+
+    private static AgendaTask task(int id) {
+        return new AgendaTask(id, "Task " + id, "Task", null, LocalDate.of(2026, 1, id), 'M', null);
+    }
+}
@@ -0,0 +1,105 @@
+package com.toki.service;
+
+import com.toki.model.*;
+import com.toki.repository.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the agenda counts come from the repositories' count().
+ */
+public class SchedulerServiceCountTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testGetAgendaCountsUsesCount() {
+        SchedulerService service = new SchedulerService(
+                new AgendaRegularRepository() {
+                    @Override
+                    public List<AgendaRegular> findAll() {
+                        throw new AssertionError("counts should not list the agendas");
+                    }
+
+                    @Override
+                    public long count() {
+                        return 3;
+                    }
+                },
+                new AgendaSpecialRepository() {
+                    @Override
+                    public List<AgendaSpecial> findAll() {
+                        throw new AssertionError("counts should not list the agendas");
+                    }
+
+                    @Override
+                    public long count() {
+                        return 2;
+                    }
+                },
+                new AgendaTaskRepository() {
+                    @Override
+                    public List<AgendaTask> findAll() {
+                        throw new AssertionError("counts should not list the agendas");
+                    }
+
+                    @Override
+                    public long count() {
+                        return 1;
+                    }
+                });
+
+        Map<String, Long> counts = service.getAgendaCounts();
+        assertEquals(Long.valueOf(3), counts.get("Regular"));
+        assertEquals(Long.valueOf(2), counts.get("Special"));
+        assertEquals(Long.valueOf(1), counts.get("Task"));
+    }
+
+    @Test
+    public void testGetAgendaCountsFromStoredFilesDirect() throws IOException {
+        assertStoredCounts(StorageOptions.direct());
+    }
+
+    @Test
+    public void testGetAgendaCountsFromStoredFilesCached() throws IOException {
+        assertStoredCounts(StorageOptions.cached());
+    }
+
+    private void assertStoredCounts(StorageOptions options) throws IOException {
+        File dir = folder.newFolder();
+        AgendaRegularRepository regularRepo =
+                new AgendaRegularRepository(new File(dir, "regular.json").getPath(), options);
+        AgendaSpecialRepository specialRepo =
+                new AgendaSpecialRepository(new File(dir, "special.json").getPath(), options);
+        AgendaTaskRepository taskRepo =
+                new AgendaTaskRepository(new File(dir, "task.json").getPath(), options);
+
+        regularRepo.save(new AgendaRegular(1, "Gym", "Personal", "Health", DayOfWeek.MONDAY, LocalTime.of(8, 0),
+                "Train legs"));
+        regularRepo.save(new AgendaRegular(2, "Swim", "Personal", "Health", DayOfWeek.FRIDAY, LocalTime.of(7, 0),
+                "Laps"));
+        specialRepo.save(new AgendaSpecial(3, "Concert", "Entertainment", "Fun", LocalDate.now(), LocalTime.of(19, 0),
+                "VIP Seats"));
+
+        Map<String, Long> counts = new SchedulerService(regularRepo, specialRepo, taskRepo).getAgendaCounts();
+        assertEquals(Long.valueOf(2), counts.get("Regular"));
+        assertEquals(Long.valueOf(1), counts.get("Special"));
+        assertEquals(Long.valueOf(0), counts.get("Task"));
+
+        regularRepo.close();
+        specialRepo.close();
+        taskRepo.close();
+    }
+}